@@ -0,0 +1,123 @@
+package edu.byu.ece.rapidSmith.cad.route;
+
+import edu.byu.ece.rapidSmith.device.Tile;
+
+/**
+ * An immutable, inclusive rectangle of tiles in a device, described by row and column bounds.
+ */
+public class BoundingBox {
+	private final int minRow;
+	private final int minColumn;
+	private final int maxRow;
+	private final int maxColumn;
+
+	/**
+	 * Creates a bounding box with the specified (inclusive) bounds.
+	 * @param minRow the smallest row in the box
+	 * @param minColumn the smallest column in the box
+	 * @param maxRow the largest row in the box
+	 * @param maxColumn the largest column in the box
+	 */
+	public BoundingBox(int minRow, int minColumn, int maxRow, int maxColumn) {
+		this.minRow = minRow;
+		this.minColumn = minColumn;
+		this.maxRow = maxRow;
+		this.maxColumn = maxColumn;
+	}
+
+	/**
+	 * Creates a bounding box that only contains a single tile.
+	 * @param tile the tile
+	 */
+	public BoundingBox(Tile tile) {
+		this(tile.getRow(), tile.getColumn(), tile.getRow(), tile.getColumn());
+	}
+
+	public int getMinRow() {
+		return minRow;
+	}
+
+	public int getMinColumn() {
+		return minColumn;
+	}
+
+	public int getMaxRow() {
+		return maxRow;
+	}
+
+	public int getMaxColumn() {
+		return maxColumn;
+	}
+
+	/**
+	 * Returns a bounding box that also includes the specified tile.
+	 * @param tile the tile to include
+	 * @return the enlarged bounding box (or this box if it already contains the tile)
+	 */
+	public BoundingBox include(Tile tile) {
+		if (contains(tile))
+			return this;
+		return new BoundingBox(Math.min(minRow, tile.getRow()), Math.min(minColumn, tile.getColumn()),
+				Math.max(maxRow, tile.getRow()), Math.max(maxColumn, tile.getColumn()));
+	}
+
+	/**
+	 * Returns a bounding box that is larger than this one by the specified number of tiles on every side.
+	 * @param margin the number of tiles to grow by
+	 * @return the enlarged bounding box
+	 */
+	public BoundingBox expand(int margin) {
+		return new BoundingBox(minRow - margin, minColumn - margin, maxRow + margin, maxColumn + margin);
+	}
+
+	/**
+	 * Returns whether the tile is within the bounding box.
+	 * @param tile the tile
+	 * @return true if the box contains the tile, false otherwise
+	 */
+	public boolean contains(Tile tile) {
+		return contains(tile.getRow(), tile.getColumn());
+	}
+
+	/**
+	 * Returns whether the row and column are within the bounding box.
+	 * @param row the row
+	 * @param column the column
+	 * @return true if the box contains the location, false otherwise
+	 */
+	public boolean contains(int row, int column) {
+		return row >= minRow && row <= maxRow && column >= minColumn && column <= maxColumn;
+	}
+
+	/**
+	 * Returns whether this bounding box shares any tiles with another bounding box.
+	 * @param other the other bounding box
+	 * @return true if the boxes overlap, false otherwise
+	 */
+	public boolean intersects(BoundingBox other) {
+		return minRow <= other.maxRow && other.minRow <= maxRow
+				&& minColumn <= other.maxColumn && other.minColumn <= maxColumn;
+	}
+
+	/**
+	 * Gets the number of tiles in the bounding box.
+	 * @return the area of the box
+	 */
+	public int getArea() {
+		return (maxRow - minRow + 1) * (maxColumn - minColumn + 1);
+	}
+
+	/**
+	 * Gets the half-perimeter of the bounding box (in tiles), which is the half-perimeter wirelength of a net
+	 * with this bounding box.
+	 * @return the half-perimeter of the box
+	 */
+	public int getHalfPerimeter() {
+		return (maxRow - minRow) + (maxColumn - minColumn);
+	}
+
+	@Override
+	public String toString() {
+		return "(" + minRow + ", " + minColumn + ") -> (" + maxRow + ", " + maxColumn + ")";
+	}
+}
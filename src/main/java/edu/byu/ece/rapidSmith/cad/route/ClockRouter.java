@@ -0,0 +1,296 @@
+package edu.byu.ece.rapidSmith.cad.route;
+
+import edu.byu.ece.rapidSmith.cad.route.mazerouter.NodeHeap;
+import edu.byu.ece.rapidSmith.cad.route.mazerouter.WireFlags;
+import edu.byu.ece.rapidSmith.cad.route.pathfinder.PathFinderRouteTree;
+import edu.byu.ece.rapidSmith.cad.route.pathfinder.WireNodeIndex;
+import edu.byu.ece.rapidSmith.design.subsite.*;
+import edu.byu.ece.rapidSmith.device.Connection;
+import edu.byu.ece.rapidSmith.device.Wire;
+
+import java.util.*;
+
+/**
+ * Routes global clock (BUFG-driven) nets on the dedicated clock network before PathFinder starts, so they are not
+ * part of the negotiated routing loop. The wires of a clock net's route are reserved for the net, and the route is
+ * applied to the net right away.
+ *
+ * The clock network of a device is a tree (BUFG to the clock spine, through the horizontal clock rows to the HCLK
+ * leaf buffers, then into the GCLK wires of the interconnect tiles), so clock sinks do not need a general search
+ * from the whole route tree. Instead, each sink is traced backwards from its sink wire, over clock wires only, until
+ * it reaches a wire the net's route already uses. The first sink of a clock region traces back to the spine, and the
+ * other sinks of the region only need to trace back to the region's leaf or row. Sinks are routed in order of their
+ * tile so the sinks of a clock region are routed one after the other.
+ *
+ * A clock net is left for PathFinder (without changing its route) if any of its sinks cannot be reached this way,
+ * for example because a wire it needs is reserved or the sink is only reachable through general routing.
+ */
+public class ClockRouter {
+	private static final int INITIAL_CAPACITY = 1 << 12;
+
+	private final CellDesign design;
+	private final WireFlags wireFlags;
+
+	/** Index from wires to the search nodes of the router */
+	private final WireNodeIndex searchIndex;
+	/** Queue of search nodes, sorted by increasing cost from the sink wire */
+	private final NodeHeap queue;
+	/** The current search generation. A node is part of the current search if its stamp equals the generation. */
+	private int generation;
+	/** The generation in which each node was last reached */
+	private int[] visitedStamp;
+	/** The number of PIPs from each node to the sink wire */
+	private int[] costs;
+	/** The node (towards the sink wire) each node was reached from, or -1 for the sink wire */
+	private int[] children;
+
+	private int numNetsRouted;
+	private int numNetsDeferred;
+	private long numSinksRouted;
+	private long numWiresReserved;
+
+	/**
+	 * Creates a clock router for a design.
+	 * @param design the cell design being routed
+	 */
+	public ClockRouter(CellDesign design) {
+		this.design = design;
+		this.wireFlags = WireFlags.get(design.getDevice());
+		this.searchIndex = new WireNodeIndex(design.getDevice());
+		this.queue = new NodeHeap();
+		this.generation = 0;
+		this.visitedStamp = new int[INITIAL_CAPACITY];
+		this.costs = new int[INITIAL_CAPACITY];
+		this.children = new int[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Routes the global clock nets of a list of inter-site routes, reserves their wires and applies their routes to
+	 * their nets.
+	 * @param intersiteRoutes the inter-site routes of the design
+	 * @return the inter-site routes that are left for PathFinder (all routes that weren't routed by the clock router)
+	 */
+	public ArrayList<IntersiteRoute> routeClockNets(List<IntersiteRoute> intersiteRoutes) {
+		long startTime = System.currentTimeMillis();
+		ArrayList<IntersiteRoute> remaining = new ArrayList<>();
+		for (IntersiteRoute intersiteRoute : intersiteRoutes) {
+			if (!intersiteRoute.isGlobalClk() || !routeNet(intersiteRoute))
+				remaining.add(intersiteRoute);
+		}
+
+		if (numNetsRouted > 0 || numNetsDeferred > 0) {
+			System.out.printf("[INFO] Clock router: %d global clock nets routed (%d sinks, %d wires reserved) in %.3f s, "
+							+ "%d left for PathFinder%n", numNetsRouted, numSinksRouted, numWiresReserved,
+					(System.currentTimeMillis() - startTime) / 1000.0, numNetsDeferred);
+		}
+		return remaining;
+	}
+
+	/**
+	 * Routes a global clock net. The route is only changed if every sink of the net can be reached.
+	 * @param intersiteRoute the inter-site route of the net
+	 * @return true if the net was routed, false if it is left for PathFinder
+	 */
+	public boolean routeNet(IntersiteRoute intersiteRoute) {
+		PathFinderRouteTree startTree = intersiteRoute.getRouteTree();
+		CellNet net = intersiteRoute.getNet();
+
+		// The wires the route uses so far
+		Set<Wire> routeWires = new HashSet<>();
+		Iterable<PathFinderRouteTree> typed = startTree.getRoot().typedIterator();
+		for (PathFinderRouteTree tree : typed) {
+			routeWires.add(tree.getWire());
+		}
+
+		// Sinks are routed in order of their tile, which keeps the sinks of a clock region together
+		List<PathFinderRouteTree> sinks = new ArrayList<>(intersiteRoute.getSinksToRoute());
+		sinks.sort(Comparator.<PathFinderRouteTree>comparingInt(sink -> sink.getWire().getTile().getRow())
+				.thenComparingInt(sink -> sink.getWire().getTile().getColumn())
+				.thenComparingInt(sink -> sink.getWire().getWireEnum()));
+
+		// Find the path of every sink first, so nothing is changed if a sink can't be reached
+		List<List<Wire>> paths = new ArrayList<>(sinks.size());
+		for (PathFinderRouteTree sinkTree : sinks) {
+			Wire terminalWire = intersiteRoute.getTerminalTree(sinkTree).getWire();
+			List<Wire> path = tracePath(net, sinkTree.getWire(), terminalWire, routeWires);
+			if (path == null) {
+				numNetsDeferred++;
+				return false;
+			}
+			routeWires.addAll(path);
+			paths.add(path);
+		}
+
+		// Build the route trees of the paths
+		Map<Wire, PathFinderRouteTree> trees = new HashMap<>();
+		for (PathFinderRouteTree tree : typed) {
+			trees.put(tree.getWire(), tree);
+		}
+		Set<PathFinderRouteTree> terminals = new HashSet<>();
+		for (PathFinderRouteTree sink : intersiteRoute.getRoutedSinks()) {
+			terminals.add(intersiteRoute.getTerminalTree(sink));
+		}
+		for (int i = 0; i < sinks.size(); i++) {
+			PathFinderRouteTree sinkTree = sinks.get(i);
+			List<Wire> path = paths.get(i);
+			PathFinderRouteTree tree = trees.get(path.get(0));
+			for (int j = 1; j < path.size(); j++) {
+				Connection connection = tree.getWire().getWireConnection(path.get(j));
+				tree = (j == path.size() - 1) ? tree.connect(connection, sinkTree) : tree.connect(connection);
+				trees.put(path.get(j), tree);
+			}
+
+			PathFinderRouteTree terminal = intersiteRoute.getTerminalTree(sinkTree);
+			terminals.add(terminal);
+			for (CellPin cellPin : intersiteRoute.getSinkCellPins(terminal.getWire())) {
+				cellPin.getNet().addRoutedSink(cellPin);
+			}
+			numSinksRouted++;
+		}
+
+		startTree.prune(terminals);
+		for (PathFinderRouteTree leaf : terminals) {
+			leaf.markLeaf();
+		}
+		intersiteRoute.setRoutedSinks(new HashSet<>(intersiteRoute.getSinkRouteTrees()));
+		intersiteRoute.getSinksToRoute().clear();
+
+		reserveWires(intersiteRoute);
+
+		// Apply the route to the net
+		net.setIntersiteRouteTrees(null);
+		net.addIntersiteRouteTree(intersiteRoute.getRouteTree());
+		net.setRouteStatus(RouteStatus.FULLY_ROUTED);
+		numNetsRouted++;
+		return true;
+	}
+
+	/**
+	 * Searches backwards from a sink wire for the cheapest path (in PIPs) from a wire the route already uses. The
+	 * search can end at any wire of the route, not only near the source, so there is no distance estimate that never
+	 * overestimates the remaining cost. Nodes are expanded in order of their cost (a Dijkstra search) instead.
+	 * @return the wires of the path, from the route's wire to the sink wire, or null if there is no path
+	 */
+	private List<Wire> tracePath(CellNet net, Wire sinkWire, Wire terminalWire, Set<Wire> routeWires) {
+		// A sink wire that is already used by the route would need the route tree to be rearranged
+		if (routeWires.contains(sinkWire))
+			return null;
+		// Clocks going to I/O may need wires outside the clock network, like the maze router allows
+		boolean ioSink = (wireFlags.getTileFlags(terminalWire.getTile()) & WireFlags.IO_TILE) != 0;
+
+		startSearch();
+		int sinkNode = getSearchNode(sinkWire);
+		visitedStamp[sinkNode] = generation;
+		costs[sinkNode] = 0;
+		children[sinkNode] = -1;
+		queue.add(sinkNode, 0);
+
+		while (!queue.isEmpty()) {
+			int node = queue.poll();
+			Wire wire = searchIndex.getWire(node);
+			if (routeWires.contains(wire))
+				return getPath(node);
+
+			for (Connection connection : wire.getReverseWireConnections()) {
+				if (connection.isRouteThrough())
+					continue;
+
+				// The wire that drives the current wire
+				Wire driver = connection.getSinkWire();
+				int driverNode = getSearchNode(driver);
+				int cost = costs[node] + (connection.isPip() ? 1 : 0);
+				boolean reached = visitedStamp[driverNode] == generation;
+				if (reached && (!queue.contains(driverNode) || cost >= costs[driverNode]))
+					continue;
+				if (!reached && !routeWires.contains(driver) && !isWireAllowed(net, driver, ioSink))
+					continue;
+
+				visitedStamp[driverNode] = generation;
+				costs[driverNode] = cost;
+				children[driverNode] = node;
+				if (reached)
+					queue.decreaseKey(driverNode, cost);
+				else
+					queue.add(driverNode, cost);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns whether a clock net may use a wire: it must be a clock wire (a CLK or GFAN wire, unless the sink is an
+	 * I/O), be inside the device being routed, and not be reserved for another net.
+	 */
+	private boolean isWireAllowed(CellNet net, Wire wire, boolean ioSink) {
+		if (wire.getTile() == null)
+			return false;
+		if ((wireFlags.getTileFlags(wire.getTile()) & WireFlags.OOC_TILE) != 0)
+			return false;
+		if (!ioSink && (wireFlags.getWireFlags(wire) & (WireFlags.CLK | WireFlags.GFAN)) == 0)
+			return false;
+		return design.isWireAvailable(net, wire);
+	}
+
+	/**
+	 * Gets the path from a node back to the sink wire of the search.
+	 */
+	private List<Wire> getPath(int node) {
+		List<Wire> path = new ArrayList<>();
+		while (node != -1) {
+			path.add(searchIndex.getWire(node));
+			node = children[node];
+		}
+		return path;
+	}
+
+	/**
+	 * Reserves the wires of a clock net's route for the net, so the nets PathFinder routes can't use them.
+	 */
+	private void reserveWires(IntersiteRoute intersiteRoute) {
+		for (RouteTree rt : intersiteRoute.getRouteTree().getRoot()) {
+			// Wires reached through non-PIP connections are in the node of their parent
+			if (rt.getConnection() != null && !rt.getConnection().isPip())
+				continue;
+			for (Wire wire : rt.getWire().getWiresInNode()) {
+				design.addReservedNode(wire, intersiteRoute.getNet());
+				numWiresReserved++;
+			}
+		}
+	}
+
+	private void startSearch() {
+		queue.clear();
+		if (generation == Integer.MAX_VALUE) {
+			Arrays.fill(visitedStamp, 0);
+			generation = 0;
+		}
+		generation++;
+	}
+
+	private int getSearchNode(Wire wire) {
+		int node = searchIndex.getOrAddIndex(wire);
+		if (node >= visitedStamp.length) {
+			int newSize = Math.max(node + 1, visitedStamp.length * 2);
+			visitedStamp = Arrays.copyOf(visitedStamp, newSize);
+			costs = Arrays.copyOf(costs, newSize);
+			children = Arrays.copyOf(children, newSize);
+		}
+		return node;
+	}
+
+	/**
+	 * Gets the number of global clock nets routed by the clock router.
+	 * @return the number of routed clock nets
+	 */
+	public int getNumNetsRouted() {
+		return numNetsRouted;
+	}
+
+	/**
+	 * Gets the number of global clock nets the clock router left for PathFinder.
+	 * @return the number of deferred clock nets
+	 */
+	public int getNumNetsDeferred() {
+		return numNetsDeferred;
+	}
+}
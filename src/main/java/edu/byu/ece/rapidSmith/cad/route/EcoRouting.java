@@ -0,0 +1,173 @@
+package edu.byu.ece.rapidSmith.cad.route;
+
+import edu.byu.ece.rapidSmith.design.subsite.*;
+import edu.byu.ece.rapidSmith.device.Device;
+import edu.byu.ece.rapidSmith.device.Tile;
+import edu.byu.ece.rapidSmith.device.Wire;
+
+import java.util.*;
+
+/**
+ * Prepares a partially routed design for ECO (engineering change order) routing, where only the nets affected by a
+ * small netlist or placement change are routed. Nets that are already fully routed keep their inter-site routes,
+ * and the wires of those routes are reserved for them so the nets being routed cannot use them.
+ *
+ * Optionally, fully routed nets near the nets to route can be ripped up and routed again, which gives the router
+ * room to route the changed nets when the area around them is crowded. A routed net is ripped up if any of its wires
+ * are within a given distance of the bounding box of a net to route. Static and clock nets are never ripped up.
+ */
+public class EcoRouting {
+	private final CellDesign design;
+	/** The distance (in tiles) from the nets to route within which routed nets are ripped up, or -1 to rip up none */
+	private final int ripUpRadius;
+	/** The number of nets that were fully routed before ECO routing */
+	private int numRoutedNets;
+	/** The number of fully routed nets that were ripped up (not counting their aliases that had no routes) */
+	private int numRippedUpNets;
+	/** The number of wires reserved for the routes that were preserved */
+	private int numPreservedWires;
+
+	/**
+	 * Creates an ECO routing setup for a design.
+	 * @param design the partially routed design
+	 * @param ripUpRadius the distance in tiles from the nets to route within which routed nets are ripped up,
+	 *                    or -1 to preserve every routed net
+	 */
+	public EcoRouting(CellDesign design, int ripUpRadius) {
+		this.design = design;
+		this.ripUpRadius = ripUpRadius;
+	}
+
+	/**
+	 * Rips up the routed nets near the nets to route (if allowed) and reserves the wires of the remaining routed nets.
+	 * This must be done before the inter-site routes of the nets to route are created.
+	 */
+	public void prepare() {
+		List<CellNet> routedNets = new ArrayList<>();
+		List<CellNet> netsToRoute = new ArrayList<>();
+		for (CellNet net : design.getNets()) {
+			if (net.isIntrasite() || net.getSinkPins().isEmpty())
+				continue;
+			if (net.getRouteStatus().equals(RouteStatus.FULLY_ROUTED)) {
+				if (!net.getIntersiteRouteTreeList().isEmpty())
+					routedNets.add(net);
+			} else {
+				netsToRoute.add(net);
+			}
+		}
+		numRoutedNets = routedNets.size();
+
+		if (ripUpRadius >= 0) {
+			BitSet ripUpTiles = getRipUpTiles(netsToRoute);
+			Set<CellNet> rippedUp = new HashSet<>();
+			for (CellNet net : routedNets) {
+				if (!rippedUp.contains(net) && canRipUp(net) && usesTiles(net, ripUpTiles)) {
+					rippedUp.add(net);
+					rippedUp.addAll(net.getAliases());
+				}
+			}
+
+			for (CellNet net : rippedUp) {
+				ripUp(net);
+			}
+
+			// Aliases are ripped up with their nets, but only the routed nets are counted
+			int numBefore = routedNets.size();
+			routedNets.removeAll(rippedUp);
+			numRippedUpNets = numBefore - routedNets.size();
+		}
+
+		// The wires of the preserved routes are fixed
+		numPreservedWires = 0;
+		for (CellNet net : routedNets) {
+			for (RouteTree intersiteTree : net.getIntersiteRouteTreeList()) {
+				for (RouteTree rt : intersiteTree) {
+					for (Wire wire : rt.getWire().getWiresInNode()) {
+						design.addReservedNode(wire, net);
+						numPreservedWires++;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Marks the tiles that are within the rip-up radius of the bounding box of a net to route. Static and clock nets
+	 * span the whole device, so they are not considered.
+	 */
+	private BitSet getRipUpTiles(List<CellNet> netsToRoute) {
+		Device device = design.getDevice();
+		BitSet tiles = new BitSet(device.getRows() * device.getColumns());
+		for (CellNet net : netsToRoute) {
+			if (!canRipUp(net))
+				continue;
+
+			BoundingBox box = null;
+			for (CellPin pin : net.getPins()) {
+				if (pin.isPartitionPin() || pin.getCell().getBel() == null)
+					continue;
+				Tile tile = pin.getCell().getBel().getSite().getTile();
+				box = (box == null) ? new BoundingBox(tile) : box.include(tile);
+			}
+			if (box == null)
+				continue;
+
+			box = box.expand(ripUpRadius);
+			int minColumn = Math.max(0, box.getMinColumn());
+			int maxColumn = Math.min(device.getColumns() - 1, box.getMaxColumn());
+			for (int row = Math.max(0, box.getMinRow()); row <= Math.min(device.getRows() - 1, box.getMaxRow()); row++) {
+				tiles.set(row * device.getColumns() + minColumn, row * device.getColumns() + maxColumn + 1);
+			}
+		}
+		return tiles;
+	}
+
+	private static boolean canRipUp(CellNet net) {
+		return !net.isStaticNet() && !net.isGlobalClkNet() && !net.isLocalClkNet() && !net.isClkBufferNet();
+	}
+
+	/**
+	 * Returns whether any wire of a net's inter-site routes is in one of the marked tiles.
+	 */
+	private boolean usesTiles(CellNet net, BitSet tiles) {
+		int numColumns = design.getDevice().getColumns();
+		for (RouteTree intersiteTree : net.getIntersiteRouteTreeList()) {
+			for (RouteTree rt : intersiteTree) {
+				Tile tile = rt.getWire().getTile();
+				if (tile != null && tiles.get(tile.getRow() * numColumns + tile.getColumn()))
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Removes the inter-site routes of a net so it is routed again.
+	 */
+	private static void ripUp(CellNet net) {
+		net.setIntersiteRouteTrees(null);
+		for (CellPin sinkPin : net.getSinkPins()) {
+			net.removeRoutedSink(sinkPin);
+		}
+		net.setRouteStatus(RouteStatus.UNROUTED);
+	}
+
+	/**
+	 * Prints how much of the design's routing was preserved.
+	 * @param numNetsRouted the number of nets (inter-site routes) that were routed
+	 */
+	public void printSummary(int numNetsRouted) {
+		int numPreserved = numRoutedNets - numRippedUpNets;
+		double percentPreserved = (numRoutedNets == 0) ? 0 : 100.0 * numPreserved / numRoutedNets;
+		System.out.printf("[INFO] ECO routing preserved %d of %d routed nets (%.1f%%, %d wires), ripped up %d nets and routed %d nets%n",
+				numPreserved, numRoutedNets, percentPreserved, numPreservedWires, numRippedUpNets, numNetsRouted);
+	}
+
+	public int getNumRippedUpNets() {
+		return numRippedUpNets;
+	}
+
+	public int getNumPreservedWires() {
+		return numPreservedWires;
+	}
+}
@@ -13,6 +13,8 @@ import java.util.*;
  */
 public class IntersiteRoute implements Comparable<IntersiteRoute> {
 	private CellNet net;
+	/** Identifies the logical net of the route. Computed from the net's aliases when the net is set. */
+	private CellNet netKey;
 	/** The tree of the inter-site route tree to begin routing from. **/
 	private PathFinderRouteTree routeTree;
 	/** Map from terminal (sink) wires to their corresponding cell pin(s) **/
@@ -33,6 +35,14 @@ public class IntersiteRoute implements Comparable<IntersiteRoute> {
 	private Set<PathFinderRouteTree> routedSinks;
 
 	private Map<Tile, Tile> tileToTieOffTileMap;
+	/** The bounding box of the source and sinks of the route. Computed when first requested. */
+	private BoundingBox boundingBox;
+	/** The timing criticality (0 to 1) of each sink tree. Sinks without an entry have a criticality of 0. */
+	private Map<PathFinderRouteTree, Double> sinkCriticalities;
+	/** The number of PathFinder iterations the route has been congested in */
+	private int numFailures;
+	/** The number of congested wires the route used in the last PathFinder iteration it was routed in */
+	private int numCongestedWires;
 
 	/**
 	 * Public constructor for a normal Inter-site Route.
@@ -47,6 +57,7 @@ public class IntersiteRoute implements Comparable<IntersiteRoute> {
 						  Map<PathFinderRouteTree, PathFinderRouteTree> terminalSinkTreeMap,
 						  Map<Wire, List<CellPin>> terminalWireCellPinMap) {
 		this.net = net;
+		this.netKey = computeNetKey(net);
 		isGlobalClkNet = net.isGlobalClkNet();
 		isLocalClkNet = net.isLocalClkNet();
 		assert (!(isGlobalClkNet && isLocalClkNet));
@@ -67,6 +78,7 @@ public class IntersiteRoute implements Comparable<IntersiteRoute> {
 						  Map<PathFinderRouteTree, PathFinderRouteTree> terminalSinkTreeMap,
 						  Map<Wire, List<CellPin>> terminalWireCellPinMap, Map<Tile, Tile> tileToTieOffTileMap) {
 		this.net = net;
+		this.netKey = computeNetKey(net);
 		isGlobalClkNet = net.isGlobalClkNet();
 		isLocalClkNet = net.isLocalClkNet();
 		assert (!(isGlobalClkNet && isLocalClkNet));
@@ -137,6 +149,35 @@ public class IntersiteRoute implements Comparable<IntersiteRoute> {
 		return sinkTerminalTreeMap.keySet();
 	}
 
+	/**
+	 * Replaces a sink that still needs to be routed with the sink tree of another terminal wire, such as when a LUT
+	 * input is moved to an equivalent pin. The cell pins and criticality of the old sink are moved to the new one.
+	 *
+	 * @param sinkTree the sink tree to replace (must not be connected to the route tree)
+	 * @param newSinkTree the new sink tree
+	 * @param newTerminalTree the terminal (leaf) tree of the new sink tree
+	 */
+	public void replaceSink(PathFinderRouteTree sinkTree, PathFinderRouteTree newSinkTree, PathFinderRouteTree newTerminalTree) {
+		assert (sinkTree.getParent() == null);
+		assert (sinksToRoute.contains(sinkTree));
+
+		PathFinderRouteTree terminalTree = sinkTerminalTreeMap.remove(sinkTree);
+		terminalSinkTreeMap.remove(terminalTree);
+		sinkTerminalTreeMap.put(newSinkTree, newTerminalTree);
+		terminalSinkTreeMap.put(newTerminalTree, newSinkTree);
+		terminalWireCellPinMap.put(newTerminalTree.getWire(), terminalWireCellPinMap.remove(terminalTree.getWire()));
+
+		sinksToRoute.remove(sinkTree);
+		sinksToRoute.add(newSinkTree);
+
+		if (sinkCriticalities != null) {
+			Double criticality = sinkCriticalities.remove(sinkTree);
+			if (criticality != null)
+				sinkCriticalities.put(newSinkTree, criticality);
+		}
+		boundingBox = null;
+	}
+
 	/**
 	 * Compare inter-site routes based on the number of sinks they need to route to.
 	 * @param o the other inter-site route
@@ -168,6 +209,27 @@ public class IntersiteRoute implements Comparable<IntersiteRoute> {
 	 */
 	public void setNet(CellNet net) {
 		this.net = net;
+		this.netKey = computeNetKey(net);
+	}
+
+	/**
+	 * Gets the object that identifies the logical net of the route. Routes with the same key may share wires without
+	 * congesting them. Aliased nets are identified by the alias with the lowest name. The key is computed when the
+	 * net is set, since the wire usage store compares keys for every wire the router expands.
+	 *
+	 * @return the net key
+	 */
+	public Object getNetKey() {
+		return netKey;
+	}
+
+	private static CellNet computeNetKey(CellNet net) {
+		CellNet key = net;
+		for (CellNet alias : net.getAliases()) {
+			if (alias.getName().compareTo(key.getName()) < 0)
+				key = alias;
+		}
+		return key;
 	}
 
 	/**
@@ -242,6 +304,93 @@ public class IntersiteRoute implements Comparable<IntersiteRoute> {
 		return net.isStaticNet();
 	}
 
+	/**
+	 * Gets the bounding box of the tiles of the route's source and sink trees. Static routes begin at a global wire
+	 * that does not exist in any tile, so they have no bounding box.
+	 *
+	 * @return the bounding box, or null for static routes
+	 */
+	public BoundingBox getBoundingBox() {
+		if (boundingBox == null && !isStatic()) {
+			BoundingBox box = new BoundingBox(routeTree.getRoot().getWire().getTile());
+			for (PathFinderRouteTree sinkTree : sinkTerminalTreeMap.keySet()) {
+				box = box.include(sinkTree.getWire().getTile());
+			}
+			boundingBox = box;
+		}
+		return boundingBox;
+	}
+
+	/**
+	 * Gets the timing criticality of a sink. Critical sinks are routed with more weight on delay and less weight on
+	 * congestion.
+	 *
+	 * @param sinkTree the sink tree
+	 * @return the criticality, from 0 (not critical) to 1 (on the critical path)
+	 */
+	public double getCriticality(PathFinderRouteTree sinkTree) {
+		if (sinkCriticalities == null)
+			return 0;
+		Double criticality = sinkCriticalities.get(sinkTree);
+		return (criticality == null) ? 0 : criticality;
+	}
+
+	/**
+	 * Sets the timing criticality of a sink.
+	 *
+	 * @param sinkTree the sink tree
+	 * @param criticality the criticality, from 0 (not critical) to 1 (on the critical path)
+	 */
+	public void setCriticality(PathFinderRouteTree sinkTree, double criticality) {
+		if (sinkCriticalities == null)
+			sinkCriticalities = new HashMap<>();
+		sinkCriticalities.put(sinkTree, criticality);
+	}
+
+	/**
+	 * Gets the number of PathFinder iterations the route has been congested in.
+	 *
+	 * @return the number of failures
+	 */
+	public int getNumFailures() {
+		return numFailures;
+	}
+
+	/**
+	 * Sets the number of PathFinder iterations the route has been congested in, such as when restoring it from a
+	 * checkpoint.
+	 *
+	 * @param numFailures the number of failures
+	 */
+	public void setNumFailures(int numFailures) {
+		this.numFailures = numFailures;
+	}
+
+	/**
+	 * Records that the route was congested in a PathFinder iteration.
+	 */
+	public void incrementNumFailures() {
+		numFailures++;
+	}
+
+	/**
+	 * Gets the number of congested wires the route used in the last PathFinder iteration it was routed in.
+	 *
+	 * @return the number of congested wires
+	 */
+	public int getNumCongestedWires() {
+		return numCongestedWires;
+	}
+
+	/**
+	 * Sets the number of congested wires the route used in the last PathFinder iteration it was routed in.
+	 *
+	 * @param numCongestedWires the number of congested wires
+	 */
+	public void setNumCongestedWires(int numCongestedWires) {
+		this.numCongestedWires = numCongestedWires;
+	}
+
 	public boolean isLocalTieOff(Tile sinkTile, Tile tieOffTile) {
 		if (tileToTieOffTileMap == null)
 			return false;
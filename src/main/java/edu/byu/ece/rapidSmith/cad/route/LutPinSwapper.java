@@ -0,0 +1,331 @@
+package edu.byu.ece.rapidSmith.cad.route;
+
+import edu.byu.ece.rapidSmith.cad.route.pathfinder.PathFinderRouteTree;
+import edu.byu.ece.rapidSmith.cad.route.pathfinder.WireUsageStore;
+import edu.byu.ece.rapidSmith.design.subsite.*;
+import edu.byu.ece.rapidSmith.device.*;
+
+import java.util.*;
+import java.util.function.BiFunction;
+
+/**
+ * Moves congested LUT inputs to equivalent LUT input pins between PathFinder iterations. The A1-A6 inputs of a LUT
+ * are logically interchangeable: the LUT's equation is written in terms of its cell pins (I0-I5), so routing a cell
+ * pin to a different BEL pin only changes the cell pin's mapping, not the equation. Packing picks the mapping before
+ * the router runs, so without swapping PathFinder has to negotiate for the chosen pin even when an equivalent pin is
+ * free and easier to reach.
+ *
+ * After the congested sinks of a route have been ripped up, each sink that ends at a LUT input is compared with the
+ * unused inputs of the same LUT. The cost of a pin is the lowest PathFinder cost of the wires that drive the first
+ * wire of its sink tree (the wire the maze router routes to). If an unused pin is cheaper, the sink is replaced with
+ * the sink tree of that pin, and the cell pin and the intra-site route of the net are moved to it. The sink wires of
+ * the new pin are reserved for the net, and the sink wires of the old pin are released.
+ *
+ * Only LUTs whose other half (the 5LUT of a 6LUT, or the 6LUT of a 5LUT) is empty are swapped, since the two halves
+ * share their input pins. A cell pin is only swapped once, so a pin can't move back and forth between inputs whose
+ * costs change from one iteration to the next. The swapped pins are saved in route checkpoints, and are moved again
+ * with {@link #restoreSwap} when a checkpoint is resumed.
+ */
+public class LutPinSwapper {
+	private final CellDesign design;
+	/** Creates the sink tree of a sink wire, as a map entry from the root of the tree to its terminal */
+	private final BiFunction<CellNet, Wire, Map.Entry<PathFinderRouteTree, PathFinderRouteTree>> sinkTreeFactory;
+
+	/** The BEL pins the swapped cell pins have been moved to */
+	private final Map<CellPin, BelPin> swappedPins;
+
+	private long numSwaps;
+
+	/**
+	 * Creates a LUT pin swapper for a design.
+	 * @param design the cell design being routed
+	 * @param sinkTreeFactory creates the sink tree of a net's sink wire, in the same way the inter-site routes'
+	 *                        sink trees were created
+	 */
+	public LutPinSwapper(CellDesign design,
+						 BiFunction<CellNet, Wire, Map.Entry<PathFinderRouteTree, PathFinderRouteTree>> sinkTreeFactory) {
+		this.design = design;
+		this.sinkTreeFactory = sinkTreeFactory;
+		this.swappedPins = new LinkedHashMap<>();
+	}
+
+	/**
+	 * Moves the unrouted LUT input sinks of an inter-site route to cheaper equivalent pins. The sinks to route must
+	 * already be detached from the route tree.
+	 * @param intersiteRoute the inter-site route
+	 * @param wireUsage the wire usage of the current PathFinder iteration
+	 * @return the number of sinks that were moved
+	 */
+	public int swapPins(IntersiteRoute intersiteRoute, WireUsageStore wireUsage) {
+		if (intersiteRoute.isStatic() || intersiteRoute.isGlobalClk())
+			return 0;
+
+		int swapped = 0;
+		for (PathFinderRouteTree sinkTree : new ArrayList<>(intersiteRoute.getSinksToRoute())) {
+			if (swapPin(intersiteRoute, sinkTree, wireUsage))
+				swapped++;
+		}
+		numSwaps += swapped;
+		return swapped;
+	}
+
+	private boolean swapPin(IntersiteRoute intersiteRoute, PathFinderRouteTree sinkTree, WireUsageStore wireUsage) {
+		assert (sinkTree.getParent() == null);
+
+		CellPin cellPin = getSwappablePin(intersiteRoute, sinkTree);
+		if (cellPin == null || swappedPins.containsKey(cellPin))
+			return false;
+		BelPin belPin = getMappedBelPin(cellPin);
+
+		// Find the cheapest unused input of the LUT
+		Set<BelPin> usedBelPins = getUsedBelPins(cellPin.getCell());
+		double bestCost = getSinkCost(intersiteRoute, sinkTree, wireUsage);
+		BelPin bestBelPin = null;
+		RouteTree bestIntrasiteTree = null;
+		Map.Entry<PathFinderRouteTree, PathFinderRouteTree> bestSinkTree = null;
+		for (BelPin candidate : belPin.getBel().getSinks()) {
+			if (!isLutInput(candidate) || usedBelPins.contains(candidate))
+				continue;
+
+			RouteTree intrasiteTree = createIntrasiteTree(candidate);
+			if (intrasiteTree == null)
+				continue;
+			SitePin sitePin = intrasiteTree.getWire().getReverseConnectedPin();
+			Map.Entry<PathFinderRouteTree, PathFinderRouteTree> candidateSinkTree =
+					sinkTreeFactory.apply(intersiteRoute.getNet(), sitePin.getExternalWire());
+			if (!isAvailable(intersiteRoute, candidateSinkTree.getKey()))
+				continue;
+
+			double cost = getSinkCost(intersiteRoute, candidateSinkTree.getKey(), wireUsage);
+			if (cost < bestCost) {
+				bestCost = cost;
+				bestBelPin = candidate;
+				bestIntrasiteTree = intrasiteTree;
+				bestSinkTree = candidateSinkTree;
+			}
+		}
+		if (bestBelPin == null)
+			return false;
+
+		movePin(intersiteRoute, sinkTree, cellPin, bestBelPin, bestIntrasiteTree, bestSinkTree);
+		return true;
+	}
+
+	/**
+	 * Moves a cell pin to the BEL pin it was swapped to in an earlier run, such as a run saved in a route checkpoint.
+	 * The sink of the cell pin must not be routed yet.
+	 * @param intersiteRoute the inter-site route of the cell pin's net
+	 * @param cellPin the cell pin
+	 * @param belPin the BEL pin to move the cell pin to
+	 * @return true if the cell pin was moved, or false if the sink of the cell pin can't be moved to the BEL pin
+	 */
+	public boolean restoreSwap(IntersiteRoute intersiteRoute, CellPin cellPin, BelPin belPin) {
+		PathFinderRouteTree sinkTree = null;
+		for (PathFinderRouteTree sink : intersiteRoute.getSinksToRoute()) {
+			if (getSwappablePin(intersiteRoute, sink) == cellPin)
+				sinkTree = sink;
+		}
+		if (sinkTree == null || swappedPins.containsKey(cellPin))
+			return false;
+
+		BelPin oldBelPin = getMappedBelPin(cellPin);
+		if (belPin.getBel() != oldBelPin.getBel() || !isLutInput(belPin)
+				|| getUsedBelPins(cellPin.getCell()).contains(belPin))
+			return false;
+
+		RouteTree intrasiteTree = createIntrasiteTree(belPin);
+		if (intrasiteTree == null)
+			return false;
+		SitePin sitePin = intrasiteTree.getWire().getReverseConnectedPin();
+		Map.Entry<PathFinderRouteTree, PathFinderRouteTree> newSinkTree =
+				sinkTreeFactory.apply(intersiteRoute.getNet(), sitePin.getExternalWire());
+		if (!isAvailable(intersiteRoute, newSinkTree.getKey()))
+			return false;
+
+		movePin(intersiteRoute, sinkTree, cellPin, belPin, intrasiteTree, newSinkTree);
+		return true;
+	}
+
+	/**
+	 * Moves a cell pin and the sink of an inter-site route to a new BEL pin.
+	 */
+	private void movePin(IntersiteRoute intersiteRoute, PathFinderRouteTree sinkTree, CellPin cellPin, BelPin belPin,
+						 RouteTree intrasiteTree, Map.Entry<PathFinderRouteTree, PathFinderRouteTree> newSinkTree) {
+		moveCellPin(cellPin, belPin, intrasiteTree);
+
+		// Replace the sink, and keep other nets from searching the wires of the new one
+		intersiteRoute.replaceSink(sinkTree, newSinkTree.getKey(), newSinkTree.getValue());
+		Iterable<PathFinderRouteTree> typed = newSinkTree.getKey().typedIterator();
+		for (PathFinderRouteTree rt : typed) {
+			design.addReservedNode(rt.getWire(), intersiteRoute.getNet());
+		}
+
+		// Release the wires of the old sink, unless the route still uses them
+		Set<Wire> usedWires = new HashSet<>();
+		typed = intersiteRoute.getRouteTree().typedIterator();
+		for (PathFinderRouteTree rt : typed) {
+			usedWires.add(rt.getWire());
+		}
+		for (PathFinderRouteTree sink : intersiteRoute.getSinkRouteTrees()) {
+			typed = sink.typedIterator();
+			for (PathFinderRouteTree rt : typed) {
+				usedWires.add(rt.getWire());
+			}
+		}
+		typed = sinkTree.typedIterator();
+		for (PathFinderRouteTree rt : typed) {
+			if (!usedWires.contains(rt.getWire()))
+				design.removeReservedNode(rt.getWire());
+		}
+
+		swappedPins.put(cellPin, belPin);
+	}
+
+	/**
+	 * Maps a LUT input cell pin to another input of the same LUT, and moves the intra-site route of the cell pin's
+	 * net from the old BEL pin to the new one.
+	 * @param cellPin the cell pin
+	 * @param belPin the new BEL pin
+	 * @param intrasiteTree the intra-site route tree from a site pin to the new BEL pin
+	 */
+	static void moveCellPin(CellPin cellPin, BelPin belPin, RouteTree intrasiteTree) {
+		CellNet net = cellPin.getNet();
+		BelPin oldBelPin = getMappedBelPin(cellPin);
+		RouteTree oldBelPinTree = net.getBelPinRouteTrees().get(oldBelPin);
+		if (oldBelPinTree != null) {
+			net.removeSinkRouteTree(oldBelPin);
+			SitePin oldSitePin = oldBelPinTree.getRoot().getWire().getReverseConnectedPin();
+			if (oldSitePin != null)
+				net.removeSinkRouteTree(oldSitePin);
+		}
+
+		net.addSinkRouteTree(intrasiteTree.getWire().getReverseConnectedPin(), intrasiteTree);
+		for (RouteTree rt : intrasiteTree) {
+			if (rt.isLeaf())
+				net.addSinkRouteTree(belPin, rt);
+		}
+		cellPin.clearPinMappings();
+		cellPin.mapToBelPins(Collections.singletonList(belPin));
+	}
+
+	/**
+	 * Gets the cell pin of a sink, if the sink leads to a single input of a LUT that can be swapped.
+	 * @return the cell pin, or null if the sink can't be swapped
+	 */
+	private CellPin getSwappablePin(IntersiteRoute intersiteRoute, PathFinderRouteTree sinkTree) {
+		Wire terminalWire = intersiteRoute.getTerminalTree(sinkTree).getWire();
+		List<CellPin> cellPins = intersiteRoute.getSinkCellPins(terminalWire);
+		if (cellPins == null || cellPins.size() != 1)
+			return null;
+		CellPin cellPin = cellPins.get(0);
+		if (cellPin.isPseudoPin() || !cellPin.getCell().isLut() || cellPin.getMappedBelPins().size() != 1)
+			return null;
+		BelPin belPin = getMappedBelPin(cellPin);
+		if (!isLutInput(belPin) || !isOtherLutEmpty(belPin.getBel()))
+			return null;
+
+		// The intra-site route of the net is moved with the cell pin
+		if (cellPin.getNet().getBelPinRouteTrees().get(belPin) == null)
+			return null;
+		return cellPin;
+	}
+
+	private static BelPin getMappedBelPin(CellPin cellPin) {
+		return cellPin.getMappedBelPins().iterator().next();
+	}
+
+	private static Set<BelPin> getUsedBelPins(Cell cell) {
+		Set<BelPin> usedBelPins = new HashSet<>();
+		for (CellPin pin : cell.getPins()) {
+			usedBelPins.addAll(pin.getMappedBelPins());
+		}
+		return usedBelPins;
+	}
+
+	/**
+	 * Gets the cost of routing to a sink tree: the lowest PathFinder cost of the wires that drive the first wire of
+	 * the tree, or {@link Double#MAX_VALUE} if none of them can be used by the route.
+	 */
+	private double getSinkCost(IntersiteRoute intersiteRoute, PathFinderRouteTree sinkTree, WireUsageStore wireUsage) {
+		double cost = Double.MAX_VALUE;
+		for (Connection connection : sinkTree.getWire().getReverseWireConnections()) {
+			Wire driver = connection.getSinkWire();
+			if (design.isWireAvailable(intersiteRoute.getNet(), driver))
+				cost = Math.min(cost, wireUsage.getPFCost(driver, intersiteRoute));
+		}
+		return cost;
+	}
+
+	/**
+	 * Checks that none of the wires of a sink tree are reserved for another net.
+	 */
+	private boolean isAvailable(IntersiteRoute intersiteRoute, PathFinderRouteTree sinkTree) {
+		Iterable<PathFinderRouteTree> typed = sinkTree.typedIterator();
+		for (PathFinderRouteTree rt : typed) {
+			if (!design.isWireAvailable(intersiteRoute.getNet(), rt.getWire()))
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean isLutInput(BelPin belPin) {
+		return belPin.getName().matches("A[1-6]");
+	}
+
+	/**
+	 * Checks whether the other LUT BEL of a LUT element (the 5LUT of a 6LUT, or the 6LUT of a 5LUT) is empty.
+	 */
+	private boolean isOtherLutEmpty(Bel lutBel) {
+		String name = lutBel.getName();
+		if (!name.matches("[A-D][56]LUT"))
+			return false;
+		String otherName = name.charAt(0) + (name.charAt(1) == '6' ? "5LUT" : "6LUT");
+		Bel otherBel = lutBel.getSite().getBel(otherName);
+		return otherBel == null || !design.isBelUsed(otherBel);
+	}
+
+	/**
+	 * Creates the intra-site route tree from a site pin to a LUT input BEL pin, by following the wires that drive
+	 * the BEL pin back to the site pin.
+	 * @return the tree of the site pin's wire, or null if the BEL pin isn't reached from a site pin by a single path
+	 */
+	static RouteTree createIntrasiteTree(BelPin belPin) {
+		List<Wire> wires = new ArrayList<>();
+		Wire wire = belPin.getWire();
+		wires.add(wire);
+		while (wire.getReverseConnectedPin() == null) {
+			Collection<Connection> reverseConnections = wire.getReverseWireConnections();
+			if (reverseConnections.size() != 1)
+				return null;
+			wire = reverseConnections.iterator().next().getSinkWire();
+			wires.add(wire);
+		}
+		Collections.reverse(wires);
+
+		RouteTree root = new RouteTree(wires.get(0));
+		RouteTree tree = root;
+		for (int i = 1; i < wires.size(); i++) {
+			Connection connection = tree.getWire().getWireConnection(wires.get(i));
+			if (connection == null)
+				return null;
+			tree = tree.connect(connection);
+		}
+		return root;
+	}
+
+	/**
+	 * Gets the number of sinks that have been moved to other LUT inputs.
+	 * @return the number of swaps
+	 */
+	public long getNumSwaps() {
+		return numSwaps;
+	}
+
+	/**
+	 * Gets the cell pins that have been swapped, and the BEL pins they were moved to.
+	 * @return the swapped pins
+	 */
+	public Map<CellPin, BelPin> getSwappedPins() {
+		return Collections.unmodifiableMap(swappedPins);
+	}
+}
@@ -2,16 +2,30 @@ package edu.byu.ece.rapidSmith.cad.route;
 
 import edu.byu.ece.rapidSmith.cad.route.mazerouter.AStarRouter;
 import edu.byu.ece.rapidSmith.cad.route.mazerouter.MazeRouter;
+import edu.byu.ece.rapidSmith.cad.route.mazerouter.RoutingGraph;
+import edu.byu.ece.rapidSmith.cad.route.mazerouter.RoutingLookahead;
+import edu.byu.ece.rapidSmith.cad.route.pathfinder.ConvergenceController;
+import edu.byu.ece.rapidSmith.cad.route.pathfinder.NetOrderingPolicy;
 import edu.byu.ece.rapidSmith.cad.route.pathfinder.PathFinder;
 import edu.byu.ece.rapidSmith.cad.route.pathfinder.PathFinderRouteTree;
-import edu.byu.ece.rapidSmith.cad.route.pathfinder.WireUsage;
+import edu.byu.ece.rapidSmith.cad.route.pathfinder.RouteCheckpoint;
+import edu.byu.ece.rapidSmith.cad.route.pathfinder.RoutingTelemetry;
+import edu.byu.ece.rapidSmith.cad.route.pathfinder.WireUsageStore;
+import edu.byu.ece.rapidSmith.cad.route.timing.DelayModel;
+import edu.byu.ece.rapidSmith.cad.route.timing.StaticTimingAnalyzer;
 import edu.byu.ece.rapidSmith.cad.pack.rsvpack.CadException;
 import edu.byu.ece.rapidSmith.design.subsite.*;
 import edu.byu.ece.rapidSmith.device.*;
 import edu.byu.ece.rapidSmith.device.families.FamilyInfo;
 import edu.byu.ece.rapidSmith.device.families.FamilyInfos;
+import edu.byu.ece.rapidSmith.util.VersionException;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 
 /**
@@ -27,6 +41,50 @@ public class RSVRoute {
 	private Set<Bel> gndSourceBels;
 	/** Whether to use site route-throughs. */
 	private boolean useRoutethroughs;
+	/** The number of threads PathFinder routes nets with. */
+	private int numThreads = 1;
+	/** Whether PathFinder only re-routes the congested branches of routes. */
+	private boolean incrementalReroute = false;
+	/** Whether the A* router uses the precomputed routing lookahead of the device. */
+	private boolean useLookahead = false;
+	/** Whether the routing lookahead is built when it has not been built for the device yet. */
+	private boolean buildLookahead = false;
+	/** Whether the A* router searches the compact routing graph of the device. */
+	private boolean useRoutingGraph = false;
+	/** Whether global clock nets are routed by the clock router before PathFinder starts. */
+	private boolean useClockRouter = false;
+	/** Whether sinks that can only be reached one way are connected before PathFinder starts. */
+	private boolean preRouteForcedSinks = true;
+	/** Whether congested LUT inputs may be moved to equivalent LUT input pins. */
+	private boolean swapLutPins = false;
+	/** Whether the maze routers measure the bytes they allocate. */
+	private boolean measureAllocations = false;
+	/** The margin (in tiles) of the nets' search windows, or -1 to search the whole device for every sink. */
+	private int searchWindowMargin = -1;
+	/** The delay model for timing-driven routing, or null to route without considering timing. */
+	private DelayModel delayModel = null;
+	/** The exponent the criticalities of sinks are raised to in timing-driven routing. */
+	private double criticalityExponent = 1;
+	/** The order PathFinder routes nets in, or null for PathFinder's default order. */
+	private NetOrderingPolicy orderingPolicy = null;
+	/** Whether unused LUTs near static sinks can be used as VCC/GND sources. */
+	private boolean useStaticSourceLuts = false;
+	/** The file PathFinder saves checkpoints to, or null to not save checkpoints. */
+	private Path checkpointFile = null;
+	/** The number of PathFinder iterations between checkpoints. */
+	private int checkpointInterval = 1;
+	/** The number of sinks at which nets are routed with the high-fanout strategy, or -1 to never use it. */
+	private int highFanoutThreshold = -1;
+	/** Decides when PathFinder stops negotiating, or null to use the default controller. */
+	private ConvergenceController convergenceController = null;
+	/** The directory routing telemetry is written to, or null to not collect telemetry. */
+	private Path telemetryDirectory = null;
+	/** Whether a congestion heat map is written every PathFinder iteration. */
+	private boolean heatMapEachIteration = false;
+	/** Whether the wire chains at the ends of routes are cached per tile type (and saved with the device). */
+	private boolean useTerminalTreeCache = false;
+	/** The cache of the wire chains at the ends of routes, loaded when the first routes are created. */
+	private TerminalTreeCache terminalTreeCache = null;
 
 	/**
 	 * Constructor for RSVRoute.
@@ -50,22 +108,278 @@ public class RSVRoute {
 		this(device, design, libCells, false, vccSourceBels, gndSourceBels);
 	}
 
+	/**
+	 * Sets the number of threads used to create the inter-site routes of the nets and to route nets within each
+	 * PathFinder iteration.
+	 * @param numThreads the number of threads (1 routes nets sequentially)
+	 */
+	public void setNumThreads(int numThreads) {
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * Sets whether PathFinder only rips up and re-routes the branches of routes that cross congested wires.
+	 * @param incrementalReroute whether to re-route incrementally
+	 */
+	public void setIncrementalReroute(boolean incrementalReroute) {
+		this.incrementalReroute = incrementalReroute;
+	}
+
+	/**
+	 * Sets whether the A* router estimates remaining costs with the device's precomputed routing lookahead instead
+	 * of the Manhattan distance. The lookahead is loaded from the part folder. If it has not been built, the Manhattan
+	 * distance is used unless building it is enabled with {@link #setBuildLookahead(boolean)}.
+	 * @param useLookahead whether to use the routing lookahead
+	 */
+	public void setUseLookahead(boolean useLookahead) {
+		this.useLookahead = useLookahead;
+	}
+
+	/**
+	 * Sets whether the routing lookahead is built (and saved to the part folder) when it is used but has not been
+	 * built for the device yet. Building it can take several minutes.
+	 * @param buildLookahead whether to build a missing lookahead
+	 */
+	public void setBuildLookahead(boolean buildLookahead) {
+		this.buildLookahead = buildLookahead;
+	}
+
+	/**
+	 * Sets whether the A* router searches the device's compact {@link RoutingGraph} instead of the connections of
+	 * the device's wires. The graph is built (and saved to the part folder) the first time it is used.
+	 * @param useRoutingGraph whether to use the routing graph
+	 */
+	public void setUseRoutingGraph(boolean useRoutingGraph) {
+		this.useRoutingGraph = useRoutingGraph;
+	}
+
+	/**
+	 * Sets whether global clock nets are routed on the dedicated clock network by the {@link ClockRouter} before
+	 * PathFinder starts. Their wires are reserved, and they are left out of PathFinder's negotiation unless the clock
+	 * router cannot reach all of their sinks.
+	 * @param useClockRouter whether to use the clock router
+	 */
+	public void setUseClockRouter(boolean useClockRouter) {
+		this.useClockRouter = useClockRouter;
+	}
+
+	/**
+	 * Sets whether sinks with only one possible route (such as carry chain and cascade connections, whose sink wire
+	 * chain leads back to a wire the net's route already starts with) are connected when the inter-site routes are
+	 * created. These sinks are never searched for by the maze router, and routes whose sinks are all connected this
+	 * way are left out of PathFinder's negotiation.
+	 * @param preRouteForcedSinks whether to pre-route forced sinks
+	 */
+	public void setPreRouteForcedSinks(boolean preRouteForcedSinks) {
+		this.preRouteForcedSinks = preRouteForcedSinks;
+	}
+
+	/**
+	 * Sets whether sinks at LUT inputs may be moved to equivalent inputs of the same LUT by the
+	 * {@link LutPinSwapper} when they are congested. The cell pin mappings of the LUTs are changed to match. Swapped
+	 * pins are recorded in route checkpoints, so a checkpoint with swapped pins must be resumed with swapping enabled.
+	 * @param swapLutPins whether to swap LUT pins
+	 */
+	public void setSwapLutPins(boolean swapLutPins) {
+		this.swapLutPins = swapLutPins;
+	}
+
+	/**
+	 * Sets the margin of the nets' search windows. The search for each sink is first restricted to the net's
+	 * bounding box expanded by the margin (which grows every PathFinder iteration).
+	 * @param searchWindowMargin the margin in tiles, or -1 to search the whole device for every sink
+	 */
+	public void setSearchWindowMargin(int searchWindowMargin) {
+		this.searchWindowMargin = searchWindowMargin;
+	}
+
+	/**
+	 * Sets whether to route timing-driven. A static timing analysis of the design gives each sink a criticality
+	 * before every PathFinder iteration, and the A* router blends the delay and congestion costs of wires by the
+	 * criticality of the sink it is routing.
+	 * @param timingDriven whether to route timing-driven
+	 */
+	public void setTimingDriven(boolean timingDriven) {
+		this.delayModel = timingDriven ? new DelayModel() : null;
+	}
+
+	/**
+	 * Sets the exponent the criticalities of sinks are raised to when routing timing-driven. Larger exponents route
+	 * only the connections closest to the critical path for delay.
+	 * @param criticalityExponent the exponent (1 by default; VPR uses values from 1 to 8)
+	 */
+	public void setCriticalityExponent(double criticalityExponent) {
+		this.criticalityExponent = criticalityExponent;
+	}
+
+	/**
+	 * Sets the order PathFinder routes nets in each iteration.
+	 * @param orderingPolicy the net ordering policy, or null to route nets with fewer sinks first
+	 */
+	public void setNetOrderingPolicy(NetOrderingPolicy orderingPolicy) {
+		this.orderingPolicy = orderingPolicy;
+	}
+
+	/**
+	 * Sets whether unused LUTs near the sinks of VCC/GND nets can be used as static sources, in addition to the
+	 * tie-off wires. LUTs that are used as sources are added to the design as static source cells.
+	 * @param useStaticSourceLuts whether to use LUTs as static sources
+	 */
+	public void setUseStaticSourceLuts(boolean useStaticSourceLuts) {
+		this.useStaticSourceLuts = useStaticSourceLuts;
+	}
+
+	/**
+	 * Sets the number of sinks at which nets are routed with the maze router's high-fanout strategy, which clusters
+	 * the sinks and searches for each sink from the nearby part of the route tree only.
+	 * @param highFanoutThreshold the number of sinks, or -1 to never use the high-fanout strategy
+	 */
+	public void setHighFanoutThreshold(int highFanoutThreshold) {
+		this.highFanoutThreshold = highFanoutThreshold;
+	}
+
+	/**
+	 * Sets the controller that limits PathFinder's iterations and run time, detects stalls and adapts the congestion
+	 * factors. Routing throws a {@link CadException} (after printing a report of the remaining congestion) if the
+	 * controller stops PathFinder before all congestion is resolved.
+	 * @param convergenceController the convergence controller, or null to use the default one
+	 */
+	public void setConvergenceController(ConvergenceController convergenceController) {
+		this.convergenceController = convergenceController;
+	}
+
+	/**
+	 * Sets where per-iteration routing statistics and congestion heat maps are written. See {@link RoutingTelemetry}
+	 * for the files that are written.
+	 * @param telemetryDirectory the directory to write to, or null to not collect telemetry
+	 * @param heatMapEachIteration whether to write a congestion heat map every PathFinder iteration
+	 */
+	public void setTelemetry(Path telemetryDirectory, boolean heatMapEachIteration) {
+		this.telemetryDirectory = telemetryDirectory;
+		this.heatMapEachIteration = heatMapEachIteration;
+	}
+
+	/**
+	 * Sets whether the {@link TerminalTreeCache} of the wire chains at the sources and sinks of routes is loaded from
+	 * and saved to the part folder of the device. If not (the default), the chains are only shared between the routes
+	 * of this run.
+	 * @param useTerminalTreeCache whether to load and save the terminal tree cache
+	 */
+	public void setUseTerminalTreeCache(boolean useTerminalTreeCache) {
+		this.useTerminalTreeCache = useTerminalTreeCache;
+	}
+
+	/**
+	 * Gets the terminal tree cache, loading it the first time it's needed. If the cache isn't used, an empty cache
+	 * that is never saved is returned. The cache is created lazily without locking, so it must be created before
+	 * routes are built from several threads (see {@link #createIntersiteRoutes(List)}).
+	 */
+	private TerminalTreeCache getTerminalTrees() {
+		if (terminalTreeCache == null)
+			terminalTreeCache = useTerminalTreeCache ? TerminalTreeCache.load(device) : TerminalTreeCache.empty(device);
+		return terminalTreeCache;
+	}
+
+	/**
+	 * Sets where and how often PathFinder saves checkpoints of its negotiation state. A run that fails or is
+	 * interrupted can be continued from the last checkpoint with {@link #resumeDesign(Path)}.
+	 * @param checkpointFile the file to save checkpoints to, or null to not save checkpoints
+	 * @param checkpointInterval the number of PathFinder iterations between checkpoints
+	 */
+	public void setCheckpoint(Path checkpointFile, int checkpointInterval) {
+		this.checkpointFile = checkpointFile;
+		this.checkpointInterval = checkpointInterval;
+	}
+
+	/**
+	 * Sets whether the maze routers measure the bytes they allocate while routing. The totals are reported when
+	 * PathFinder finishes.
+	 * @param measureAllocations whether to measure allocations
+	 */
+	public void setMeasureAllocations(boolean measureAllocations) {
+		this.measureAllocations = measureAllocations;
+	}
+
+	/**
+	 * Creates the maze router to use in the inner loop of PathFinder.
+	 * @param wireUsage the wire usage store shared with PathFinder
+	 * @return the maze router
+	 */
+	private MazeRouter createMazeRouter(WireUsageStore wireUsage) {
+		MazeRouter mazeRouter = new AStarRouter(design, wireUsage, useRoutethroughs);
+		if (useLookahead) {
+			RoutingLookahead lookahead = buildLookahead ? RoutingLookahead.loadOrBuild(device) : RoutingLookahead.load(device);
+			if (lookahead == null)
+				System.err.println("[WARNING] Routing with the Manhattan distance instead of the routing lookahead");
+			mazeRouter.setLookahead(lookahead);
+		}
+		if (useRoutingGraph)
+			mazeRouter.setRoutingGraph(RoutingGraph.get(device));
+		mazeRouter.setMeasureAllocations(measureAllocations);
+		mazeRouter.setDelayModel(delayModel);
+		mazeRouter.setHighFanoutThreshold(highFanoutThreshold);
+		return mazeRouter;
+	}
+
+	/**
+	 * Routes the global clock nets with the {@link ClockRouter}, if it is used.
+	 * @param intersiteRoutes the inter-site routes of the nets to route
+	 * @return the inter-site routes that are left for PathFinder
+	 */
+	private ArrayList<IntersiteRoute> routeClockNets(ArrayList<IntersiteRoute> intersiteRoutes) {
+		if (!useClockRouter)
+			return intersiteRoutes;
+		return new ClockRouter(design).routeClockNets(intersiteRoutes);
+	}
+
+	/**
+	 * Applies the router options to a PathFinder instance.
+	 * @param pathFinder the PathFinder instance to configure
+	 */
+	private void configure(PathFinder pathFinder) {
+		pathFinder.setNumThreads(numThreads);
+		pathFinder.setIncrementalReroute(incrementalReroute);
+		pathFinder.setSearchWindowMargin(searchWindowMargin);
+		if (delayModel != null) {
+			StaticTimingAnalyzer timingAnalyzer = new StaticTimingAnalyzer(design, delayModel);
+			timingAnalyzer.setCriticalityExponent(criticalityExponent);
+			pathFinder.setTimingAnalyzer(timingAnalyzer);
+		}
+		if (orderingPolicy != null)
+			pathFinder.setNetOrderingPolicy(orderingPolicy);
+		if (swapLutPins)
+			pathFinder.setLutPinSwapper(new LutPinSwapper(design, this::createSinkRouteTree));
+		pathFinder.setUseStaticSourceLuts(useStaticSourceLuts);
+		pathFinder.setCheckpoint(checkpointFile, checkpointInterval);
+		if (convergenceController != null)
+			pathFinder.setConvergenceController(convergenceController);
+		if (telemetryDirectory != null) {
+			RoutingTelemetry telemetry = new RoutingTelemetry(device, telemetryDirectory);
+			telemetry.setHeatMapEachIteration(heatMapEachIteration);
+			pathFinder.setTelemetry(telemetry);
+		}
+	}
+
 
 	public void routeDesign(double presentCongestionFactor, double presentCongestionMultFactor, double historyFactor) throws CadException {
 		// Perform necessary initialization, creating inter-site route objects for each net.
 		ArrayList<IntersiteRoute> intersiteRoutes = createIntersiteRoutes();
 
-		// Create a map from wires to WireUsage to keep track of how wires are used
-		Map<Wire, WireUsage> wireUsageMap = new HashMap<>();
+		// Route the global clock nets on the clock network, outside of PathFinder
+		intersiteRoutes = routeClockNets(intersiteRoutes);
+
+		// Create a wire usage store to keep track of how wires are used
+		WireUsageStore wireUsage = new WireUsageStore(device);
 
 		// Choose a maze router to use
-		MazeRouter mazeRouter = new AStarRouter(design, wireUsageMap, useRoutethroughs);
+		MazeRouter mazeRouter = createMazeRouter(wireUsage);
 
 		// Start the pathfinder algorithm
-		PathFinder pathFinder = new PathFinder(device, libCells, design, mazeRouter, wireUsageMap, vccSourceBels, gndSourceBels);
+		PathFinder pathFinder = new PathFinder(device, libCells, design, mazeRouter, wireUsage, vccSourceBels, gndSourceBels);
 		pathFinder.setPresentCongestionFactor(presentCongestionFactor);
 		pathFinder.setPresentCongestionMultFactor(presentCongestionMultFactor);
 		pathFinder.setHistoryFactor(historyFactor);
+		configure(pathFinder);
 		pathFinder.execute(intersiteRoutes);
 	}
 
@@ -78,17 +392,82 @@ public class RSVRoute {
 		// Perform necessary initialization, creating inter-site route objects for each net.
 		ArrayList<IntersiteRoute> intersiteRoutes = createIntersiteRoutes();
 
-		// Create a map from wires to WireUsage to keep track of how wires are used
-		Map<Wire, WireUsage> wireUsageMap = new HashMap<>();
+		// Route the global clock nets on the clock network, outside of PathFinder
+		intersiteRoutes = routeClockNets(intersiteRoutes);
+
+		// Create a wire usage store to keep track of how wires are used
+		WireUsageStore wireUsage = new WireUsageStore(device);
 
 		// Choose a maze router to use
-		MazeRouter mazeRouter = new AStarRouter(design, wireUsageMap, useRoutethroughs);
+		MazeRouter mazeRouter = createMazeRouter(wireUsage);
 
 		// Start the pathfinder algorithm
-		PathFinder pathFinder = new PathFinder(device, libCells, design, mazeRouter, wireUsageMap, vccSourceBels, gndSourceBels);
+		PathFinder pathFinder = new PathFinder(device, libCells, design, mazeRouter, wireUsage, vccSourceBels, gndSourceBels);
+		configure(pathFinder);
 		pathFinder.execute(intersiteRoutes);
 	}
 
+	/**
+	 * Routes only the nets of the cell-design that are not fully routed (ECO routing), such as after a small netlist
+	 * or placement change. The inter-site routes of fully routed nets are preserved and their wires cannot be used by
+	 * the nets being routed. Routed nets near the nets to route may optionally be ripped up and routed again.
+	 * @param ripUpRadius the distance in tiles from the nets to route within which routed nets are ripped up,
+	 *                    or -1 to preserve every routed net
+	 */
+	public void routeDesignEco(int ripUpRadius) throws CadException {
+		// Rip up nets near the changed nets, and fix the routes of the remaining routed nets
+		EcoRouting ecoRouting = new EcoRouting(design, ripUpRadius);
+		ecoRouting.prepare();
+
+		// Create inter-site route objects for the nets that aren't routed
+		ArrayList<IntersiteRoute> intersiteRoutes = createIntersiteRoutes();
+		if (!intersiteRoutes.isEmpty()) {
+			// Create a wire usage store to keep track of how wires are used
+			WireUsageStore wireUsage = new WireUsageStore(device);
+
+			// Choose a maze router to use
+			MazeRouter mazeRouter = createMazeRouter(wireUsage);
+
+			// Start the pathfinder algorithm
+			PathFinder pathFinder = new PathFinder(device, libCells, design, mazeRouter, wireUsage, vccSourceBels, gndSourceBels);
+			configure(pathFinder);
+			pathFinder.execute(routeClockNets(intersiteRoutes));
+		}
+		ecoRouting.printSummary(intersiteRoutes.size());
+	}
+
+	/**
+	 * Continues routing the cell-design from a checkpoint saved by an earlier run of the router on the same design.
+	 * The routes and congestion history of the earlier run are restored, and PathFinder continues from the iteration
+	 * the checkpoint was saved at. The current router options are used, so they may differ from the earlier run's.
+	 * @param checkpointFile the checkpoint file
+	 */
+	public void resumeDesign(Path checkpointFile) throws CadException {
+		RouteCheckpoint checkpoint;
+		try {
+			checkpoint = RouteCheckpoint.load(checkpointFile);
+		} catch (IOException | VersionException e) {
+			throw new CadException("Could not load routing checkpoint " + checkpointFile + ": " + e.getMessage());
+		}
+
+		// Perform necessary initialization, creating inter-site route objects for each net.
+		ArrayList<IntersiteRoute> intersiteRoutes = createIntersiteRoutes();
+
+		// Route the global clock nets on the clock network, outside of PathFinder
+		intersiteRoutes = routeClockNets(intersiteRoutes);
+
+		// Create a wire usage store to keep track of how wires are used
+		WireUsageStore wireUsage = new WireUsageStore(device);
+
+		// Choose a maze router to use
+		MazeRouter mazeRouter = createMazeRouter(wireUsage);
+
+		// Resume the pathfinder algorithm
+		PathFinder pathFinder = new PathFinder(device, libCells, design, mazeRouter, wireUsage, vccSourceBels, gndSourceBels);
+		configure(pathFinder);
+		pathFinder.resume(intersiteRoutes, checkpoint);
+	}
+
 	/**
 	 * Creates an initial {@link RouteTree} object for the specified {@link CellNet}.
 	 * This is the beginning of the physical route.
@@ -112,22 +491,9 @@ public class RSVRoute {
 	 * @param sinkWire the true terminal (sink wire)
 	 */
 	private Map.Entry<PathFinderRouteTree, PathFinderRouteTree> createSinkRouteTree(CellNet net, Wire sinkWire) {
-		Wire wire = sinkWire;
-		Stack<Wire> wiresForTree = new Stack<>();
-
-		while (wire.getReverseWireConnections().size() == 1) {
-			Connection reverseConn = wire.getReverseWireConnections().iterator().next();
-
-			if (!reverseConn.isRouteThrough()) {
-				// Don't go back through site route-throughs. This can give us undesired results. For example,
-				// we don't want to go from the IOB_PADOUT1 of an IOB33S to IOB_DIFFO_IN1. This would give us the
-				// wrong wire to route to.
-				wiresForTree.push(wire);
-				wire = reverseConn.getSinkWire();
-			} else {
-				break;
-			}
-		}
+		// The chain of wires that can only be reached one way depends only on the device, so it comes from the cache
+		Map.Entry<PathFinderRouteTree, PathFinderRouteTree> sinkChain = getTerminalTrees().createSinkTree(sinkWire);
+		Wire wire = sinkChain.getKey().getWire();
 
 		// If the net is a normal global clock net that is being used, the sink wire should be CLK_L0 or CLK_L1
 		// (at least if it is routing to a slice). If this is an RM where the clock net isn't being used, it will
@@ -141,9 +507,11 @@ public class RSVRoute {
 
 			// Assuming there will only ever be one GFAN connecting to this wire.
 			assert (filteredReverseConns.size() == 1);
-			wiresForTree.push(wire);
+			Wire gfanWire = filteredReverseConns.iterator().next().getSinkWire();
 
-			wire = filteredReverseConns.iterator().next().getSinkWire();
+			PathFinderRouteTree sinkRouteTree = new PathFinderRouteTree(gfanWire);
+			sinkRouteTree.connect(gfanWire.getWireConnection(wire), sinkChain.getKey());
+			sinkChain = new AbstractMap.SimpleEntry<>(sinkRouteTree, sinkChain.getValue());
 		}
 
 		// TODO: If an RM doesn't use a global clock, it will be routed to a LUT's input pin.
@@ -151,18 +519,42 @@ public class RSVRoute {
 		// to a GCLK wire. This is probably using a GFAN bounce pip. Figure out if this is the only way to get
 		// there, and if so, make this the new sink wire to be routing to.
 
-		// Create the route tree starting at the first wire that has multiple forward wire connections
-		PathFinderRouteTree sinkRouteTree = new PathFinderRouteTree(wire);
-		PathFinderRouteTree tree = sinkRouteTree;
-		while (!wire.equals(sinkWire)) {
-			assert (wiresForTree.size() > 0);
-			Connection forwardConnection = wire.getWireConnection(wiresForTree.pop());
-			tree = tree.connect(forwardConnection);
-			wire = forwardConnection.getSinkWire();
+		// return a map entry from the sink route tree to the leaf node (the terminal) of the sink route tree
+		return sinkChain;
+	}
+
+	/**
+	 * Creates the inter-site routes of logic nets. The routes of different nets are independent, so with more than
+	 * one thread they are created in parallel on a fork-join pool. The routes are returned in the order of the nets
+	 * either way, so the results are identical to creating them one at a time.
+	 * @param nets the logic nets
+	 * @return the inter-site route of each net
+	 */
+	private List<IntersiteRoute> createIntersiteRoutes(List<CellNet> nets) throws CadException {
+		if (numThreads <= 1) {
+			List<IntersiteRoute> intersiteRoutes = new ArrayList<>(nets.size());
+			for (CellNet net : nets) {
+				intersiteRoutes.add(createIntersiteRoute(net));
+			}
+			return intersiteRoutes;
 		}
 
-		// return a map entry from the sink route tree to the leaf node (the terminal) of the sink route tree
-		return new AbstractMap.SimpleEntry<>(sinkRouteTree, tree);
+		// Create the terminal tree cache before the routes are built in parallel, so the threads share one cache
+		getTerminalTrees();
+		ForkJoinPool pool = new ForkJoinPool(numThreads);
+		try {
+			Callable<List<IntersiteRoute>> task = () -> nets.parallelStream()
+					.map(this::createIntersiteRoute)
+					.collect(Collectors.toList());
+			return pool.submit(task).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CadException("Interrupted while creating inter-site routes");
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Error creating inter-site routes in parallel", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
 	}
 
 	/**
@@ -292,12 +684,7 @@ public class RSVRoute {
 	 * @return the source route tree.
 	 */
 	private PathFinderRouteTree createSourceRouteTree(Wire sourceWire) {
-		PathFinderRouteTree sourceTree = new PathFinderRouteTree(sourceWire);
-
-		while (sourceTree.getWire().getWireConnections().size() == 1) {
-			sourceTree = sourceTree.connect(sourceTree.getWire().getWireConnections().iterator().next());
-		}
-		return sourceTree;
+		return getTerminalTrees().createSourceTree(sourceWire);
 	}
 
 	private IntersiteRoute createIntersiteRoute(CellNet net) {
@@ -522,10 +909,7 @@ public class RSVRoute {
 		logicNets.addAll(aliasNets);
 
 		// Create inter-site route objects for all other nets.
-		for (CellNet net : logicNets) {
-			IntersiteRoute intersiteRoute = createIntersiteRoute(net);
-			intersiteRoutes.add(intersiteRoute);
-		}
+		intersiteRoutes.addAll(createIntersiteRoutes(new ArrayList<>(logicNets)));
 
 		// Add all sink wires to the design's reserved wires (to prevent other nets from searching them)
 		for (IntersiteRoute intersiteRoute : intersiteRoutes) {
@@ -545,6 +929,139 @@ public class RSVRoute {
 			}
 		}
 
+		// Connect the sinks that can only be reached one way, so PathFinder doesn't search for them
+		if (preRouteForcedSinks)
+			preRouteForcedSinks(intersiteRoutes);
+
+		// Keep the chains found for this design for later runs
+		if (useTerminalTreeCache)
+			getTerminalTrees().saveIfModified();
+
 		return intersiteRoutes;
 	}
+
+	/**
+	 * Connects the forced sinks of the inter-site routes. A sink is forced if the first wire of its sink tree is
+	 * already in the route tree the maze router would start from: every wire of the sink tree has only one driver,
+	 * so the route to the sink is already known. This covers direct connections (like a COUT to CIN net), where the
+	 * sink tree starts at the source wire. A sink is also forced if its terminal wire is in the route tree, but the
+	 * first wire of its sink tree isn't (a pseudo direct connection): the sink tree then starts behind a wire of the
+	 * route tree, and only the part of it in the route tree is used. The wires of these routes are already reserved
+	 * for their nets.
+	 * @param intersiteRoutes the inter-site routes
+	 */
+	private void preRouteForcedSinks(List<IntersiteRoute> intersiteRoutes) {
+		int numForcedSinks = 0;
+		int numForcedRoutes = 0;
+		for (IntersiteRoute intersiteRoute : intersiteRoutes) {
+			if (intersiteRoute.isStatic())
+				continue;
+			int numSinks = preRouteForcedSinks(intersiteRoute);
+			numForcedSinks += numSinks;
+			if (numSinks > 0 && intersiteRoute.getSinksToRoute().isEmpty())
+				numForcedRoutes++;
+		}
+
+		if (numForcedSinks > 0) {
+			System.out.println("[INFO] Pre-routed " + numForcedSinks + " forced sinks (" + numForcedRoutes
+					+ " nets need no search)");
+		}
+	}
+
+	/**
+	 * Connects the forced sinks of an inter-site route, in the same way the maze router would connect them.
+	 * @return the number of sinks connected
+	 */
+	static int preRouteForcedSinks(IntersiteRoute intersiteRoute) {
+		PathFinderRouteTree startTree = intersiteRoute.getRouteTree();
+		Map<Wire, PathFinderRouteTree> startTrees = getTreesByWire(startTree);
+		Set<PathFinderRouteTree> terminals = new HashSet<>();
+		for (PathFinderRouteTree sink : intersiteRoute.getRoutedSinks()) {
+			terminals.add(intersiteRoute.getTerminalTree(sink));
+		}
+
+		int numForced = 0;
+		for (PathFinderRouteTree sink : new ArrayList<>(intersiteRoute.getSinksToRoute())) {
+			PathFinderRouteTree sinkTree = sink;
+			PathFinderRouteTree tree = startTrees.get(sinkTree.getWire());
+			if (tree == null) {
+				PathFinderRouteTree terminal = intersiteRoute.getTerminalTree(sinkTree);
+				if (!startTrees.containsKey(terminal.getWire()))
+					continue;
+
+				// Pseudo direct connection. Every wire of the sink tree has only one driver, so the wires from the
+				// first one in the route tree to the terminal are all in the route tree. Use the sink tree from there.
+				sinkTree = getFirstTreeIn(sinkTree, startTrees);
+				sinkTree.getParent().disconnect(sinkTree);
+				intersiteRoute.replaceSink(sink, sinkTree, terminal);
+				tree = startTrees.get(sinkTree.getWire());
+			}
+
+			if (tree.getParent() == null) {
+				// Direct connection. The sink tree starts with the route's source wire, so it becomes the new route
+				// tree, keeping the sinks already connected to the old one.
+				moveChildren(tree, sinkTree);
+				startTree = sinkTree;
+				startTrees = getTreesByWire(startTree);
+			} else {
+				// Put the sink tree in place of the tree with its wire
+				PathFinderRouteTree parent = tree.getParent();
+				Connection connection = tree.getConnection();
+				parent.disconnect(tree);
+				moveChildren(tree, sinkTree);
+				parent.connect(connection, sinkTree);
+				startTrees.putAll(getTreesByWire(sinkTree));
+			}
+
+			PathFinderRouteTree terminal = intersiteRoute.getTerminalTree(sinkTree);
+			terminals.add(terminal);
+			for (CellPin cellPin : intersiteRoute.getSinkCellPins(terminal.getWire())) {
+				cellPin.getNet().addRoutedSink(cellPin);
+			}
+			intersiteRoute.getSinksToRoute().remove(sinkTree);
+			intersiteRoute.getRoutedSinks().add(sinkTree);
+			numForced++;
+		}
+
+		if (numForced > 0) {
+			startTree.prune(terminals);
+			for (PathFinderRouteTree leaf : terminals) {
+				leaf.markLeaf();
+			}
+			intersiteRoute.setRouteTree(startTree);
+		}
+		return numForced;
+	}
+
+	/**
+	 * Moves the children of a tree to another tree with the same wire.
+	 */
+	private static void moveChildren(PathFinderRouteTree from, PathFinderRouteTree to) {
+		for (RouteTree child : new ArrayList<>(from.getChildren())) {
+			Connection connection = child.getConnection();
+			from.disconnect(child);
+			to.connect(connection, child);
+		}
+	}
+
+	/**
+	 * Gets the first tree of a sink tree whose wire is in a route tree.
+	 */
+	private static PathFinderRouteTree getFirstTreeIn(PathFinderRouteTree sinkTree, Map<Wire, PathFinderRouteTree> trees) {
+		Iterable<PathFinderRouteTree> typed = sinkTree.typedIterator();
+		for (PathFinderRouteTree rt : typed) {
+			if (trees.containsKey(rt.getWire()))
+				return rt;
+		}
+		throw new AssertionError("Sink tree is not in the route tree");
+	}
+
+	private static Map<Wire, PathFinderRouteTree> getTreesByWire(PathFinderRouteTree tree) {
+		Map<Wire, PathFinderRouteTree> trees = new HashMap<>();
+		Iterable<PathFinderRouteTree> typed = tree.typedIterator();
+		for (PathFinderRouteTree rt : typed) {
+			trees.put(rt.getWire(), rt);
+		}
+		return trees;
+	}
 }
@@ -0,0 +1,342 @@
+package edu.byu.ece.rapidSmith.cad.route;
+
+import com.caucho.hessian.io.Hessian2Input;
+import com.caucho.hessian.io.Hessian2Output;
+import edu.byu.ece.rapidSmith.RSEnvironment;
+import edu.byu.ece.rapidSmith.cad.route.pathfinder.PathFinderRouteTree;
+import edu.byu.ece.rapidSmith.device.*;
+import edu.byu.ece.rapidSmith.util.FileTools;
+import edu.byu.ece.rapidSmith.util.Version;
+import edu.byu.ece.rapidSmith.util.VersionException;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * A cache of the single-path wire chains at the ends of inter-site routes. The sink chain of a sink wire is the
+ * chain of wires leading to it that each have only one way to be reached, and the source chain of a source wire is
+ * the chain of wires after it that each have only one way to continue. The router starts and ends its searches at
+ * the ends of these chains.
+ *
+ * The chains only depend on the device, so they are computed once per (tile type, wire) and stored as wire enums
+ * with row and column offsets from the tile of the pin's wire. Route trees for other pins of the same type are then
+ * made from the stored chain without searching for the wires of the chain again. A stored chain is checked against
+ * the device as it is made: every wire must connect to the next one, and each wire must have the same number of
+ * drivers (or sinks, for source chains) the walk would have stopped or continued on. The chain is walked the slow way
+ * if the stored chain does not fit, such as in tiles at the edge of the device or next to a column break, where the
+ * same tile type can have a different number of connections. The cache can be saved to the part folder of the
+ * device, so later runs on the same part skip the walks. Route trees can be created from several threads at once.
+ */
+public class TerminalTreeCache implements Serializable {
+	private static final long serialVersionUID = -2466370520416380271L;
+	private static final Version LATEST_VERSION = new Version(1, 0);
+	private static final String FILE_NAME = "terminal.trees";
+
+	private final Version version;
+	private final String partName;
+	/** The sink chains, from the first wire of the chain to the sink wire, as (row offset, column offset, wire enum) */
+	private final Map<String, int[]> sinkChains;
+	/** The source chains, from the source wire to the last wire of the chain, as (row offset, column offset, wire enum) */
+	private final Map<String, int[]> sourceChains;
+	/** The device the chains are made in */
+	private transient Device device;
+	/** Whether chains have been added since the cache was loaded */
+	private transient boolean modified;
+
+	private TerminalTreeCache(Device device) {
+		this.version = LATEST_VERSION;
+		this.partName = device.getPartName();
+		this.sinkChains = new HashMap<>();
+		this.sourceChains = new HashMap<>();
+		this.device = device;
+	}
+
+	/**
+	 * Gets the terminal tree cache of a device. The cache is loaded from the part folder if it has been saved before,
+	 * and is empty otherwise.
+	 * @param device the device
+	 * @return the terminal tree cache
+	 */
+	public static TerminalTreeCache load(Device device) {
+		Path path = getCacheFile(device);
+
+		try {
+			Hessian2Input his = FileTools.getCompactReader(path);
+			try {
+				TerminalTreeCache cache = (TerminalTreeCache) his.readObject();
+				if (cache.version.compareTo(LATEST_VERSION) < 0)
+					throw new VersionException(cache.version, LATEST_VERSION);
+				if (cache.partName.equals(device.getPartName())) {
+					cache.device = device;
+					return cache;
+				}
+			} finally {
+				his.close();
+			}
+		} catch (VersionException e) {
+			System.out.println("[INFO] The terminal tree cache at " + path + " is out of date and will be rebuilt");
+		} catch (IOException e) {
+			if (path.toFile().exists())
+				System.err.println("[WARNING] Could not read the terminal tree cache at " + path + ": " + e.getMessage());
+		}
+		return new TerminalTreeCache(device);
+	}
+
+	/**
+	 * Creates an empty terminal tree cache for a device.
+	 * @param device the device
+	 * @return the terminal tree cache
+	 */
+	public static TerminalTreeCache empty(Device device) {
+		return new TerminalTreeCache(device);
+	}
+
+	/**
+	 * Saves the cache to the part folder of its device if chains have been added to it since it was loaded.
+	 */
+	public synchronized void saveIfModified() {
+		if (!modified)
+			return;
+
+		Path path = getCacheFile(device);
+		try {
+			save(path);
+			modified = false;
+		} catch (IOException e) {
+			System.err.println("[WARNING] Could not save terminal tree cache to " + path);
+		}
+	}
+
+	/**
+	 * Saves the cache to a file. The cache is written to a temporary file in the same folder, which then replaces
+	 * the file, so routers running at the same time never read a partly written cache.
+	 * @param path the file to save to
+	 * @throws IOException if the file cannot be written
+	 */
+	public void save(Path path) throws IOException {
+		Path tempPath = Files.createTempFile(path.toAbsolutePath().getParent(), FILE_NAME, ".tmp");
+		try {
+			Hessian2Output hos = FileTools.getCompactWriter(tempPath);
+			try {
+				hos.writeObject(this);
+			} finally {
+				hos.close();
+			}
+			Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tempPath);
+		}
+	}
+
+	private static Path getCacheFile(Device device) {
+		return RSEnvironment.defaultEnv().getPartFolderPath(device.getPartName()).resolve(FILE_NAME);
+	}
+
+	/**
+	 * Creates the route tree of the sink chain of a sink wire.
+	 * @param sinkWire the sink wire
+	 * @return a map entry from the root of the chain's route tree to its leaf (the tree of the sink wire)
+	 */
+	public Map.Entry<PathFinderRouteTree, PathFinderRouteTree> createSinkTree(Wire sinkWire) {
+		List<Wire> wires = null;
+		String key = getKey(sinkWire);
+		if (key != null) {
+			int[] chain = getChain(sinkChains, key);
+			if (chain != null) {
+				wires = getWires(sinkWire.getTile(), chain);
+				if (wires != null && !isSinkChain(wires))
+					wires = null;
+			} else {
+				wires = walkSinkChain(sinkWire);
+				putChain(sinkChains, key, getChain(sinkWire.getTile(), wires));
+			}
+		}
+
+		Map.Entry<PathFinderRouteTree, PathFinderRouteTree> entry = (wires == null) ? null : makeChainTree(wires);
+		if (entry == null) {
+			// The stored chain doesn't fit this tile
+			entry = makeChainTree(walkSinkChain(sinkWire));
+			assert entry != null;
+		}
+		return entry;
+	}
+
+	/**
+	 * Creates the route tree of the source chain of a source wire.
+	 * @param sourceWire the source wire
+	 * @return the leaf of the chain's route tree (the tree of the last wire of the chain)
+	 */
+	public PathFinderRouteTree createSourceTree(Wire sourceWire) {
+		List<Wire> wires = null;
+		String key = getKey(sourceWire);
+		if (key != null) {
+			int[] chain = getChain(sourceChains, key);
+			if (chain != null) {
+				wires = getWires(sourceWire.getTile(), chain);
+				if (wires != null && !isSourceChain(wires))
+					wires = null;
+			} else {
+				wires = walkSourceChain(sourceWire);
+				putChain(sourceChains, key, getChain(sourceWire.getTile(), wires));
+			}
+		}
+
+		Map.Entry<PathFinderRouteTree, PathFinderRouteTree> entry = (wires == null) ? null : makeChainTree(wires);
+		if (entry == null) {
+			// The stored chain doesn't fit this tile
+			entry = makeChainTree(walkSourceChain(sourceWire));
+			assert entry != null;
+		}
+		return entry.getValue();
+	}
+
+	// Trees may be created from several threads at once, so the chain maps are only accessed while synchronized
+
+	private synchronized int[] getChain(Map<String, int[]> chains, String key) {
+		return chains.get(key);
+	}
+
+	private synchronized void putChain(Map<String, int[]> chains, String key, int[] chain) {
+		chains.put(key, chain);
+		modified = true;
+	}
+
+	/**
+	 * Gets the first wire of the sink chain of a sink wire, which is the wire the router searches for to reach it.
+	 * @param sinkWire the sink wire
+	 * @return the first wire of the chain (the sink wire itself if it has more than one driver)
+	 */
+	public static Wire getSinkChainRoot(Wire sinkWire) {
+		return walkSinkChain(sinkWire).get(0);
+	}
+
+	/**
+	 * Walks backwards from a sink wire while there is only one wire that drives the current wire. Site
+	 * route-throughs are not followed. For example, we don't want to go from the IOB_PADOUT1 of an IOB33S to
+	 * IOB_DIFFO_IN1. This would give us the wrong wire to route to.
+	 * @return the wires of the chain, from the first wire to the sink wire
+	 */
+	private static List<Wire> walkSinkChain(Wire sinkWire) {
+		List<Wire> wires = new ArrayList<>();
+		Wire wire = sinkWire;
+		wires.add(wire);
+		while (wire.getReverseWireConnections().size() == 1) {
+			Connection reverseConn = wire.getReverseWireConnections().iterator().next();
+			if (reverseConn.isRouteThrough())
+				break;
+			wire = reverseConn.getSinkWire();
+			wires.add(wire);
+		}
+		Collections.reverse(wires);
+		return wires;
+	}
+
+	/**
+	 * Walks forwards from a source wire while there is only one wire the current wire drives.
+	 * @return the wires of the chain, from the source wire to the last wire
+	 */
+	private static List<Wire> walkSourceChain(Wire sourceWire) {
+		List<Wire> wires = new ArrayList<>();
+		Wire wire = sourceWire;
+		wires.add(wire);
+		while (wire.getWireConnections().size() == 1) {
+			wire = wire.getWireConnections().iterator().next().getSinkWire();
+			wires.add(wire);
+		}
+		return wires;
+	}
+
+	/**
+	 * Checks that a stored sink chain is the chain {@link #walkSinkChain} would find in this tile: every wire after
+	 * the first has exactly one driver, which is not a route-through, and the walk would stop at the first wire.
+	 * Whether each driver is the previous wire of the chain is checked when the tree is made.
+	 */
+	private static boolean isSinkChain(List<Wire> wires) {
+		for (int i = 1; i < wires.size(); i++) {
+			Collection<Connection> reverseConns = wires.get(i).getReverseWireConnections();
+			if (reverseConns.size() != 1 || reverseConns.iterator().next().isRouteThrough())
+				return false;
+		}
+		Collection<Connection> rootConns = wires.get(0).getReverseWireConnections();
+		return rootConns.size() != 1 || rootConns.iterator().next().isRouteThrough();
+	}
+
+	/**
+	 * Checks that a stored source chain is the chain {@link #walkSourceChain} would find in this tile: every wire
+	 * before the last has exactly one sink, and the last wire does not.
+	 */
+	private static boolean isSourceChain(List<Wire> wires) {
+		for (int i = 0; i < wires.size() - 1; i++) {
+			if (wires.get(i).getWireConnections().size() != 1)
+				return false;
+		}
+		return wires.get(wires.size() - 1).getWireConnections().size() != 1;
+	}
+
+	/**
+	 * Makes the route tree of a chain of wires.
+	 * @return a map entry from the root of the tree to its leaf, or null if consecutive wires aren't connected
+	 */
+	private static Map.Entry<PathFinderRouteTree, PathFinderRouteTree> makeChainTree(List<Wire> wires) {
+		PathFinderRouteTree root = new PathFinderRouteTree(wires.get(0));
+		PathFinderRouteTree tree = root;
+		for (int i = 1; i < wires.size(); i++) {
+			Connection connection = tree.getWire().getWireConnection(wires.get(i));
+			if (connection == null)
+				return null;
+			tree = tree.connect(connection);
+		}
+		return new AbstractMap.SimpleEntry<>(root, tree);
+	}
+
+	/**
+	 * Gets the key of the chains of a pin wire, or null if the wire's chains can't be cached.
+	 */
+	private static String getKey(Wire wire) {
+		if (!(wire instanceof TileWire) || wire.getTile() == null)
+			return null;
+		return wire.getTile().getType() + "/" + wire.getWireEnum();
+	}
+
+	/**
+	 * Converts the wires of a chain to offsets from the pin wire's tile and wire enums.
+	 */
+	private static int[] getChain(Tile pinTile, List<Wire> wires) {
+		int[] chain = new int[wires.size() * 3];
+		for (int i = 0; i < wires.size(); i++) {
+			Wire wire = wires.get(i);
+			chain[i * 3] = wire.getTile().getRow() - pinTile.getRow();
+			chain[i * 3 + 1] = wire.getTile().getColumn() - pinTile.getColumn();
+			chain[i * 3 + 2] = wire.getWireEnum();
+		}
+		return chain;
+	}
+
+	/**
+	 * Converts a stored chain to the wires of the chain for a pin in the specified tile.
+	 * @return the wires, or null if the chain leaves the device
+	 */
+	private List<Wire> getWires(Tile pinTile, int[] chain) {
+		List<Wire> wires = new ArrayList<>(chain.length / 3);
+		for (int i = 0; i < chain.length; i += 3) {
+			int row = pinTile.getRow() + chain[i];
+			int column = pinTile.getColumn() + chain[i + 1];
+			if (row < 0 || column < 0 || row >= device.getRows() || column >= device.getColumns())
+				return null;
+			wires.add(new TileWire(device.getTile(row, column), chain[i + 2]));
+		}
+		return wires;
+	}
+
+	/**
+	 * Gets the number of chains in the cache.
+	 * @return the number of sink and source chains
+	 */
+	public synchronized int size() {
+		return sinkChains.size() + sourceChains.size();
+	}
+}
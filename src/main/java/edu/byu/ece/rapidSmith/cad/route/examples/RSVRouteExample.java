@@ -84,7 +84,7 @@ public class RSVRouteExample {
 
     public static void main(String[] args) throws IOException {
         if (args.length < 4) {
-            System.err.println("Usage: RSVRouteExample rscpCheckpointDirectoryName presentCongestionFactor presentCongestionMultFactor historyFactor");
+            System.err.println("Usage: RSVRouteExample rscpCheckpointDirectoryName presentCongestionFactor presentCongestionMultFactor historyFactor [numThreads]");
             System.exit(1);
         }
         String checkpointIn = args[0];
@@ -93,6 +93,7 @@ public class RSVRouteExample {
         double presentCongestionFactor = Double.parseDouble(args[1]);
         double presentCongestionMultFactor = Double.parseDouble(args[2]);
         double historyFactor = Double.parseDouble(args[3]);
+        int numThreads = (args.length > 4) ? Integer.parseInt(args[4]) : 1;
 
         // Import a placed design
         importDesign(checkpointIn);
@@ -100,6 +101,8 @@ public class RSVRouteExample {
         // Route the design with RSVRoute
         // NOTE: You must use allow site route-throughs for full-device designs
         RSVRoute router = new RSVRoute(device, design, libCells, true, vccSourceBels, gndSourceBels);
+        router.setNumThreads(numThreads);
+        router.setMeasureAllocations(true);
         try {
             Time runTime = new Time();
             runTime.setStartTime();
@@ -0,0 +1,191 @@
+package edu.byu.ece.rapidSmith.cad.route.examples;
+
+import edu.byu.ece.rapidSmith.cad.route.mazerouter.NodeHeap;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Micro-benchmark comparing the expansion throughput of the A* router's search queues. The searches are run on a
+ * synthetic grid graph with random edge costs, which has search frontiers similar to long nets on a device.
+ * <ul>
+ *     <li>The "PriorityQueue" search is how the router used to search: a {@link PriorityQueue} that is scanned with
+ *     {@code contains()} before every insert, and where the first path found to a node is kept.</li>
+ *     <li>The "NodeHeap" search uses the indexed {@link NodeHeap}, updating nodes reached through a cheaper path
+ *     with a decrease-key.</li>
+ * </ul>
+ */
+public class SearchQueueBenchmark {
+    private static int gridSize;
+    /** Cost of the edge to the right of and below each grid node */
+    private static double[] rightCosts;
+    private static double[] downCosts;
+    private static final int[] neighbors = new int[4];
+    private static final double[] neighborCosts = new double[4];
+
+    private static void buildGrid(int size, long seed) {
+        gridSize = size;
+        Random random = new Random(seed);
+        rightCosts = new double[size * size];
+        downCosts = new double[size * size];
+        for (int i = 0; i < size * size; i++) {
+            rightCosts[i] = 0.65 + random.nextDouble();
+            downCosts[i] = 0.65 + random.nextDouble();
+        }
+    }
+
+    /**
+     * Fills the neighbor arrays with the neighbors of a grid node and the cost of reaching them.
+     * @return the number of neighbors
+     */
+    private static int getNeighbors(int node) {
+        int row = node / gridSize;
+        int col = node % gridSize;
+        int count = 0;
+        if (col + 1 < gridSize) {
+            neighbors[count] = node + 1;
+            neighborCosts[count++] = rightCosts[node];
+        }
+        if (col > 0) {
+            neighbors[count] = node - 1;
+            neighborCosts[count++] = rightCosts[node - 1];
+        }
+        if (row + 1 < gridSize) {
+            neighbors[count] = node + gridSize;
+            neighborCosts[count++] = downCosts[node];
+        }
+        if (row > 0) {
+            neighbors[count] = node - gridSize;
+            neighborCosts[count++] = downCosts[node - gridSize];
+        }
+        return count;
+    }
+
+    private static double estimate(int node, int target) {
+        int rowDistance = Math.abs(node / gridSize - target / gridSize);
+        int colDistance = Math.abs(node % gridSize - target % gridSize);
+        return 0.65 * (rowDistance + colDistance);
+    }
+
+    /**
+     * Searches from the source to the target with a {@link PriorityQueue}, checking {@code contains()} before adding
+     * a node like the router used to.
+     * @return the number of expanded nodes
+     */
+    private static int searchPriorityQueue(int source, int target) {
+        double[] costs = new double[gridSize * gridSize];
+        boolean[] processed = new boolean[gridSize * gridSize];
+        Comparator<Integer> comparator = (one, two) -> {
+            Double costOne = costs[one] + estimate(one, target);
+            Double costTwo = costs[two] + estimate(two, target);
+            return costOne.compareTo(costTwo);
+        };
+        PriorityQueue<Integer> queue = new PriorityQueue<>(comparator);
+        queue.add(source);
+        processed[source] = true;
+
+        int expanded = 0;
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            expanded++;
+            if (node == target)
+                break;
+
+            int count = getNeighbors(node);
+            for (int i = 0; i < count; i++) {
+                int neighbor = neighbors[i];
+                if (processed[neighbor])
+                    continue;
+                costs[neighbor] = costs[node] + neighborCosts[i];
+                processed[neighbor] = true;
+                if (!queue.contains(neighbor))
+                    queue.add(neighbor);
+            }
+        }
+        return expanded;
+    }
+
+    /**
+     * Searches from the source to the target with a {@link NodeHeap}, using decrease-key for nodes that are reached
+     * through a cheaper path. The heap and arrays are reused between searches like they are in the router.
+     * @return the number of expanded nodes
+     */
+    private static int searchNodeHeap(int source, int target, NodeHeap queue, double[] costs, int[] stamps, int generation) {
+        queue.clear();
+        costs[source] = 0;
+        stamps[source] = generation;
+        queue.add(source, estimate(source, target));
+
+        int expanded = 0;
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            expanded++;
+            if (node == target)
+                break;
+
+            int count = getNeighbors(node);
+            for (int i = 0; i < count; i++) {
+                int neighbor = neighbors[i];
+                double cost = costs[node] + neighborCosts[i];
+                if (stamps[neighbor] != generation) {
+                    stamps[neighbor] = generation;
+                    costs[neighbor] = cost;
+                    queue.add(neighbor, cost + estimate(neighbor, target));
+                } else if (queue.contains(neighbor) && cost < costs[neighbor]) {
+                    queue.decreaseKey(neighbor, queue.getKey(neighbor) - (costs[neighbor] - cost));
+                    costs[neighbor] = cost;
+                }
+            }
+        }
+        return expanded;
+    }
+
+    public static void main(String[] args) {
+        int size = (args.length > 0) ? Integer.parseInt(args[0]) : 300;
+        int numSearches = (args.length > 1) ? Integer.parseInt(args[1]) : 50;
+        buildGrid(size, 1);
+
+        // Choose the same source/target pairs for both queues
+        Random random = new Random(2);
+        int[] sources = new int[numSearches];
+        int[] targets = new int[numSearches];
+        for (int i = 0; i < numSearches; i++) {
+            sources[i] = random.nextInt(size * size);
+            targets[i] = random.nextInt(size * size);
+        }
+
+        // Warm up the JIT before timing
+        NodeHeap heap = new NodeHeap();
+        double[] costs = new double[size * size];
+        int[] stamps = new int[size * size];
+        int generation = 0;
+        for (int i = 0; i < Math.min(5, numSearches); i++) {
+            searchPriorityQueue(sources[i], targets[i]);
+            searchNodeHeap(sources[i], targets[i], heap, costs, stamps, ++generation);
+        }
+
+        long expanded = 0;
+        long startTime = System.nanoTime();
+        for (int i = 0; i < numSearches; i++) {
+            expanded += searchPriorityQueue(sources[i], targets[i]);
+        }
+        report("PriorityQueue", expanded, System.nanoTime() - startTime);
+
+        Arrays.fill(stamps, 0);
+        generation = 0;
+        expanded = 0;
+        startTime = System.nanoTime();
+        for (int i = 0; i < numSearches; i++) {
+            expanded += searchNodeHeap(sources[i], targets[i], heap, costs, stamps, ++generation);
+        }
+        report("NodeHeap", expanded, System.nanoTime() - startTime);
+    }
+
+    private static void report(String name, long expanded, long nanos) {
+        double seconds = nanos / 1e9;
+        System.out.printf("%-14s %10d nodes expanded in %8.3f seconds (%.0f nodes/second)%n",
+                name, expanded, seconds, expanded / seconds);
+    }
+}
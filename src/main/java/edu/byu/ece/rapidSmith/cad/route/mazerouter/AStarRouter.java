@@ -1,49 +1,102 @@
 package edu.byu.ece.rapidSmith.cad.route.mazerouter;
 
 import edu.byu.ece.rapidSmith.cad.route.*;
-import edu.byu.ece.rapidSmith.cad.route.pathfinder.PathFinder;
 import edu.byu.ece.rapidSmith.cad.route.pathfinder.PathFinderRouteTree;
-import edu.byu.ece.rapidSmith.cad.route.pathfinder.WireUsage;
+import edu.byu.ece.rapidSmith.cad.route.pathfinder.WireNodeIndex;
+import edu.byu.ece.rapidSmith.cad.route.pathfinder.WireUsageStore;
 import edu.byu.ece.rapidSmith.design.subsite.CellDesign;
 import edu.byu.ece.rapidSmith.design.subsite.CellNet;
 import edu.byu.ece.rapidSmith.design.subsite.CellPin;
 import edu.byu.ece.rapidSmith.design.subsite.RouteTree;
 import edu.byu.ece.rapidSmith.device.*;
-import edu.byu.ece.rapidSmith.timing.Path;
 
 import java.util.*;
 
 /**
  * An A* maze router. Intended to be used within the inner loop of PathFinder.
+ *
+ * The search works on integer search nodes rather than route trees. Each wire the router reaches is given a node
+ * from the router's own {@link WireNodeIndex}, and the costs, parents, and search state of the nodes are kept in
+ * primitive arrays that are reused from one search to the next. A search is reset by incrementing a generation
+ * counter instead of clearing the arrays. Route trees are only created for the path that reaches the sink.
+ * Since the search state belongs to the router, each thread must use its own router (see {@link #newInstance()}).
+ *
+ * When a {@link RoutingGraph} is set, the nodes of the graph are used as the search nodes of their wires, and the
+ * search expands the graph's edges. Wire objects are then only created for the wires that pass the search window,
+ * and connection objects only for route-throughs, for delays, and for the path that reaches the sink. Wires that are
+ * not in the graph (such as {@link GlobalWire}s) are numbered after the graph's nodes.
  */
 public class AStarRouter extends MazeRouter {
+    private static final int INITIAL_CAPACITY = 1 << 12;
+    /** Size (in tiles) of the square bins sinks and route trees of high-fanout nets are grouped into */
+    private static final int HIGH_FANOUT_BIN_SIZE = 4;
+    /** How many bins around a sink's bin the trees to start its search from are taken from */
+    private static final int HIGH_FANOUT_BIN_RADIUS = 1;
     /** The target tile for the current sink */
     private Tile targetTile;
-    /** Comparator for comparing route trees by cost */
-    private final Comparator<PathFinderRouteTree> routeTreeComparator;
+    /** The timing criticality of the current sink (always 0 when not routing timing-driven) */
+    private double criticality;
     /** The start tile to use when comparing two sink trees */
     private Tile sinkCompareStartTile;
     /** Comparator for comparing and sorting sink trees by distance from the source tile */
     private final Comparator<PathFinderRouteTree> sinkTreeComparator;
 
+    /** Index from wires to the search nodes of this router (offset by the size of the routing graph) */
+    private final WireNodeIndex searchIndex;
+    /** The number of nodes in the routing graph, or 0 if there is no routing graph */
+    private int graphSize;
+    /** Queue of search nodes, sorted by increasing estimated cost to the sink */
+    private final NodeHeap queue;
+    /** The current search generation. A node is part of the current search if its stamp equals the generation. */
+    private int generation;
+    /** The generation in which each node was last reached (first added to the queue) */
+    private int[] visitedStamp;
+    /** The generation in which each node was last given a route tree */
+    private int[] treeStamp;
+    /** The route tree of each node (only valid if the node's tree stamp is the current generation) */
+    private PathFinderRouteTree[] trees;
+    /** The node each node was reached from, or -1 for nodes in the existing route tree */
+    private int[] parents;
+    /** The connection each node was reached through (null if it has not been looked up for a graph edge yet) */
+    private Connection[] parentConnections;
+    /** The routing graph edge each node was reached through, or -1 if it was not reached through a graph edge */
+    private int[] parentEdges;
+    /** The wire segment cost of reaching each node */
+    private double[] segmentCosts;
+    /** The PathFinder (congestion) cost of reaching each node */
+    private double[] pathFinderCosts;
+    /** The delay (in wire segment cost units) of reaching each node, only computed for critical sinks */
+    private double[] delayCosts;
+    /** The nodes that have been given route trees, so the trees can be released after routing a net */
+    private int[] treeNodes;
+    private int numTreeNodes;
+    /** Scratch space used when creating the route trees of a path */
+    private int[] pathStack;
+
+    /** The inter-site route being routed */
+    private IntersiteRoute currentRoute;
+    /** Whether the net being routed is a high-fanout net */
+    private boolean highFanout;
+    /** The current net generation. A node is in the route tree of the net if its net stamp equals the generation. */
+    private int netGeneration;
+    /** The generation of the net whose route tree each node was last in */
+    private int[] netStamp;
+    /** The route tree of each node in the current net's route tree (only valid if the node's net stamp is current) */
+    private PathFinderRouteTree[] netTrees;
+    /** The route trees of the current high-fanout net, grouped by bin */
+    private final Map<Integer, List<PathFinderRouteTree>> treeBins;
+    /** The number of columns of bins in the device */
+    private final int numBinColumns;
+
     /**
      * Constructor for A* Router.
      * @param design the cell design we are routing
-     * @param wireUsage a map from wires to their usage.
+     * @param wireUsage the usage of the wires of the device.
      * @param useRoutethroughs whether to use site route-throughs
      */
-    public AStarRouter(CellDesign design, Map<Wire, WireUsage> wireUsage, boolean useRoutethroughs) {
+    public AStarRouter(CellDesign design, WireUsageStore wireUsage, boolean useRoutethroughs) {
         super(design, wireUsage, useRoutethroughs);
 
-        // Set up the comparator to use for comparing Route Trees.
-        // This is used whenever a tree is added to the priority queue.
-        routeTreeComparator = (one, two) -> {
-            // distance from source + distance remaining + pathfinder cost
-            Double costOne = one.getWireSegmentCost() + manhattanDistance(one, targetTile) + one.getPathFinderCost();
-            Double costTwo = two.getWireSegmentCost() + manhattanDistance(two, targetTile) + two.getPathFinderCost();
-            return costOne.compareTo(costTwo);
-        };
-
         // Compare the sink trees by distance from the driver (source) tile.
         // If the sinks are in the same tile, arbitrarily compare by wire enum.
         sinkTreeComparator = (one, two) -> {
@@ -55,26 +108,64 @@ public class AStarRouter extends MazeRouter {
             }
             return costTwo - costOne;
         };
+
+        searchIndex = new WireNodeIndex(design.getDevice());
+        queue = new NodeHeap();
+        generation = 0;
+        visitedStamp = new int[INITIAL_CAPACITY];
+        treeStamp = new int[INITIAL_CAPACITY];
+        trees = new PathFinderRouteTree[INITIAL_CAPACITY];
+        parents = new int[INITIAL_CAPACITY];
+        parentConnections = new Connection[INITIAL_CAPACITY];
+        parentEdges = new int[INITIAL_CAPACITY];
+        segmentCosts = new double[INITIAL_CAPACITY];
+        pathFinderCosts = new double[INITIAL_CAPACITY];
+        delayCosts = new double[INITIAL_CAPACITY];
+        treeNodes = new int[64];
+        numTreeNodes = 0;
+        pathStack = new int[64];
+        netGeneration = 0;
+        netStamp = new int[INITIAL_CAPACITY];
+        netTrees = new PathFinderRouteTree[INITIAL_CAPACITY];
+        treeBins = new HashMap<>();
+        numBinColumns = (design.getDevice().getColumns() + HIGH_FANOUT_BIN_SIZE - 1) / HIGH_FANOUT_BIN_SIZE;
     }
 
-	/**
-	 *
-	 * @param intersiteRoute
-	 * @param startTree
-	 * @param processedWires
-	 * @param priorityQueue
-	 * @param currSink
-	 */
-    private void makePreviousSinksFree(IntersiteRoute intersiteRoute, PathFinderRouteTree startTree, Set<Wire> processedWires, PriorityQueue<PathFinderRouteTree> priorityQueue, PathFinderRouteTree currSink) {
+    @Override
+    public AStarRouter newInstance() {
+        AStarRouter router = new AStarRouter(design, wireUsage, useRoutethroughs);
+        router.setLookahead(lookahead);
+        router.setMeasureAllocations(measureAllocations);
+        router.setSearchWindowMargin(searchWindowMargin);
+        router.setWindowFallback(windowFallback);
+        router.setDelayModel(delayModel);
+        router.setHighFanoutThreshold(highFanoutThreshold);
+        router.setRoutingGraph(routingGraph);
+        return router;
+    }
+
+    @Override
+    public void setRoutingGraph(RoutingGraph routingGraph) {
+        super.setRoutingGraph(routingGraph);
+        graphSize = (routingGraph == null) ? 0 : routingGraph.size();
+    }
+
+    /**
+     * Adds the wires of the existing route tree to the queue for a new sink. Wires that have already been used for
+     * prior sinks are considered "free", with the exception of static routes, where only the tie-off next to the
+     * sink is free and static source LUTs are cheap.
+     * @param intersiteRoute the inter-site route being routed
+     * @param startTree the existing route tree
+     * @param currSink the sink being routed
+     */
+    private void makePreviousSinksFree(IntersiteRoute intersiteRoute, PathFinderRouteTree startTree, PathFinderRouteTree currSink) {
     	if (intersiteRoute.isStatic()) {
 			// Since VCC/GND have multiple inter-site routes, all previous sinks can't be free.
 			// Only consider sinks that originate from (a) neighboring tie-offs free and (b)
 			// sinks that are driven by static source LUTs.
 
 			// First, add the global wire's connections back
-			//PathFinderRouteTree startCost = (PathFinderRouteTree) startTree;
-			processedWires.add(startTree.getWire());
-			priorityQueue.add(startTree);
+			addExistingTree(startTree, startTree.getWireSegmentCost(), startTree.getPathFinderCost(), 0);
 
 			for (RouteTree childTree : startTree.getChildren()) {
 				// If the child tree is a VCC/GND wire, it and its children can only be free if it originates from
@@ -85,47 +176,69 @@ public class AStarRouter extends MazeRouter {
 						// Make this and all of its children free
 						Iterable<PathFinderRouteTree> pfChildTree = childTree.typedIterator();
 						for (PathFinderRouteTree rt : pfChildTree) {
-							rt.freeWireSegmentCost();
-							rt.freePathFinderCost();
-							processedWires.add(rt.getWire());
-							priorityQueue.add(rt);
+							addExistingTree(rt, 0, 0, 0);
 						}
 					}
 				} else {
 					// Make non tie-offs not quite free since tie-offs should be preferred, but still cheap.
 					// It would be nice to do this more intelligently.
+					// The path finder cost shouldn't be equal for every single tie-off.
 					Iterable<PathFinderRouteTree> pfChildTree = childTree.typedIterator();
 					for (PathFinderRouteTree rt : pfChildTree) {
-						rt.setWireSegmentCost(1);
-
-						// The path finder cost shouldn't be equal for every single tie-off.
-						rt.setPathFinderCost(4);
-						processedWires.add(rt.getWire());
-						priorityQueue.add(rt);
+						addExistingTree(rt, 1, 4, 0);
 					}
 				}
 			}
+		} else if (criticality > 0) {
+			// Re-using wires is still free, but the delay from the source to each wire must be kept
+			addExistingTreesWithDelay(startTree, 0);
 		} else {
 			Iterable<PathFinderRouteTree> pfStartTree = startTree.typedIterator();
 			for (PathFinderRouteTree rt : pfStartTree) {
 				// Re-using wires that have already been used for prior sinks should be considered "free"
-				rt.setWireSegmentCost(0);
-				rt.setPathFinderCost(0);
-				processedWires.add(rt.getWire());
-				priorityQueue.add(rt);
+				addExistingTree(rt, 0, 0, 0);
 			}
 		}
 
     }
 
+    /**
+     * Adds a tree and all of its children to the queue with free wire segment and PathFinder costs, but with the
+     * delay of reaching them from the source of the route.
+     */
+    private void addExistingTreesWithDelay(PathFinderRouteTree tree, double delayCost) {
+        addExistingTree(tree, 0, 0, delayCost);
+        for (RouteTree child : tree.getChildren()) {
+            addExistingTreesWithDelay((PathFinderRouteTree) child, delayCost + getDelayCost(child.getConnection()));
+        }
+    }
+
     /**
      * Routes the specified {@link IntersiteRoute} using the A* routing algorithm.
      * @return True if successful, false otherwise.
      */
     public boolean routeNet(IntersiteRoute intersiteRoute) {
-        // Priority Queue of route trees, sorted by decreasing cost to the sink
-        PriorityQueue<PathFinderRouteTree> priorityQueue = new PriorityQueue<>(routeTreeComparator);
+        long startBytes = getThreadAllocatedBytes();
+        long startTime = System.nanoTime();
+        currentRoute = intersiteRoute;
+        highFanout = isHighFanout(intersiteRoute);
+        deferredSinks.clear();
+        try {
+            return search(intersiteRoute);
+        } finally {
+            searchWindow = null;
+            currentRoute = null;
+            releaseTrees();
+            if (highFanout) {
+                releaseNetTrees();
+                numHighFanoutNets++;
+                highFanoutTime += System.nanoTime() - startTime;
+            }
+            numBytesAllocated += getThreadAllocatedBytes() - startBytes;
+        }
+    }
 
+    private boolean search(IntersiteRoute intersiteRoute) {
         // Routed terminals for the current net
         Set<PathFinderRouteTree> terminals = new HashSet<>();
 
@@ -142,19 +255,23 @@ public class AStarRouter extends MazeRouter {
             sinksToRoute.sort(sinkTreeComparator);
         }
 
-        // Existing wires contains sink wires that the A* Router has tried to use (and possibly actually used)
-        // for this net so far. This set is used to prevent the A* Router from getting stuck in loops, checking
-        // the same connections infinitely. After a sink is found, processedWires is reset to include only
-        // the wires used to reach the found terminals. This way, new trees are not made to reach wires that
-        // existing trees have already connected to.
-        Set<Wire> processedWires;
-
+        // Sinks of high-fanout nets are routed one cluster at a time. The first sink of each cluster is the target
+        // of the cluster's trunk and is searched for from the whole tree.
+        Set<PathFinderRouteTree> trunkSinks = Collections.emptySet();
+        if (highFanout) {
+            trunkSinks = new HashSet<>();
+            sinksToRoute = clusterSinks(sinksToRoute, trunkSinks);
+            startNetTrees(startTree);
+        }
 
         // Add the terminals of the routed sinks to the set of terminals
         for (PathFinderRouteTree sink : intersiteRoute.getRoutedSinks()) {
             terminals.add(intersiteRoute.getTerminalTree(sink));
         }
 
+        // The window of tiles to first search for each sink in
+        BoundingBox netWindow = getSearchWindow(intersiteRoute);
+
         // Iterate over each sink and find a valid route to it.
         for (PathFinderRouteTree sinkTree : sinksToRoute) {
         	assert (sinkTree != null);
@@ -162,38 +279,74 @@ public class AStarRouter extends MazeRouter {
 
 			Wire terminalWire = intersiteRoute.getTerminalTree(sinkTree).getWire();
 			Wire targetWire = sinkTree.getWire();
+			// The lookahead measures offsets to the first wire of the sink chain, not to the pin's tile
 			targetTile = targetWire.getTile();
-
-			// If there are remaining sinks to route for this net, reset the existing branches to only include
-			// wires already in the final route tree. These route trees will be added to the priority queue, but
-			// adding their wires to processedWires will prevent duplicate route trees from being added.
-			processedWires = new HashSet<>();
-			priorityQueue.clear();
-			makePreviousSinksFree(intersiteRoute, startTree, processedWires, priorityQueue, sinkTree);
+			int terminalNode = getSearchNode(terminalWire);
+			int targetNode = getSearchNode(targetWire);
+			criticality = (delayModel != null) ? intersiteRoute.getCriticality(sinkTree) : 0;
+
+			// Start a new search from the wires already in the final route tree. Wires reached in the search are
+			// marked as visited, which prevents the search from getting stuck in loops and prevents new trees
+			// from being made to reach wires that existing trees have already connected to.
+			searchWindow = netWindow;
+			startSearch();
+			// Searches for the sinks of a high-fanout cluster start from the nearby trees only
+			boolean localSeeds = highFanout && !trunkSinks.contains(sinkTree) && addNearbyTrees(sinkTree);
+			if (!localSeeds)
+				makePreviousSinksFree(intersiteRoute, startTree, sinkTree);
             boolean routeFound = false;
+            boolean deferred = false;
 
             // This loop actually builds the routing data structure
-            while (!routeFound) {
-                // Grab the lowest cost route from the queue
-                if (priorityQueue.size() == 0) {
+            while (!routeFound && !deferred) {
+                // Grab the lowest cost node from the queue
+                if (queue.isEmpty()) {
+                    if (localSeeds) {
+                        // The sink can't be reached from the nearby trees. Start from the whole tree instead.
+                        localSeeds = false;
+                        startSearch();
+                        makePreviousSinksFree(intersiteRoute, startTree, sinkTree);
+                        continue;
+                    }
+                    if (searchWindow != null && !windowFallback) {
+                        // The sink can't be reached within the search window. Leave it for the caller to route.
+                        numWindowFallbacks++;
+                        deferredSinks.add(sinkTree);
+                        deferred = true;
+                        continue;
+                    }
+                    if (searchWindow != null) {
+                        // The sink can't be reached within the search window. Search the whole device instead.
+                        numWindowFallbacks++;
+                        searchWindow = null;
+                        startSearch();
+                        makePreviousSinksFree(intersiteRoute, startTree, sinkTree);
+                        continue;
+                    }
                     System.err.println("[WARNING] " + intersiteRoute.getNet().getName() + " sink " + sinkTree.getWire().getFullName() + " could not be routed.");
                     return false;
                 }
 
-                PathFinderRouteTree currTree = priorityQueue.poll();
+                int currNode = queue.poll();
+                numNodesExpanded++;
 
-                // Search all connections for the wire of the current RouteTree
-                Wire currWire = currTree.getWire();
+                // Search all connections for the wire of the current node
+                Wire currWire = getSearchWire(currNode);
 
                 // If the currWire is the solution
-               if (currWire.equals(targetWire)) {
-                    if (currTree.getParent() == null) {
+                if (currNode == targetNode) {
+                    if (treeStamp[currNode] != generation) {
+                        // Connect the sink tree in place of the wire that was reached
+                        PathFinderRouteTree parent = getTree(parents[currNode]);
+                        parent.connect(parentConnections[currNode], sinkTree);
+                    } else if (trees[currNode].getParent() == null) {
                         // Assume this is the direct-connection case (like a COUT to CIN net)
                         startTree = sinkTree;
                     } else {
                         // Non-direct only case. This can occur if an earlier sink routed here.
                         // Connect the new route tree
 						// must preserve sink tree for inter-site maps, etc.
+						PathFinderRouteTree currTree = trees[currNode];
 						PathFinderRouteTree parent = currTree.getParent();
 						Connection mainCon = currTree.getConnection();
 						parent.disconnect(currTree);
@@ -208,32 +361,89 @@ public class AStarRouter extends MazeRouter {
                     }
                     terminals.add(intersiteRoute.getTerminalTree(sinkTree));
                     break;
-                } else if (currWire.equals(terminalWire)) {
+                } else if (currNode == terminalNode) {
                     // Not "direct connection", but there is only one way for the source to make it to the sink.
                     // Basically, uses PIP junctions that only have one source wire and sink wire (so it is a pseudo
                     // direct connection). This is common with BRAM/DSP nets.
+                    getTree(currNode);
                     terminals.add(intersiteRoute.getTerminalTree(sinkTree));
                     break;
                 }
 
+                if (currNode < graphSize) {
+                    // Add the possible edges of the routing graph to the queue
+                    for (int edge = routingGraph.getFirstEdge(currNode), end = routingGraph.getEdgeEnd(currNode); edge < end; edge++) {
+                        int sinkNode = routingGraph.getEdgeSink(edge);
+                        if (sinkNode >= visitedStamp.length)
+                            grow(sinkNode + 1);
+                        if (visitedStamp[sinkNode] == generation && (!queue.contains(sinkNode) || treeStamp[sinkNode] == generation))
+                            continue;
+                        if (localSeeds && visitedStamp[sinkNode] != generation && isNetTree(sinkNode)) {
+                            PathFinderRouteTree tree = netTrees[sinkNode];
+                            addExistingTree(tree, 0, 0, (criticality > 0) ? getTreeDelayCost(tree) : 0);
+                            continue;
+                        }
+                        if (searchWindow != null && !searchWindow.contains(routingGraph.getRow(sinkNode), routingGraph.getColumn(sinkNode)))
+                            continue;
+
+                        Wire sinkWire = routingGraph.getWire(sinkNode);
+                        Connection connection = null;
+                        if (routingGraph.isRouteThrough(edge)) {
+                            // Route-throughs are checked against their site, so the connection is needed
+                            connection = routingGraph.getConnection(currWire, edge);
+                            if (!isConnectionAllowed(intersiteRoute, terminalWire, connection))
+                                continue;
+                        } else if (!isSinkWireAllowed(intersiteRoute, terminalWire, sinkWire)) {
+                            continue;
+                        }
+
+                        if (sinkNode == targetNode) {
+                            if (connection == null)
+                                connection = routingGraph.getConnection(currWire, edge);
+                            sinkTree = getTree(currNode).connect(connection, sinkTree);
+                            terminals.add(intersiteRoute.getTerminalTree(sinkTree));
+                            routeFound = true;
+                            break;
+                        } else {
+                            processConnection(currNode, sinkNode, sinkWire, connection, edge);
+                        }
+                    }
+                    continue;
+                }
+
                 // Add possible connections to the queue
-                Collection<Connection> currConnections = getFilteredConnections(intersiteRoute, terminalWire, currTree, processedWires);
-                for (Connection connection : currConnections) {
+                for (Connection connection : currWire.getWireConnections()) {
+                    Wire sinkWire = connection.getSinkWire();
+                    int sinkNode = getSearchNode(sinkWire);
+                    // Wires that have already been expanded (or are part of the existing route tree) are final.
+                    // Wires that are still in the queue may be reached through a cheaper path.
+                    if (visitedStamp[sinkNode] == generation && (!queue.contains(sinkNode) || treeStamp[sinkNode] == generation))
+                        continue;
+                    if (localSeeds && visitedStamp[sinkNode] != generation && isNetTree(sinkNode)) {
+                        // A part of the route tree that was not near the sink. Branch from it instead of
+                        // making a second path through its wire.
+                        PathFinderRouteTree tree = netTrees[sinkNode];
+                        addExistingTree(tree, 0, 0, (criticality > 0) ? getTreeDelayCost(tree) : 0);
+                        continue;
+                    }
+                    if (!isConnectionAllowed(intersiteRoute, terminalWire, connection))
+                        continue;
+
                     // If a connection is the solution, don't bother processing the remaining connections
-                    if (connection.getSinkWire().equals(targetWire)) {
-                    	sinkTree = currTree.connect(connection, sinkTree);
+                    if (sinkNode == targetNode) {
+                    	sinkTree = getTree(currNode).connect(connection, sinkTree);
                         terminals.add(intersiteRoute.getTerminalTree(sinkTree));
                         routeFound = true;
                         break;
                     } else {
-                        PathFinderRouteTree connTree = processConnection(intersiteRoute, currTree, connection, processedWires);
-                        if (!priorityQueue.contains(connTree)) {
-                            priorityQueue.add(connTree);
-                        }
+                        processConnection(currNode, sinkNode, sinkWire, connection, -1);
                     }
                 }
             }
 
+            if (deferred)
+                continue;
+
             // A route for the sink has been found.
             // Mark all cell pins corresponding to this sink as routed. Remember a cell pin may correspond to
             // multiple site pins and that a site pin may correspond to multiple cell pins!
@@ -241,13 +451,16 @@ public class AStarRouter extends MazeRouter {
                 CellNet net = cellPin.getNet();
                 net.addRoutedSink(cellPin);
             }
+            numSinksRouted++;
 
             startTree.prune(terminals);
+            if (highFanout)
+                addNetTrees(intersiteRoute.getTerminalTree(sinkTree));
         }
 
         // Register the leaves for the inter-site route tree
         for (PathFinderRouteTree leaf : terminals) {
-            leaf.registerLeaf(leaf);
+            leaf.markLeaf();
         }
 
         intersiteRoute.setRouteTree(startTree);
@@ -255,35 +468,361 @@ public class AStarRouter extends MazeRouter {
     }
 
     /**
-     * Makes a connection (that is not the solution) and returns the sink tree. Also sets the cost for using this
-     * connection and adds the sink wire to the list of searched wires.
-     * @param parent the parent route tree
-     * @param connection the connection to process
-     * @param searchedWires the set of wires that have already been considered
-     * @return the sink tree
+     * Orders the sinks of a high-fanout net by cluster. Sinks are clustered by the bin they are in. Clusters are
+     * routed in decreasing distance from the source (like the sinks of other nets), and within a cluster, the sink
+     * closest to the center of the cluster is routed first, followed by the other sinks in increasing distance from it.
+     * @param sinks the sinks to route, sorted by decreasing distance from the source
+     * @param trunkSinks filled with the first sink of each cluster
+     * @return the sinks in the order to route them
      */
-    private PathFinderRouteTree processConnection(IntersiteRoute intersiteRoute, PathFinderRouteTree parent, Connection connection, Set<Wire> searchedWires) {
-        Wire sinkWire = connection.getSinkWire();
-		assert(!sinkWire.equals(parent.getWire()));
-        PathFinderRouteTree sinkTree = parent.connect(connection);
+    private List<PathFinderRouteTree> clusterSinks(List<PathFinderRouteTree> sinks, Set<PathFinderRouteTree> trunkSinks) {
+        // Clusters are kept in the order of their farthest sink
+        Map<Integer, List<PathFinderRouteTree>> clusters = new LinkedHashMap<>();
+        for (PathFinderRouteTree sink : sinks) {
+            clusters.computeIfAbsent(getBin(sink.getWire().getTile()), k -> new ArrayList<>()).add(sink);
+        }
+
+        List<PathFinderRouteTree> ordered = new ArrayList<>(sinks.size());
+        for (List<PathFinderRouteTree> cluster : clusters.values()) {
+            int rowSum = 0;
+            int columnSum = 0;
+            for (PathFinderRouteTree sink : cluster) {
+                rowSum += sink.getWire().getTile().getRow();
+                columnSum += sink.getWire().getTile().getColumn();
+            }
+            int centerRow = rowSum / cluster.size();
+            int centerColumn = columnSum / cluster.size();
+
+            PathFinderRouteTree trunkSink = cluster.get(0);
+            int trunkDistance = Integer.MAX_VALUE;
+            for (PathFinderRouteTree sink : cluster) {
+                Tile tile = sink.getWire().getTile();
+                int distance = Math.abs(tile.getRow() - centerRow) + Math.abs(tile.getColumn() - centerColumn);
+                if (distance < trunkDistance) {
+                    trunkSink = sink;
+                    trunkDistance = distance;
+                }
+            }
 
-		WireUsage wireUsage = this.wireUsageMap.get(sinkWire);
-		double pfCost = (wireUsage == null) ? 1 : wireUsage.getPFCost();
+            Tile trunkTile = trunkSink.getWire().getTile();
+            cluster.sort(Comparator.comparingInt(sink -> sink.getWire().getTile().getIndexManhattanDistance(trunkTile)));
+            cluster.remove(trunkSink);
+            trunkSinks.add(trunkSink);
+            ordered.add(trunkSink);
+            ordered.addAll(cluster);
+        }
+        return ordered;
+    }
+
+    private int getBin(Tile tile) {
+        return (tile.getRow() / HIGH_FANOUT_BIN_SIZE) * numBinColumns + tile.getColumn() / HIGH_FANOUT_BIN_SIZE;
+    }
+
+    /**
+     * Starts a new net generation and records every tree of a high-fanout net's existing route tree.
+     */
+    private void startNetTrees(PathFinderRouteTree startTree) {
+        releaseNetTrees();
+        if (netGeneration == Integer.MAX_VALUE) {
+            Arrays.fill(netStamp, 0);
+            netGeneration = 0;
+        }
+        netGeneration++;
 
-		if (!connection.isPip()) {
-			sinkTree.setWireSegmentCost(parent.getWireSegmentCost());
-			sinkTree.setPathFinderCost(parent.getPathFinderCost());
+        Iterable<PathFinderRouteTree> typed = startTree.getRoot().typedIterator();
+        for (PathFinderRouteTree tree : typed) {
+            addNetTree(tree);
+        }
+    }
+
+    /**
+     * Records the trees of a newly routed branch of a high-fanout net, walking from its terminal towards the source
+     * until reaching a tree that has already been recorded.
+     */
+    private void addNetTrees(PathFinderRouteTree terminal) {
+        PathFinderRouteTree tree = terminal;
+        while (tree != null && addNetTree(tree)) {
+            tree = tree.getParent();
+        }
+    }
+
+    /**
+     * Records a tree of the current high-fanout net.
+     * @return false if the tree was already recorded
+     */
+    private boolean addNetTree(PathFinderRouteTree tree) {
+        int node = getSearchNode(tree.getWire());
+        if (netStamp[node] == netGeneration && netTrees[node] == tree)
+            return false;
+
+        netStamp[node] = netGeneration;
+        netTrees[node] = tree;
+        Tile tile = tree.getWire().getTile();
+        if (tile != null)
+            treeBins.computeIfAbsent(getBin(tile), k -> new ArrayList<>()).add(tree);
+        return true;
+    }
+
+    private void releaseNetTrees() {
+        for (List<PathFinderRouteTree> bin : treeBins.values()) {
+            for (PathFinderRouteTree tree : bin) {
+                netTrees[findSearchNode(tree.getWire())] = null;
+            }
+        }
+        treeBins.clear();
+    }
+
+    /**
+     * Adds the trees of the current high-fanout net that are in the bins around a sink to the queue.
+     * @return false if no trees are near the sink
+     */
+    private boolean addNearbyTrees(PathFinderRouteTree sinkTree) {
+        Tile tile = sinkTree.getWire().getTile();
+        int binRow = tile.getRow() / HIGH_FANOUT_BIN_SIZE;
+        int binColumn = tile.getColumn() / HIGH_FANOUT_BIN_SIZE;
+        boolean found = false;
+        for (int row = binRow - HIGH_FANOUT_BIN_RADIUS; row <= binRow + HIGH_FANOUT_BIN_RADIUS; row++) {
+            for (int column = binColumn - HIGH_FANOUT_BIN_RADIUS; column <= binColumn + HIGH_FANOUT_BIN_RADIUS; column++) {
+                if (row < 0 || column < 0 || column >= numBinColumns)
+                    continue;
+                List<PathFinderRouteTree> bin = treeBins.get(row * numBinColumns + column);
+                if (bin == null)
+                    continue;
+                for (PathFinderRouteTree tree : bin) {
+                    // Skip trees that have since been replaced by a sink tree or pruned
+                    int node = findSearchNode(tree.getWire());
+                    if (netTrees[node] != tree || !isNetTree(node))
+                        continue;
+                    addExistingTree(tree, 0, 0, (criticality > 0) ? getTreeDelayCost(tree) : 0);
+                    found = true;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns whether a search node is part of the current high-fanout net's route tree.
+     */
+    private boolean isNetTree(int node) {
+        if (netStamp[node] != netGeneration || netTrees[node] == null)
+            return false;
+        PathFinderRouteTree tree = netTrees[node];
+        return tree.getParent() != null || tree == tree.getRoot();
+    }
+
+    /**
+     * Gets the delay cost of reaching a tree of the route from the source.
+     */
+    private double getTreeDelayCost(PathFinderRouteTree tree) {
+        double delayCost = 0;
+        RouteTree rt = tree;
+        while (rt.getParent() != null) {
+            delayCost += getDelayCost(rt.getConnection());
+            rt = rt.getParent();
+        }
+        return delayCost;
+    }
+
+    /**
+     * Reaches the sink node of a connection (that is not the solution) from its parent node. Sets the cost for using
+     * the connection, marks the sink node as visited, and adds it to the queue. If the sink node is already in the
+     * queue, it is only updated (with a decrease-key) if the new path to it is cheaper.
+     * @param parent the parent node
+     * @param sinkNode the sink node of the connection
+     * @param sinkWire the sink wire of the connection
+     * @param connection the connection to process, or null if it is a routing graph edge that hasn't been looked up
+     * @param edge the routing graph edge of the connection, or -1 if the connection is not in the routing graph
+     */
+    private void processConnection(int parent, int sinkNode, Wire sinkWire, Connection connection, int edge) {
+		assert(sinkNode != parent);
+
+		if (connection == null && criticality > 0)
+			connection = routingGraph.getConnection(getSearchWire(parent), edge);
+		boolean pip = (connection != null) ? connection.isPip() : routingGraph.isPip(edge);
+
+		double segmentCost;
+		double pathFinderCost;
+		double delayCost = (criticality > 0) ? delayCosts[parent] + getDelayCost(connection) : 0;
+		if (!pip) {
+			segmentCost = segmentCosts[parent];
+			pathFinderCost = pathFinderCosts[parent];
 		} else {
-			sinkTree.setPathFinderCost(parent.getPathFinderCost() + pfCost);
+			pathFinderCost = pathFinderCosts[parent] + wireUsage.getPFCost(sinkWire, currentRoute);
 
 			// Make it cheaper to connect within the same tile (bounce pips, etc.)
-			if (connection.getSourceWire().getTile() == connection.getSinkWire().getTile()) {
-				sinkTree.setWireSegmentCost(parent.getWireSegmentCost() + 0.65);
+			boolean sameTile = (connection != null) ? connection.getSourceWire().getTile() == sinkWire.getTile()
+					: routingGraph.getTileIndex(parent) == routingGraph.getTileIndex(sinkNode);
+			if (sameTile) {
+				segmentCost = segmentCosts[parent] + 0.65;
 			} else {
-				sinkTree.setWireSegmentCost(parent.getWireSegmentCost() + 1);
+				segmentCost = segmentCosts[parent] + 1;
 			}
 		}
-        searchedWires.add(sinkWire);
-        return sinkTree;
+
+        boolean reached = visitedStamp[sinkNode] == generation;
+        double oldCost = getPathCost(sinkNode);
+        double newCost = getPathCost(segmentCost, pathFinderCost, delayCost);
+        if (reached && newCost >= oldCost)
+            return;
+
+        visitedStamp[sinkNode] = generation;
+        parents[sinkNode] = parent;
+        parentConnections[sinkNode] = connection;
+        parentEdges[sinkNode] = edge;
+        segmentCosts[sinkNode] = segmentCost;
+        pathFinderCosts[sinkNode] = pathFinderCost;
+        delayCosts[sinkNode] = delayCost;
+        if (reached) {
+            // The distance remaining is unchanged, so only the difference in cost needs to be applied
+            queue.decreaseKey(sinkNode, queue.getKey(sinkNode) - (oldCost - newCost));
+            numHeapUpdates++;
+        } else {
+            // distance from source + pathfinder cost (blended with delay) + distance remaining
+            queue.add(sinkNode, newCost + estimateRemainingCost(sinkWire, targetTile));
+            numHeapPushes++;
+        }
+    }
+
+    /**
+     * Gets the cost of reaching a node. Without timing, this is the wire segment cost plus the PathFinder cost. When
+     * routing timing-driven, the delay of reaching the node is blended in by the criticality of the sink:
+     * (1 - criticality) * (segment cost + PathFinder cost) + criticality * delay.
+     */
+    private double getPathCost(double segmentCost, double pathFinderCost, double delayCost) {
+        if (criticality == 0)
+            return segmentCost + pathFinderCost;
+        return (1 - criticality) * (segmentCost + pathFinderCost) + criticality * delayCost;
+    }
+
+    private double getPathCost(int node) {
+        return getPathCost(segmentCosts[node], pathFinderCosts[node], delayCosts[node]);
+    }
+
+    /**
+     * Adds a tree of the existing route to the queue with the specified costs.
+     */
+    private void addExistingTree(PathFinderRouteTree tree, double segmentCost, double pathFinderCost, double delayCost) {
+        Wire wire = tree.getWire();
+        int node = getSearchNode(wire);
+        visitedStamp[node] = generation;
+        setTree(node, tree);
+        parents[node] = -1;
+        parentConnections[node] = null;
+        parentEdges[node] = -1;
+        segmentCosts[node] = segmentCost;
+        pathFinderCosts[node] = pathFinderCost;
+        delayCosts[node] = delayCost;
+        double key = getPathCost(segmentCost, pathFinderCost, delayCost) + estimateRemainingCost(wire, targetTile);
+        if (queue.contains(node)) {
+            queue.decreaseKey(node, key);
+            numHeapUpdates++;
+        } else {
+            queue.add(node, key);
+            numHeapPushes++;
+        }
+    }
+
+    /**
+     * Gets the route tree of a node, creating the route trees of the path to the node (back to the existing
+     * route tree) if they have not been created yet.
+     * @param node the node
+     * @return the route tree of the node
+     */
+    private PathFinderRouteTree getTree(int node) {
+        int depth = 0;
+        while (treeStamp[node] != generation) {
+            if (depth == pathStack.length)
+                pathStack = Arrays.copyOf(pathStack, depth * 2);
+            pathStack[depth++] = node;
+            node = parents[node];
+        }
+
+        PathFinderRouteTree tree = trees[node];
+        while (depth > 0) {
+            int child = pathStack[--depth];
+            Connection connection = parentConnections[child];
+            if (connection == null)
+                connection = routingGraph.getConnection(tree.getWire(), parentEdges[child]);
+            tree = tree.connect(connection);
+            tree.setWireSegmentCost(segmentCosts[child]);
+            tree.setPathFinderCost(pathFinderCosts[child]);
+            setTree(child, tree);
+        }
+        return tree;
+    }
+
+    private void setTree(int node, PathFinderRouteTree tree) {
+        trees[node] = tree;
+        treeStamp[node] = generation;
+        if (numTreeNodes == treeNodes.length)
+            treeNodes = Arrays.copyOf(treeNodes, numTreeNodes * 2);
+        treeNodes[numTreeNodes++] = node;
+    }
+
+    /**
+     * Releases the route trees held by the search state so they can be garbage collected.
+     */
+    private void releaseTrees() {
+        for (int i = 0; i < numTreeNodes; i++) {
+            trees[treeNodes[i]] = null;
+        }
+        numTreeNodes = 0;
+    }
+
+    /**
+     * Resets the search state for a new search.
+     */
+    private void startSearch() {
+        queue.clear();
+        releaseTrees();
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(visitedStamp, 0);
+            Arrays.fill(treeStamp, 0);
+            generation = 0;
+        }
+        generation++;
+    }
+
+    /**
+     * Gets the search node of a wire, making sure the search state has room for it.
+     */
+    private int getSearchNode(Wire wire) {
+        int node = (routingGraph != null) ? routingGraph.getNode(wire) : -1;
+        if (node < 0)
+            node = graphSize + searchIndex.getOrAddIndex(wire);
+        if (node >= visitedStamp.length)
+            grow(node + 1);
+        return node;
+    }
+
+    /**
+     * Gets the search node of a wire that has already been given one.
+     */
+    private int findSearchNode(Wire wire) {
+        int node = (routingGraph != null) ? routingGraph.getNode(wire) : -1;
+        return (node >= 0) ? node : graphSize + searchIndex.getIndex(wire);
+    }
+
+    /**
+     * Gets the wire of a search node.
+     */
+    private Wire getSearchWire(int node) {
+        return (node < graphSize) ? routingGraph.getWire(node) : searchIndex.getWire(node - graphSize);
+    }
+
+    private void grow(int minSize) {
+        int newSize = Math.max(minSize, visitedStamp.length * 2);
+        visitedStamp = Arrays.copyOf(visitedStamp, newSize);
+        treeStamp = Arrays.copyOf(treeStamp, newSize);
+        trees = Arrays.copyOf(trees, newSize);
+        parents = Arrays.copyOf(parents, newSize);
+        parentConnections = Arrays.copyOf(parentConnections, newSize);
+        parentEdges = Arrays.copyOf(parentEdges, newSize);
+        segmentCosts = Arrays.copyOf(segmentCosts, newSize);
+        pathFinderCosts = Arrays.copyOf(pathFinderCosts, newSize);
+        delayCosts = Arrays.copyOf(delayCosts, newSize);
+        netStamp = Arrays.copyOf(netStamp, newSize);
+        netTrees = Arrays.copyOf(netTrees, newSize);
     }
 }
@@ -1,16 +1,20 @@
 package edu.byu.ece.rapidSmith.cad.route.mazerouter;
 
+import edu.byu.ece.rapidSmith.cad.route.BoundingBox;
 import edu.byu.ece.rapidSmith.cad.route.GlobalWire;
 import edu.byu.ece.rapidSmith.cad.route.IntersiteRoute;
-import edu.byu.ece.rapidSmith.cad.route.pathfinder.WireUsage;
+import edu.byu.ece.rapidSmith.cad.route.pathfinder.PathFinderRouteTree;
+import edu.byu.ece.rapidSmith.cad.route.pathfinder.WireUsageStore;
+import edu.byu.ece.rapidSmith.cad.route.timing.DelayModel;
 import edu.byu.ece.rapidSmith.design.subsite.CellDesign;
 import edu.byu.ece.rapidSmith.design.subsite.CellNet;
 import edu.byu.ece.rapidSmith.design.subsite.RouteTree;
 import edu.byu.ece.rapidSmith.device.*;
-import edu.byu.ece.rapidSmith.device.families.FamilyInfos;
 
-import java.util.*;
-import java.util.stream.Collectors;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Abstract class for maze routers. A maze router is used within the inner loop of PathFinder.
@@ -18,22 +22,67 @@ import java.util.stream.Collectors;
 public abstract class MazeRouter {
     protected CellDesign design;
     protected FamilyType family;
-    /** A map from wires to their wire usage. */
-    protected Map<Wire, WireUsage> wireUsageMap;
+    /** The usage of the wires of the device. */
+    protected WireUsageStore wireUsage;
     /** Whether to use site routethroughs */
-    private boolean useRoutethroughs;
+    protected boolean useRoutethroughs;
+    /** Precomputed estimates of the cost to reach a target, or null to use the Manhattan distance */
+    protected RoutingLookahead lookahead;
+    /** Precomputed flags of the device's wires and tiles, used to filter connections */
+    protected final WireFlags wireFlags;
+    /** The compact routing-resource graph of the device to search, or null to search the device's wires directly */
+    protected RoutingGraph routingGraph;
+    private final SiteType sliceLType;
+    private final SiteType sliceMType;
+    /** The number of tiles a net's search window extends past its bounding box, or -1 to search the whole device */
+    protected int searchWindowMargin;
+    /** The window of tiles the current search is restricted to, or null if the search is not restricted */
+    protected BoundingBox searchWindow;
+    /** Whether sinks that cannot be reached within their net's search window are searched for across the device */
+    protected boolean windowFallback;
+    /** The sinks of the last net routed that could not be reached within its search window, and were not routed */
+    protected final List<PathFinderRouteTree> deferredSinks;
+    /** The delay model used for timing-driven routing, or null to route without considering delay */
+    protected DelayModel delayModel;
+    /** Whether to measure the bytes allocated by the thread while routing nets */
+    protected boolean measureAllocations;
+    /** The number of sinks routed by this router */
+    protected long numSinksRouted;
+    /** The number of wires expanded while searching for sinks (each is popped from the search queue once) */
+    protected long numNodesExpanded;
+    /** The number of wires pushed onto the search queue */
+    protected long numHeapPushes;
+    /** The number of times the key of a wire already in the search queue was decreased */
+    protected long numHeapUpdates;
+    /** The number of bytes allocated while routing nets (only if allocations are measured) */
+    protected long numBytesAllocated;
+    /** The number of sinks that could not be reached within their net's search window */
+    protected long numWindowFallbacks;
+    /** Nets with at least this many sinks are routed with the high-fanout strategy, or -1 to never use it */
+    protected int highFanoutThreshold;
+    /** The number of nets routed with the high-fanout strategy */
+    protected long numHighFanoutNets;
+    /** The time (in nanoseconds) spent routing nets with the high-fanout strategy */
+    protected long highFanoutTime;
 
     /**
      * MazeRouter constructor.
      * @param design the cell design we are routing
-     * @param wireUsageMap a map from wires to their usage.
+     * @param wireUsage the usage of the wires of the device.
      * @param useRoutethroughs whether to use site route-throughs
      */
-    public MazeRouter(CellDesign design, Map<Wire, WireUsage> wireUsageMap, boolean useRoutethroughs) {
+    public MazeRouter(CellDesign design, WireUsageStore wireUsage, boolean useRoutethroughs) {
         this.design = design;
         this.family = design.getFamily();
-        this.wireUsageMap = wireUsageMap;
+        this.wireUsage = wireUsage;
         this.useRoutethroughs = useRoutethroughs;
+        this.wireFlags = WireFlags.get(design.getDevice());
+        this.sliceLType = SiteType.valueOf(family, "SLICEL");
+        this.sliceMType = SiteType.valueOf(family, "SLICEM");
+        this.searchWindowMargin = -1;
+        this.windowFallback = true;
+        this.deferredSinks = new ArrayList<>();
+        this.highFanoutThreshold = -1;
     }
 
     /**
@@ -41,6 +90,233 @@ public abstract class MazeRouter {
      */
     abstract public boolean routeNet(IntersiteRoute intersiteRoute);
 
+    /**
+     * Creates a new maze router of the same type and configuration that shares this router's design and wire usage,
+     * but has its own search state. This allows separate threads to route different nets at the same time.
+     * @return the new maze router
+     */
+    abstract public MazeRouter newInstance();
+
+    /**
+     * Sets the routing lookahead used to estimate the remaining cost to a target.
+     * @param lookahead the lookahead, or null to use the Manhattan distance
+     */
+    public void setLookahead(RoutingLookahead lookahead) {
+        this.lookahead = lookahead;
+    }
+
+    /**
+     * Sets the routing-resource graph the router searches. With a graph, the router expands the graph's edges
+     * instead of the connections of the device's wires, and only looks up the wires and connections it needs.
+     * @param routingGraph the routing graph of the design's device, or null to search the device's wires directly
+     */
+    public void setRoutingGraph(RoutingGraph routingGraph) {
+        this.routingGraph = routingGraph;
+    }
+
+    /**
+     * Sets the margin of the search windows of nets. When the margin is not negative, the search for each sink of a
+     * net is restricted to the net's bounding box expanded by the margin on every side. Sinks that cannot be reached
+     * within the window are searched for again without a window. Clock nets and static nets are never restricted.
+     * @param searchWindowMargin the margin in tiles, or -1 to always search the whole device
+     */
+    public void setSearchWindowMargin(int searchWindowMargin) {
+        this.searchWindowMargin = searchWindowMargin;
+    }
+
+    /**
+     * Sets whether sinks that cannot be reached within their net's search window are searched for again without a
+     * window (the default). If not, such sinks are left unrouted and {@link #routeNet} still succeeds, so the search
+     * never leaves the window. The sinks that were left are returned by {@link #getDeferredSinks()}.
+     * @param windowFallback whether to search for sinks outside of their search window
+     */
+    public void setWindowFallback(boolean windowFallback) {
+        this.windowFallback = windowFallback;
+    }
+
+    /**
+     * Gets the sinks of the last net routed that could not be reached within the net's search window and were left
+     * unrouted. Sinks are only left unrouted when the window fallback is disabled.
+     * @return the unrouted sinks
+     */
+    public List<PathFinderRouteTree> getDeferredSinks() {
+        return deferredSinks;
+    }
+
+    /**
+     * Sets the number of sinks at which nets are routed with the high-fanout strategy. Instead of starting the search
+     * for every sink from the whole route tree built so far, the sinks of a high-fanout net are grouped into spatial
+     * clusters, a trunk is routed to each cluster from the whole tree, and the rest of the sinks of a cluster are
+     * searched for from the parts of the tree near them. Static nets and global clock nets are never routed this way.
+     * @param highFanoutThreshold the number of sinks, or -1 to never use the high-fanout strategy
+     */
+    public void setHighFanoutThreshold(int highFanoutThreshold) {
+        this.highFanoutThreshold = highFanoutThreshold;
+    }
+
+    /**
+     * Returns whether a net should be routed with the high-fanout strategy.
+     * @param intersiteRoute the inter-site route of the net
+     * @return true if the net is a high-fanout net
+     */
+    protected boolean isHighFanout(IntersiteRoute intersiteRoute) {
+        return highFanoutThreshold >= 0 && !intersiteRoute.isStatic() && !intersiteRoute.isGlobalClk()
+                && intersiteRoute.getSinkRouteTrees().size() >= highFanoutThreshold;
+    }
+
+    /**
+     * Gets the number of nets that have been routed with the high-fanout strategy.
+     * @return the number of high-fanout nets
+     */
+    public long getNumHighFanoutNets() {
+        return numHighFanoutNets;
+    }
+
+    /**
+     * Gets the time spent routing nets with the high-fanout strategy.
+     * @return the time in nanoseconds
+     */
+    public long getHighFanoutTime() {
+        return highFanoutTime;
+    }
+
+    /**
+     * Sets the delay model used for timing-driven routing. When a delay model is set, the cost of reaching a wire
+     * blends its delay and its congestion cost by the criticality of the sink being routed (as in VPR).
+     * @param delayModel the delay model, or null to route without considering delay
+     */
+    public void setDelayModel(DelayModel delayModel) {
+        this.delayModel = delayModel;
+    }
+
+    /**
+     * Gets the delay of using a connection, in the same units as the wire segment costs.
+     * @param connection the connection
+     * @return the delay cost of the connection
+     */
+    protected double getDelayCost(Connection connection) {
+        return delayModel.getConnectionDelay(connection) / delayModel.getDelayPerTile();
+    }
+
+    /**
+     * Gets the search window to restrict the searches of a net to.
+     * @param intersiteRoute the inter-site route of the net
+     * @return the search window, or null if searches of the net should not be restricted
+     */
+    protected BoundingBox getSearchWindow(IntersiteRoute intersiteRoute) {
+        return getSearchWindow(intersiteRoute, searchWindowMargin);
+    }
+
+    /**
+     * Gets the search window of a net for a margin.
+     * @param intersiteRoute the inter-site route of the net
+     * @param searchWindowMargin the margin in tiles, or -1 to not restrict searches
+     * @return the search window, or null if searches of the net should not be restricted
+     */
+    public static BoundingBox getSearchWindow(IntersiteRoute intersiteRoute, int searchWindowMargin) {
+        if (searchWindowMargin < 0)
+            return null;
+        // Clock routes use dedicated resources that are often far from the net's pins
+        if (intersiteRoute.isGlobalClk() || intersiteRoute.isLocalClk() || intersiteRoute.isClkBuffer())
+            return null;
+        BoundingBox boundingBox = intersiteRoute.getBoundingBox();
+        return (boundingBox == null) ? null : boundingBox.expand(searchWindowMargin);
+    }
+
+    /**
+     * Gets the number of sinks that could not be reached within their net's search window, and had to be searched
+     * for again without one.
+     * @return the number of search window fallbacks
+     */
+    public long getNumWindowFallbacks() {
+        return numWindowFallbacks;
+    }
+
+    /**
+     * Sets whether to measure the bytes allocated by the routing thread while routing nets. Measuring allocations
+     * requires a JVM that supports thread allocation counters.
+     * @param measureAllocations whether to measure allocations
+     */
+    public void setMeasureAllocations(boolean measureAllocations) {
+        this.measureAllocations = measureAllocations && getThreadMXBean() != null;
+    }
+
+    /**
+     * Gets the number of sinks this router has routed.
+     * @return the number of routed sinks
+     */
+    public long getNumSinksRouted() {
+        return numSinksRouted;
+    }
+
+    /**
+     * Gets the number of wires this router has expanded while searching for sinks.
+     * @return the number of expanded wires
+     */
+    public long getNumNodesExpanded() {
+        return numNodesExpanded;
+    }
+
+    /**
+     * Gets the number of wires this router has pushed onto its search queue.
+     * @return the number of heap pushes
+     */
+    public long getNumHeapPushes() {
+        return numHeapPushes;
+    }
+
+    /**
+     * Gets the number of times this router has decreased the key of a wire in its search queue.
+     * @return the number of heap decrease-key operations
+     */
+    public long getNumHeapUpdates() {
+        return numHeapUpdates;
+    }
+
+    /**
+     * Gets the number of bytes allocated while routing nets with this router.
+     * @return the number of allocated bytes, or 0 if allocations are not measured
+     */
+    public long getNumBytesAllocated() {
+        return numBytesAllocated;
+    }
+
+    /**
+     * Gets the number of bytes the current thread has allocated so far.
+     * @return the number of allocated bytes, or 0 if allocations are not measured
+     */
+    protected long getThreadAllocatedBytes() {
+        if (!measureAllocations)
+            return 0;
+        return getThreadMXBean().getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static com.sun.management.ThreadMXBean getThreadMXBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled())
+                return sunBean;
+        }
+        return null;
+    }
+
+    /**
+     * Estimates the cost to reach the target tile from the specified {@link Wire}. The routing lookahead is
+     * used if one has been set and it has an estimate for the wire. Otherwise, the Manhattan distance is used.
+     * @param wire        {@link Wire}
+     * @param targetTile  the target {@link Tile}
+     * @return the estimated remaining cost
+     */
+    protected double estimateRemainingCost(Wire wire, Tile targetTile) {
+        if (lookahead != null) {
+            double cost = lookahead.getCost(wire, targetTile);
+            if (cost >= 0)
+                return cost;
+        }
+        return manhattanDistance(wire, targetTile);
+    }
+
     /**
      * Calculates the Manhattan distance between the specified {@link RouteTree} and {@link Tile} objects.
      * The Tile of the wire within {@code tree} is used for the comparison. The Manhattan distance from
@@ -50,8 +326,16 @@ public abstract class MazeRouter {
      * @return The Manhattan distance between {@code tree} and {@code compareTile}
      */
     protected int manhattanDistance(RouteTree tree, Tile compareTile) {
-        Wire wire = tree.getWire();
+        return manhattanDistance(tree.getWire(), compareTile);
+    }
 
+    /**
+     * Calculates the Manhattan distance between the tile of the specified {@link Wire} and a {@link Tile}.
+     * @param wire        {@link Wire}
+     * @param compareTile {@link Tile}
+     * @return The Manhattan distance between {@code wire} and {@code compareTile}
+     */
+    protected int manhattanDistance(Wire wire, Tile compareTile) {
      //   if (wire.getTile() == compareTile)
       //  	System.out.println("OK");
 
@@ -64,47 +348,56 @@ public abstract class MazeRouter {
     }
 
     /**
-     * Gets a list of filtered connections from a route tree, taking into account the type of the net, the type of the
-     * connection, whether the sink wire is reserved, and whether the sink wire is included in a list of wires that
-     * should not be considered.
+     * Returns whether a connection may be used by a route, taking into account the search window, the type of the
+     * net, the type of the connection, and whether the sink wire is reserved. Callers are expected to check whether the sink wire has
+     * already been searched before calling this, since that check is much cheaper.
+     * @param intersiteRoute the inter-site route for the CellNet
+     * @param terminalWire the terminal wire of the sink being routed
+     * @param connection the connection to check
+     * @return true if the connection may be used, false otherwise
+     */
+    protected boolean isConnectionAllowed(IntersiteRoute intersiteRoute, Wire terminalWire, Connection connection) {
+        if (searchWindow != null && !searchWindow.contains(connection.getSinkWire().getTile()))
+            return false;
+        // If the connection is a route-through, check that it can be used
+        if (connection.isRouteThrough() && !canUseRoutethrough(connection))
+            return false;
+        return isSinkWireAllowed(intersiteRoute, terminalWire, connection.getSinkWire());
+    }
+
+    /**
+     * Returns whether a wire may be reached by a connection that is not a site route-through, taking into account the
+     * type of the net and whether the wire is reserved. Unlike {@link #isConnectionAllowed}, the search window is
+     * not checked, so callers that have the wire's coordinates can check it before creating the wire.
      * @param intersiteRoute the inter-site route for the CellNet
-     * @param routeTree the route tree to get connections for
-     * @param excludeWires sink wires to not include
-     * @return the list of filtered connections
+     * @param terminalWire the terminal wire of the sink being routed
+     * @param wire the sink wire of the connection
+     * @return true if the wire may be used, false otherwise
      */
-    protected Collection<Connection> getFilteredConnections(IntersiteRoute intersiteRoute, Wire terminalWire, RouteTree routeTree, Set<Wire> excludeWires) {
-        return routeTree.getWire().getWireConnections().stream()
-                .filter(conn -> !excludeWires.contains(conn.getSinkWire()))
-                .filter(conn -> isConnectionValid(intersiteRoute, conn, terminalWire))
-                .filter(conn -> design.isWireAvailable(intersiteRoute.getNet(), conn.getSinkWire()))
-                .collect(Collectors.toList());
+    protected boolean isSinkWireAllowed(IntersiteRoute intersiteRoute, Wire terminalWire, Wire wire) {
+        return isWireValid(intersiteRoute, wire, terminalWire)
+                && design.isWireAvailable(intersiteRoute.getNet(), wire);
     }
 
     /**
-     * Returns whether a given connection is valid, taking into account the type of net that is being routed, the type of
-     * sink wire, and the type of the connection.
+     * Returns whether a given wire is valid, taking into account the type of net that is being routed and the type of
+     * sink wire.
      */
-    private boolean isConnectionValid(IntersiteRoute intersiteRoute, Connection connection, Wire terminalWire) {
-        Wire wire = connection.getSinkWire();
+    private boolean isWireValid(IntersiteRoute intersiteRoute, Wire wire, Wire terminalWire) {
         Tile sinkTile = wire.getTile();
-        boolean clk = wire.getName().contains("CLK");
-        boolean gfan = wire.getName().contains("GFAN");
+        int flags = wireFlags.getWireFlags(wire);
+        boolean clk = (flags & WireFlags.CLK) != 0;
+        boolean gfan = (flags & WireFlags.GFAN) != 0;
 
         // Don't make connections outside of a partial device
-        if (sinkTile.getType().equals(TileType.valueOf(family, "OOC_WIRE")))
+        if ((wireFlags.getTileFlags(sinkTile) & WireFlags.OOC_TILE) != 0)
             return false;
 
-        // If the connection is a route-through, check that it can be used
-        if (connection.isRouteThrough()) {
-            if (!canUseRoutethrough(connection))
-                return false;
-        }
-
         // Ensure certain types of nets only use certain wires
         if (intersiteRoute.isGlobalClk()) {
             // Global clock nets can only use "CLK" and "GFAN" wire sinks.
             // But if the clock is going to an IO, it needs to be able to use other wires
-            if (FamilyInfos.get(family).ioTiles().contains(terminalWire.getTile().getType())) {
+            if ((wireFlags.getTileFlags(terminalWire.getTile()) & WireFlags.IO_TILE) != 0) {
                 return true;
             }
             return clk || gfan;
@@ -117,10 +410,10 @@ public abstract class MazeRouter {
             // CGF_CENTER_MID, INT_INTERFACE, INT, etc.
             return true;
         } else if (intersiteRoute.isStatic()) {
-			if (intersiteRoute.isGnd() && (wire.getName().equals("GND_WIRE"))) {
+			if (intersiteRoute.isGnd() && (flags & WireFlags.GND_WIRE) != 0) {
 				// For speed, don't allow tie-offs from other tiles
 				return intersiteRoute.isLocalTieOff(terminalWire.getTile(), sinkTile);
-			} else if (intersiteRoute.isVcc() && (wire.getName().equals("VCC_WIRE"))) {
+			} else if (intersiteRoute.isVcc() && (flags & WireFlags.VCC_WIRE) != 0) {
 				return intersiteRoute.isLocalTieOff(terminalWire.getTile(), sinkTile);
 			}
 			// static nets can connect to clock sinks
@@ -142,64 +435,32 @@ public abstract class MazeRouter {
      * @return whether the site route-through can be used
      */
     private boolean canUseRoutethrough(Connection connection) {
-        SiteType siteType = connection.getSite().getType();
+		int sourcePin = wireFlags.getSitePinCode(connection.getSourceWire());
+		int sinkPin = wireFlags.getSitePinCode(connection.getSinkWire());
 
 		if (!useRoutethroughs) {
-			SitePin sourceSitePin = connection.getSourceWire().getReverseConnectedPin();
-			SitePin sinkSitePin = connection.getSinkWire().getReverseConnectedPin();
-
-			if (sourceSitePin != null && sinkSitePin != null) {
+			if (sourcePin != WireFlags.PIN_NONE && sinkPin != WireFlags.PIN_NONE) {
 				// always allow, even if route-throughs are disabled.
-				return sourceSitePin.getName().equals("COUT");
+				return sourcePin == WireFlags.PIN_COUT;
 			}
 		} else {
-			if (siteType.equals(SiteType.valueOf(family, "SLICEM")) || siteType.equals(SiteType.valueOf(family, "SLICEL"))) {
+			SiteType siteType = connection.getSite().getType();
+			if (siteType.equals(sliceMType) || siteType.equals(sliceLType)) {
 				// Make the assumption that if the site-routethrough is an output-to-output routethrough,
 				// we can use it even if the site is used.
-				SitePin sourceSitePin = connection.getSourceWire().getReverseConnectedPin();
-				SitePin sinkSitePin = connection.getSinkWire().getReverseConnectedPin();
 
 				// If output-to-output
-				if (sourceSitePin != null && sinkSitePin != null) {
-					// TODO: Optimize
-					switch (sourceSitePin.getName()) {
-						case "A":
-							if ("AMUX".equals(sinkSitePin.getName())) {
-								if (design.isSitePipAtSiteUsed(connection.getSite(), "AOUTMUX")) {
-									return false;
-								}
-							} else {
-								System.err.println("Unexpected site routethrough: A-> " + sinkSitePin.getName());
-							}
-							break;
-						case "B":
-							if ("BMUX".equals(sinkSitePin.getName())) {
-								if (design.isSitePipAtSiteUsed(connection.getSite(), "BOUTMUX")) {
-									return false;
-								}
-							} else {
-								System.err.println("Unexpected site routethrough: B-> " + sinkSitePin.getName());
-							}
-							break;
-						case "C":
-							if ("CMUX".equals(sinkSitePin.getName())) {
-								if (design.isSitePipAtSiteUsed(connection.getSite(), "COUTMUX")) {
-									return false;
-								}
-							} else {
-								System.err.println("Unexpected site routethrough: C-> " + sinkSitePin.getName());
-							}
-							break;
-						case "D":
-							if ("DMUX".equals(sinkSitePin.getName())) {
-								if (design.isSitePipAtSiteUsed(connection.getSite(), "DOUTMUX")) {
-									return false;
-								}
-							} else {
-								System.err.println("Unexpected site routethrough: D-> " + sinkSitePin.getName());
-							}
-							break;
-						case "COUT":
+				if (sourcePin != WireFlags.PIN_NONE && sinkPin != WireFlags.PIN_NONE) {
+					switch (sourcePin) {
+						case WireFlags.PIN_A:
+							return canUseOutputMux(connection, sinkPin, WireFlags.PIN_AMUX, "AOUTMUX");
+						case WireFlags.PIN_B:
+							return canUseOutputMux(connection, sinkPin, WireFlags.PIN_BMUX, "BOUTMUX");
+						case WireFlags.PIN_C:
+							return canUseOutputMux(connection, sinkPin, WireFlags.PIN_CMUX, "COUTMUX");
+						case WireFlags.PIN_D:
+							return canUseOutputMux(connection, sinkPin, WireFlags.PIN_DMUX, "DOUTMUX");
+						case WireFlags.PIN_COUT:
                         /*
                         if ("DMUX".equals(sinkSitePin.getName())) {
                             // COUTUSED is used and DOUTMUX with CY as the input pin.
@@ -210,7 +471,7 @@ public abstract class MazeRouter {
                         */
 							return true;
 						default:
-							System.err.println("Unexpected site routethrough: " + sourceSitePin.getName() + "-> " + sinkSitePin.getName());
+							System.err.println("Unexpected site routethrough: " + getSitePinName(connection.getSourceWire()) + "-> " + getSitePinName(connection.getSinkWire()));
 							break;
 
 					}
@@ -231,4 +492,25 @@ public abstract class MazeRouter {
 	return false;
 
     }
+
+    /**
+     * Returns whether a slice output-to-output route-through (such as A -> AMUX) can be used. It can be used as long
+     * as the output mux it goes through is not already used by the site.
+     * @param connection the site route-through connection
+     * @param sinkPin the code of the site pin of the route-through's sink wire
+     * @param expectedSinkPin the code of the output mux pin the route-through is expected to use
+     * @param outputMux the name of the output mux site PIP
+     * @return whether the site route-through can be used
+     */
+    private boolean canUseOutputMux(Connection connection, int sinkPin, int expectedSinkPin, String outputMux) {
+		if (sinkPin != expectedSinkPin) {
+			System.err.println("Unexpected site routethrough: " + getSitePinName(connection.getSourceWire()) + "-> " + getSitePinName(connection.getSinkWire()));
+			return true;
+		}
+		return !design.isSitePipAtSiteUsed(connection.getSite(), outputMux);
+    }
+
+    private static String getSitePinName(Wire wire) {
+		return wire.getReverseConnectedPin().getName();
+    }
 }
@@ -0,0 +1,152 @@
+package edu.byu.ece.rapidSmith.cad.route.mazerouter;
+
+import java.util.Arrays;
+
+/**
+ * An indexed binary min-heap of search nodes (integer IDs) keyed by their cost. Keys and nodes are kept in parallel
+ * primitive arrays, so adding and removing nodes does not allocate once the heap has grown to its working size.
+ * The heap also keeps the position of every node it contains, so whether a node is in the heap can be checked in
+ * constant time and the key of a node can be decreased in O(log n) when a cheaper path to it is found.
+ * The heap is meant to be cleared and reused for every search.
+ */
+public class NodeHeap {
+	private static final int INITIAL_CAPACITY = 1 << 10;
+	/** The cost of each entry of the heap */
+	private double[] keys;
+	/** The node of each entry of the heap */
+	private int[] nodes;
+	/** The position of each node in the heap, or -1 if the node is not in the heap */
+	private int[] positions;
+	/** The number of entries in the heap */
+	private int size;
+
+	public NodeHeap() {
+		keys = new double[INITIAL_CAPACITY];
+		nodes = new int[INITIAL_CAPACITY];
+		positions = new int[INITIAL_CAPACITY];
+		Arrays.fill(positions, -1);
+		size = 0;
+	}
+
+	/**
+	 * Returns whether the heap has no entries.
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Gets the number of entries in the heap.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Removes all entries from the heap, keeping its storage.
+	 */
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			positions[nodes[i]] = -1;
+		}
+		size = 0;
+	}
+
+	/**
+	 * Returns whether the node is in the heap.
+	 * @param node the node
+	 * @return true if the heap contains the node, false otherwise
+	 */
+	public boolean contains(int node) {
+		return node < positions.length && positions[node] != -1;
+	}
+
+	/**
+	 * Gets the key of a node in the heap.
+	 * @param node the node (must be in the heap)
+	 * @return the cost of the node
+	 */
+	public double getKey(int node) {
+		return keys[positions[node]];
+	}
+
+	/**
+	 * Adds a node to the heap. The node must not already be in the heap.
+	 * @param node the node
+	 * @param key the cost of the node
+	 */
+	public void add(int node, double key) {
+		assert !contains(node);
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			nodes = Arrays.copyOf(nodes, size * 2);
+		}
+		if (node >= positions.length) {
+			int oldLength = positions.length;
+			positions = Arrays.copyOf(positions, Math.max(node + 1, oldLength * 2));
+			Arrays.fill(positions, oldLength, positions.length, -1);
+		}
+		siftUp(size++, node, key);
+	}
+
+	/**
+	 * Lowers the key of a node in the heap. Nothing is done if the new key is not lower than the current one.
+	 * @param node the node (must be in the heap)
+	 * @param key the new cost of the node
+	 */
+	public void decreaseKey(int node, double key) {
+		int i = positions[node];
+		if (key < keys[i])
+			siftUp(i, node, key);
+	}
+
+	/**
+	 * Removes the node with the lowest cost from the heap.
+	 * @return the node
+	 */
+	public int poll() {
+		int top = nodes[0];
+		positions[top] = -1;
+		size--;
+		if (size > 0)
+			siftDown(0, nodes[size], keys[size]);
+		return top;
+	}
+
+	private void siftUp(int i, int node, double key) {
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (keys[parent] <= key)
+				break;
+			move(parent, i);
+			i = parent;
+		}
+		set(i, node, key);
+	}
+
+	private void siftDown(int i, int node, double key) {
+		int half = size >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			if (child + 1 < size && keys[child + 1] < keys[child])
+				child++;
+			if (key <= keys[child])
+				break;
+			move(child, i);
+			i = child;
+		}
+		set(i, node, key);
+	}
+
+	private void move(int from, int to) {
+		keys[to] = keys[from];
+		nodes[to] = nodes[from];
+		positions[nodes[to]] = to;
+	}
+
+	private void set(int i, int node, double key) {
+		keys[i] = key;
+		nodes[i] = node;
+		positions[node] = i;
+	}
+}
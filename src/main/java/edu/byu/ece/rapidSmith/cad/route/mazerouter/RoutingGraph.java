@@ -0,0 +1,450 @@
+package edu.byu.ece.rapidSmith.cad.route.mazerouter;
+
+import edu.byu.ece.rapidSmith.RSEnvironment;
+import edu.byu.ece.rapidSmith.device.*;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A compact routing-resource graph of a device, stored in compressed sparse row (CSR) form. Every tile wire of the
+ * device is a node, numbered tile by tile (in tile index order) and by wire enum within a tile. The connections of
+ * the wires are the edges of the graph, and the edges leaving a node are stored next to each other:
+ * <ul>
+ *     <li>tileNodeStart - the first node of each tile (so the nodes of a tile are a contiguous range)</li>
+ *     <li>nodeWireEnums and nodeTiles - the wire enum and tile index of each node</li>
+ *     <li>edgeStart - the first edge of each node (the edges of node n are [edgeStart[n], edgeStart[n + 1]))</li>
+ *     <li>edgeSinks and edgeFlags - the sink node of each edge, and whether it is a PIP and/or a site route-through</li>
+ * </ul>
+ * The A* router can expand the graph without creating {@link Wire} or {@link Connection} objects for every
+ * connection it looks at. Only the connections of the routes it finds (and of route-throughs, which need their site)
+ * are looked up in the device.
+ *
+ * Building the graph walks every wire of the device, so it is done once and saved to the part folder of the device.
+ * The file holds the arrays as they are kept in memory, so later runs map the file instead of reading it, and the
+ * graph of a device is shared by all routers for that device (see {@link #get(Device)}).
+ */
+public class RoutingGraph {
+	private static final String FILE_NAME = "routing.graph";
+	/** Identifies routing graph files ("RSRG") */
+	private static final int MAGIC = 0x52535247;
+	private static final int FORMAT_VERSION = 1;
+
+	/** The edge is a PIP */
+	public static final int PIP = 1;
+	/** The edge is a site route-through */
+	public static final int ROUTE_THROUGH = 1 << 1;
+
+	/** Graphs of the devices that have been routed */
+	private static final Map<Device, RoutingGraph> deviceGraphs = new WeakHashMap<>();
+
+	private final Device device;
+	private final int numColumns;
+	private final int numNodes;
+	private final int numEdges;
+	private final IntBuffer tileNodeStart;
+	private final IntBuffer nodeWireEnums;
+	private final IntBuffer nodeTiles;
+	private final IntBuffer edgeStart;
+	private final IntBuffer edgeSinks;
+	private final ByteBuffer edgeFlags;
+
+	private RoutingGraph(Device device, int numNodes, int numEdges, IntBuffer tileNodeStart, IntBuffer nodeWireEnums,
+						 IntBuffer nodeTiles, IntBuffer edgeStart, IntBuffer edgeSinks, ByteBuffer edgeFlags) {
+		this.device = device;
+		this.numColumns = device.getColumns();
+		this.numNodes = numNodes;
+		this.numEdges = numEdges;
+		this.tileNodeStart = tileNodeStart;
+		this.nodeWireEnums = nodeWireEnums;
+		this.nodeTiles = nodeTiles;
+		this.edgeStart = edgeStart;
+		this.edgeSinks = edgeSinks;
+		this.edgeFlags = edgeFlags;
+	}
+
+	/**
+	 * Gets the routing graph of a device. The graph is mapped from the part folder if it has been built before.
+	 * Otherwise, it is built and saved to the part folder.
+	 * @param device the device
+	 * @return the routing graph
+	 */
+	public static RoutingGraph get(Device device) {
+		synchronized (deviceGraphs) {
+			return deviceGraphs.computeIfAbsent(device, RoutingGraph::load);
+		}
+	}
+
+	private static RoutingGraph load(Device device) {
+		Path path = getGraphFile(device);
+
+		if (Files.exists(path)) {
+			try {
+				RoutingGraph graph = map(device, path);
+				if (graph != null)
+					return graph;
+			} catch (IOException | RuntimeException e) {
+				// The file is unreadable, truncated, or too large to map. Build the graph instead.
+			}
+		}
+
+		System.out.println("[INFO] Building routing graph for " + device.getPartName());
+		RoutingGraph graph = build(device);
+		try {
+			graph.save(path);
+		} catch (IOException e) {
+			System.err.println("[WARNING] Could not save routing graph to " + path);
+		}
+		return graph;
+	}
+
+	private static Path getGraphFile(Device device) {
+		return RSEnvironment.defaultEnv().getPartFolderPath(device.getPartName()).resolve(FILE_NAME);
+	}
+
+	/**
+	 * Builds the routing graph of a device.
+	 * @param device the device
+	 * @return the routing graph
+	 */
+	public static RoutingGraph build(Device device) {
+		int numTiles = device.getRows() * device.getColumns();
+
+		// Find the wire enums of each tile. Wires that are only ever the sink of a connection are found
+		// through the wires that drive them.
+		int[][] tileEnums = new int[numTiles][];
+		int[] tileSizes = new int[numTiles];
+		for (Tile tile : device.getTiles(0, 0, device.getRows() - 1, device.getColumns() - 1)) {
+			for (Wire wire : tile.getWires()) {
+				addEnum(tileEnums, tileSizes, getTileIndex(device, tile), wire.getWireEnum());
+				for (Connection connection : wire.getWireConnections()) {
+					Wire sinkWire = connection.getSinkWire();
+					if (sinkWire instanceof TileWire)
+						addEnum(tileEnums, tileSizes, getTileIndex(device, sinkWire.getTile()), sinkWire.getWireEnum());
+				}
+			}
+		}
+
+		// Number the nodes by tile and by wire enum within each tile
+		int[] tileNodeStart = new int[numTiles + 1];
+		int numNodes = 0;
+		for (int tileIndex = 0; tileIndex < numTiles; tileIndex++) {
+			tileNodeStart[tileIndex] = numNodes;
+			int[] enums = tileEnums[tileIndex];
+			if (enums == null)
+				continue;
+			Arrays.sort(enums, 0, tileSizes[tileIndex]);
+			int size = 0;
+			for (int i = 0; i < tileSizes[tileIndex]; i++) {
+				if (size == 0 || enums[size - 1] != enums[i])
+					enums[size++] = enums[i];
+			}
+			tileSizes[tileIndex] = size;
+			numNodes += size;
+		}
+		tileNodeStart[numTiles] = numNodes;
+
+		int[] nodeWireEnums = new int[numNodes];
+		int[] nodeTiles = new int[numNodes];
+		for (int tileIndex = 0; tileIndex < numTiles; tileIndex++) {
+			for (int i = 0; i < tileSizes[tileIndex]; i++) {
+				nodeWireEnums[tileNodeStart[tileIndex] + i] = tileEnums[tileIndex][i];
+				nodeTiles[tileNodeStart[tileIndex] + i] = tileIndex;
+			}
+			tileEnums[tileIndex] = null;
+		}
+
+		// Add the edges of each node
+		RoutingGraph nodes = new RoutingGraph(device, numNodes, 0, IntBuffer.wrap(tileNodeStart),
+				IntBuffer.wrap(nodeWireEnums), IntBuffer.wrap(nodeTiles), null, null, null);
+		int[] edgeStart = new int[numNodes + 1];
+		int[] edgeSinks = new int[Math.max(16, numNodes * 4)];
+		byte[] edgeFlags = new byte[edgeSinks.length];
+		int numEdges = 0;
+		for (int node = 0; node < numNodes; node++) {
+			edgeStart[node] = numEdges;
+			for (Connection connection : nodes.getWire(node).getWireConnections()) {
+				int sinkNode = nodes.getNode(connection.getSinkWire());
+				if (sinkNode < 0)
+					continue;
+				if (numEdges == edgeSinks.length) {
+					edgeSinks = Arrays.copyOf(edgeSinks, numEdges * 2);
+					edgeFlags = Arrays.copyOf(edgeFlags, numEdges * 2);
+				}
+				edgeSinks[numEdges] = sinkNode;
+				edgeFlags[numEdges] = (byte) ((connection.isPip() ? PIP : 0) | (connection.isRouteThrough() ? ROUTE_THROUGH : 0));
+				numEdges++;
+			}
+		}
+		edgeStart[numNodes] = numEdges;
+
+		return new RoutingGraph(device, numNodes, numEdges, IntBuffer.wrap(tileNodeStart), IntBuffer.wrap(nodeWireEnums),
+				IntBuffer.wrap(nodeTiles), IntBuffer.wrap(edgeStart), IntBuffer.wrap(edgeSinks, 0, numEdges).slice(),
+				ByteBuffer.wrap(edgeFlags, 0, numEdges).slice());
+	}
+
+	private static void addEnum(int[][] tileEnums, int[] tileSizes, int tileIndex, int wireEnum) {
+		int[] enums = tileEnums[tileIndex];
+		if (enums == null) {
+			enums = new int[16];
+			tileEnums[tileIndex] = enums;
+		} else if (tileSizes[tileIndex] == enums.length) {
+			enums = Arrays.copyOf(enums, enums.length * 2);
+			tileEnums[tileIndex] = enums;
+		}
+		enums[tileSizes[tileIndex]++] = wireEnum;
+	}
+
+	private static int getTileIndex(Device device, Tile tile) {
+		return tile.getRow() * device.getColumns() + tile.getColumn();
+	}
+
+	/**
+	 * Saves the graph to a file. The file starts with a header (the format version, part name, and the sizes of the
+	 * arrays), padded to a multiple of four bytes, followed by the arrays of the graph. The graph is written to a
+	 * temporary file in the same folder, which then replaces the file, so a router running at the same time never
+	 * maps a partly written graph.
+	 * @param path the file to save to
+	 * @throws IOException if the file cannot be written
+	 */
+	public void save(Path path) throws IOException {
+		Path tempPath = Files.createTempFile(path.toAbsolutePath().getParent(), FILE_NAME, ".tmp");
+		try {
+			write(tempPath);
+			Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tempPath);
+		}
+	}
+
+	private void write(Path path) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			byte[] partName = device.getPartName().getBytes(StandardCharsets.UTF_8);
+			out.writeInt(partName.length);
+			out.write(partName);
+			while (out.size() % 4 != 0)
+				out.writeByte(0);
+			out.writeInt(device.getRows());
+			out.writeInt(device.getColumns());
+			out.writeInt(numNodes);
+			out.writeInt(numEdges);
+
+			writeInts(out, tileNodeStart);
+			writeInts(out, nodeWireEnums);
+			writeInts(out, nodeTiles);
+			writeInts(out, edgeStart);
+			writeInts(out, edgeSinks);
+			for (int i = 0; i < numEdges; i++)
+				out.writeByte(edgeFlags.get(i));
+		}
+	}
+
+	private static void writeInts(DataOutputStream out, IntBuffer values) throws IOException {
+		for (int i = 0; i < values.limit(); i++)
+			out.writeInt(values.get(i));
+	}
+
+	/**
+	 * Maps a saved graph into memory.
+	 * @return the graph, or null if the file is not a complete graph of the device
+	 */
+	private static RoutingGraph map(Device device, Path path) throws IOException {
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION)
+			return null;
+		byte[] partName = new byte[buffer.getInt()];
+		buffer.get(partName);
+		while (buffer.position() % 4 != 0)
+			buffer.get();
+		if (!new String(partName, StandardCharsets.UTF_8).equals(device.getPartName()))
+			return null;
+		if (buffer.getInt() != device.getRows() || buffer.getInt() != device.getColumns())
+			return null;
+		int numNodes = buffer.getInt();
+		int numEdges = buffer.getInt();
+
+		// A file with a different length was truncated or written by something else
+		int numTiles = device.getRows() * device.getColumns();
+		long expectedLength = buffer.position() + 4L * ((numTiles + 1) + 2L * numNodes + (numNodes + 1) + numEdges)
+				+ numEdges;
+		if (numNodes < 0 || numEdges < 0 || buffer.limit() != expectedLength)
+			return null;
+		IntBuffer tileNodeStart = intView(buffer, numTiles + 1);
+		IntBuffer nodeWireEnums = intView(buffer, numNodes);
+		IntBuffer nodeTiles = intView(buffer, numNodes);
+		IntBuffer edgeStart = intView(buffer, numNodes + 1);
+		IntBuffer edgeSinks = intView(buffer, numEdges);
+		ByteBuffer edgeFlags = buffer.slice();
+		edgeFlags.limit(numEdges);
+		return new RoutingGraph(device, numNodes, numEdges, tileNodeStart, nodeWireEnums, nodeTiles, edgeStart,
+				edgeSinks, edgeFlags);
+	}
+
+	/**
+	 * Gets a view of the next ints of a buffer, and moves the buffer past them.
+	 */
+	private static IntBuffer intView(ByteBuffer buffer, int length) {
+		IntBuffer view = buffer.slice().asIntBuffer();
+		view.limit(length);
+		buffer.position(buffer.position() + length * 4);
+		return view;
+	}
+
+	/**
+	 * Gets the number of nodes in the graph. Nodes are always in the range [0, size).
+	 * @return the number of nodes
+	 */
+	public int size() {
+		return numNodes;
+	}
+
+	/**
+	 * Gets the number of edges in the graph.
+	 * @return the number of edges
+	 */
+	public int getNumEdges() {
+		return numEdges;
+	}
+
+	/**
+	 * Gets the node of a wire.
+	 * @param wire the wire
+	 * @return the node, or -1 if the wire is not a tile wire of the graph's device
+	 */
+	public int getNode(Wire wire) {
+		if (!(wire instanceof TileWire) || wire.getTile() == null)
+			return -1;
+		Tile tile = wire.getTile();
+		return getNode(tile.getRow() * numColumns + tile.getColumn(), wire.getWireEnum());
+	}
+
+	/**
+	 * Gets the node of a wire in a tile.
+	 * @param tileIndex the index of the tile (row * columns + column)
+	 * @param wireEnum the wire enum
+	 * @return the node, or -1 if the tile has no such wire
+	 */
+	public int getNode(int tileIndex, int wireEnum) {
+		// Binary search of the tile's nodes, which are sorted by wire enum
+		int low = tileNodeStart.get(tileIndex);
+		int high = tileNodeStart.get(tileIndex + 1) - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int midEnum = nodeWireEnums.get(mid);
+			if (midEnum < wireEnum)
+				low = mid + 1;
+			else if (midEnum > wireEnum)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -1;
+	}
+
+	/**
+	 * Creates the wire of a node.
+	 * @param node the node
+	 * @return the wire
+	 */
+	public Wire getWire(int node) {
+		int tileIndex = nodeTiles.get(node);
+		return new TileWire(device.getTile(tileIndex / numColumns, tileIndex % numColumns), nodeWireEnums.get(node));
+	}
+
+	public int getWireEnum(int node) {
+		return nodeWireEnums.get(node);
+	}
+
+	public int getTileIndex(int node) {
+		return nodeTiles.get(node);
+	}
+
+	public int getRow(int node) {
+		return nodeTiles.get(node) / numColumns;
+	}
+
+	public int getColumn(int node) {
+		return nodeTiles.get(node) % numColumns;
+	}
+
+	/**
+	 * Gets the first edge leaving a node.
+	 * @param node the node
+	 * @return the first edge
+	 */
+	public int getFirstEdge(int node) {
+		return edgeStart.get(node);
+	}
+
+	/**
+	 * Gets the end of the edges leaving a node (one past its last edge).
+	 * @param node the node
+	 * @return the end of the node's edges
+	 */
+	public int getEdgeEnd(int node) {
+		return edgeStart.get(node + 1);
+	}
+
+	public int getEdgeSink(int edge) {
+		return edgeSinks.get(edge);
+	}
+
+	public boolean isPip(int edge) {
+		return (edgeFlags.get(edge) & PIP) != 0;
+	}
+
+	public boolean isRouteThrough(int edge) {
+		return (edgeFlags.get(edge) & ROUTE_THROUGH) != 0;
+	}
+
+	/**
+	 * Looks up the connection of an edge in the device.
+	 * @param node the node the edge leaves
+	 * @param edge the edge
+	 * @return the connection
+	 */
+	public Connection getConnection(int node, int edge) {
+		return getConnection(getWire(node), edge);
+	}
+
+	/**
+	 * Looks up the connection of an edge in the device.
+	 * @param sourceWire the wire of the node the edge leaves
+	 * @param edge the edge
+	 * @return the connection
+	 */
+	public Connection getConnection(Wire sourceWire, int edge) {
+		int sinkNode = getEdgeSink(edge);
+		int sinkTile = nodeTiles.get(sinkNode);
+		int sinkEnum = nodeWireEnums.get(sinkNode);
+		boolean pip = isPip(edge);
+		boolean routeThrough = isRouteThrough(edge);
+		for (Connection connection : sourceWire.getWireConnections()) {
+			Wire sinkWire = connection.getSinkWire();
+			if (sinkWire.getWireEnum() == sinkEnum && sinkWire.getTile() != null
+					&& sinkWire.getTile().getRow() * numColumns + sinkWire.getTile().getColumn() == sinkTile
+					&& connection.isPip() == pip && connection.isRouteThrough() == routeThrough)
+				return connection;
+		}
+		throw new AssertionError("Edge " + edge + " is not a connection of " + sourceWire.getFullName());
+	}
+}
@@ -0,0 +1,317 @@
+package edu.byu.ece.rapidSmith.cad.route.mazerouter;
+
+import com.caucho.hessian.io.Hessian2Input;
+import com.caucho.hessian.io.Hessian2Output;
+import edu.byu.ece.rapidSmith.RSEnvironment;
+import edu.byu.ece.rapidSmith.cad.route.TerminalTreeCache;
+import edu.byu.ece.rapidSmith.device.*;
+import edu.byu.ece.rapidSmith.util.FileTools;
+import edu.byu.ece.rapidSmith.util.Version;
+import edu.byu.ece.rapidSmith.util.VersionException;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * A precomputed routing lookahead (in the style of VPR and nextpnr) for the A* router. The lookahead stores, for each
+ * wire type (wire enum) and (row, column) offset to a target, the cheapest cost found to reach a routing target at
+ * that offset. Costs use the same wire segment costs as the {@link AStarRouter}, so the lookahead can be used in
+ * place of the Manhattan distance as the "H" of the A* search.
+ *
+ * The targets are the wires the A* router actually searches for: the first wire of the sink chain of each site input
+ * pin (see {@link TerminalTreeCache}), which is often in a neighboring interconnect tile rather than the tile of the
+ * pin. Offsets are measured to the tile of that wire, so they match the target tiles of the router's searches.
+ *
+ * The table is built by sampling reverse Dijkstra expansions from the input pins of a few tiles of each tile type.
+ * Building the table takes minutes on large devices, so it is saved to the part folder of the device and only built
+ * when requested with {@link #loadOrBuild(Device)}.
+ */
+public class RoutingLookahead implements Serializable {
+	private static final long serialVersionUID = 4213566389275312710L;
+	private static final Version LATEST_VERSION = new Version(1, 1);
+	private static final String FILE_NAME = "routing.lookahead";
+	/** The default maximum row/column offset stored in the table */
+	private static final int DEFAULT_MAX_OFFSET = 16;
+	/** The default number of tiles of each tile type to sample */
+	private static final int DEFAULT_SAMPLES_PER_TILE_TYPE = 2;
+	/** Marks table entries that were never reached while building */
+	private static final float UNKNOWN = -1;
+
+	private final Version version;
+	/** Maximum row/column offset stored in the tables */
+	private final int maxOffset;
+	/** Lookahead tables indexed by wire enum. Entries are indexed by row and column offset. */
+	private float[][] tables;
+	/** Cost per tile used to extrapolate beyond the maximum offset */
+	private float costPerTile;
+
+	private RoutingLookahead(int maxOffset) {
+		this.version = LATEST_VERSION;
+		this.maxOffset = maxOffset;
+		this.tables = new float[0][];
+		this.costPerTile = 1;
+	}
+
+	/**
+	 * Loads the lookahead of a device from the part folder.
+	 * @param device the device
+	 * @return the routing lookahead, or null if it has not been built or was built by an older version
+	 */
+	public static RoutingLookahead load(Device device) {
+		Path path = getLookaheadFile(device);
+		if (!path.toFile().exists()) {
+			System.out.println("[INFO] No routing lookahead has been built for " + device.getPartName());
+			return null;
+		}
+
+		try {
+			Hessian2Input his = FileTools.getCompactReader(path);
+			try {
+				RoutingLookahead lookahead = (RoutingLookahead) his.readObject();
+				if (lookahead.version.compareTo(LATEST_VERSION) < 0)
+					throw new VersionException(lookahead.version, LATEST_VERSION);
+				return lookahead;
+			} finally {
+				his.close();
+			}
+		} catch (VersionException e) {
+			System.err.println("[WARNING] The routing lookahead at " + path + " is out of date and must be rebuilt");
+		} catch (IOException e) {
+			System.err.println("[WARNING] Could not read the routing lookahead at " + path + ": " + e.getMessage());
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the lookahead of a device, building it (and saving it to the part folder) if it has not been built or is
+	 * out of date. Building the lookahead can take several minutes.
+	 * @param device the device
+	 * @return the routing lookahead
+	 */
+	public static RoutingLookahead loadOrBuild(Device device) {
+		RoutingLookahead lookahead = load(device);
+		if (lookahead != null)
+			return lookahead;
+
+		Path path = getLookaheadFile(device);
+		System.out.println("[INFO] Building routing lookahead for " + device.getPartName()
+				+ ". This can take several minutes and is only done once per part.");
+		long startTime = System.currentTimeMillis();
+		lookahead = build(device, DEFAULT_MAX_OFFSET, DEFAULT_SAMPLES_PER_TILE_TYPE);
+		System.out.println("[INFO] Built routing lookahead in " + (System.currentTimeMillis() - startTime) / 1000.0 + " seconds");
+		try {
+			lookahead.save(path);
+		} catch (IOException e) {
+			System.err.println("[WARNING] Could not save routing lookahead to " + path);
+		}
+		return lookahead;
+	}
+
+	/**
+	 * Saves the lookahead to a file.
+	 * @param path the file to save to
+	 * @throws IOException if the file cannot be written
+	 */
+	public void save(Path path) throws IOException {
+		Hessian2Output hos = FileTools.getCompactWriter(path);
+		try {
+			hos.writeObject(this);
+		} finally {
+			hos.close();
+		}
+	}
+
+	private static Path getLookaheadFile(Device device) {
+		return RSEnvironment.defaultEnv().getPartFolderPath(device.getPartName()).resolve(FILE_NAME);
+	}
+
+	/**
+	 * Builds the lookahead for a device by sampling reverse Dijkstra expansions from the sink chains of the site input
+	 * pins of tiles of every tile type with sites.
+	 * @param device the device
+	 * @param maxOffset the maximum row/column offset to store in the tables
+	 * @param samplesPerTileType the number of tiles of each tile type to sample
+	 * @return the routing lookahead
+	 */
+	public static RoutingLookahead build(Device device, int maxOffset, int samplesPerTileType) {
+		RoutingLookahead lookahead = new RoutingLookahead(maxOffset);
+
+		// Group the tiles with sites by type
+		Map<TileType, List<Tile>> tilesByType = new LinkedHashMap<>();
+		for (Tile tile : device.getTiles(0, 0, device.getRows() - 1, device.getColumns() - 1)) {
+			if (!hasSites(tile))
+				continue;
+			tilesByType.computeIfAbsent(tile.getType(), k -> new ArrayList<>()).add(tile);
+		}
+
+		for (List<Tile> tiles : tilesByType.values()) {
+			// Prefer the tiles closest to the center of the device so the expansions are not cut short by its edges
+			int centerRow = device.getRows() / 2;
+			int centerCol = device.getColumns() / 2;
+			tiles.sort(Comparator.comparingInt(t -> Math.abs(t.getRow() - centerRow) + Math.abs(t.getColumn() - centerCol)));
+
+			for (Tile tile : tiles.subList(0, Math.min(samplesPerTileType, tiles.size()))) {
+				for (Site site : tile.getSites()) {
+					for (SitePin sitePin : site.getSinkPins()) {
+						Wire pinWire = sitePin.getExternalWire();
+						if (pinWire != null)
+							lookahead.expand(TerminalTreeCache.getSinkChainRoot(pinWire));
+					}
+				}
+			}
+		}
+
+		lookahead.computeCostPerTile();
+		return lookahead;
+	}
+
+	private static boolean hasSites(Tile tile) {
+		if (tile.getSites() == null)
+			return false;
+		for (Site ignored : tile.getSites()) {
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Runs a reverse Dijkstra expansion from a target wire, recording the cheapest cost for each
+	 * wire type and offset reached.
+	 * @param targetWire the wire to expand from (the first wire of a sink chain)
+	 */
+	private void expand(Wire targetWire) {
+		Tile targetTile = targetWire.getTile();
+		Map<Wire, Double> bestCosts = new HashMap<>();
+		PriorityQueue<ExpansionEntry> queue = new PriorityQueue<>();
+		queue.add(new ExpansionEntry(targetWire, 0));
+		bestCosts.put(targetWire, 0.0);
+
+		while (!queue.isEmpty()) {
+			ExpansionEntry entry = queue.poll();
+			Wire wire = entry.wire;
+			if (entry.cost > bestCosts.get(wire))
+				continue;
+
+			Tile tile = wire.getTile();
+			int rowOffset = targetTile.getRow() - tile.getRow();
+			int colOffset = targetTile.getColumn() - tile.getColumn();
+			if (Math.abs(rowOffset) > maxOffset || Math.abs(colOffset) > maxOffset)
+				continue;
+			record(wire.getWireEnum(), rowOffset, colOffset, (float) entry.cost);
+
+			for (Connection connection : wire.getReverseWireConnections()) {
+				if (connection.isRouteThrough())
+					continue;
+
+				// The driver of the current wire
+				Wire driver = connection.getSinkWire();
+				double cost = entry.cost + getSegmentCost(connection);
+				Double best = bestCosts.get(driver);
+				if (best == null || cost < best) {
+					bestCosts.put(driver, cost);
+					queue.add(new ExpansionEntry(driver, cost));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the cost of using a connection. This matches the wire segment cost of the {@link AStarRouter}.
+	 */
+	private static double getSegmentCost(Connection connection) {
+		if (!connection.isPip())
+			return 0;
+		return (connection.getSourceWire().getTile() == connection.getSinkWire().getTile()) ? 0.65 : 1;
+	}
+
+	private void record(int wireEnum, int rowOffset, int colOffset, float cost) {
+		if (wireEnum >= tables.length)
+			tables = Arrays.copyOf(tables, Math.max(wireEnum + 1, tables.length * 2));
+
+		float[] table = tables[wireEnum];
+		if (table == null) {
+			int width = 2 * maxOffset + 1;
+			table = new float[width * width];
+			Arrays.fill(table, UNKNOWN);
+			tables[wireEnum] = table;
+		}
+
+		int index = getTableIndex(rowOffset, colOffset);
+		if (table[index] == UNKNOWN || cost < table[index])
+			table[index] = cost;
+	}
+
+	/**
+	 * Computes the cost per tile used to extrapolate past the maximum offset. This is the smallest cost per tile
+	 * of any entry at least half of the maximum offset away, so extrapolated costs remain optimistic.
+	 */
+	private void computeCostPerTile() {
+		float minCostPerTile = Float.MAX_VALUE;
+		for (float[] table : tables) {
+			if (table == null)
+				continue;
+			for (int rowOffset = -maxOffset; rowOffset <= maxOffset; rowOffset++) {
+				for (int colOffset = -maxOffset; colOffset <= maxOffset; colOffset++) {
+					int distance = Math.abs(rowOffset) + Math.abs(colOffset);
+					float cost = table[getTableIndex(rowOffset, colOffset)];
+					if (distance >= maxOffset / 2 && cost != UNKNOWN)
+						minCostPerTile = Math.min(minCostPerTile, cost / distance);
+				}
+			}
+		}
+		costPerTile = (minCostPerTile == Float.MAX_VALUE) ? 1 : minCostPerTile;
+	}
+
+	private int getTableIndex(int rowOffset, int colOffset) {
+		return (rowOffset + maxOffset) * (2 * maxOffset + 1) + (colOffset + maxOffset);
+	}
+
+	/**
+	 * Gets the estimated cost to reach the target tile from a wire. Offsets beyond the maximum offset of the table
+	 * are clamped to the table and the remaining distance is extrapolated.
+	 * @param wire the wire to estimate the cost from
+	 * @param targetTile the tile of the target wire (the first wire of the sink's chain, not the tile of its pin)
+	 * @return the estimated cost, or -1 if the lookahead has no information for the wire
+	 */
+	public double getCost(Wire wire, Tile targetTile) {
+		Tile tile = wire.getTile();
+		if (tile == null)
+			return 0;
+
+		int wireEnum = wire.getWireEnum();
+		if (wireEnum < 0 || wireEnum >= tables.length || tables[wireEnum] == null)
+			return -1;
+
+		int rowOffset = targetTile.getRow() - tile.getRow();
+		int colOffset = targetTile.getColumn() - tile.getColumn();
+		int clampedRow = Math.max(-maxOffset, Math.min(maxOffset, rowOffset));
+		int clampedCol = Math.max(-maxOffset, Math.min(maxOffset, colOffset));
+
+		float cost = tables[wireEnum][getTableIndex(clampedRow, clampedCol)];
+		if (cost == UNKNOWN)
+			return -1;
+
+		int remaining = Math.abs(rowOffset - clampedRow) + Math.abs(colOffset - clampedCol);
+		return cost + remaining * costPerTile;
+	}
+
+	/**
+	 * A wire reached during an expansion and the cost to reach the target from it.
+	 */
+	private static class ExpansionEntry implements Comparable<ExpansionEntry> {
+		private final Wire wire;
+		private final double cost;
+
+		ExpansionEntry(Wire wire, double cost) {
+			this.wire = wire;
+			this.cost = cost;
+		}
+
+		@Override
+		public int compareTo(ExpansionEntry o) {
+			return Double.compare(cost, o.cost);
+		}
+	}
+}
@@ -0,0 +1,190 @@
+package edu.byu.ece.rapidSmith.cad.route.mazerouter;
+
+import edu.byu.ece.rapidSmith.device.*;
+import edu.byu.ece.rapidSmith.device.families.FamilyInfo;
+import edu.byu.ece.rapidSmith.device.families.FamilyInfos;
+
+import java.util.*;
+
+/**
+ * Precomputed flags used by the maze routers to decide which connections a net may use. Checking whether a wire is a
+ * clock wire, a tie-off, or in an out-of-context tile requires string comparisons of wire and tile type names, and
+ * classifying a site route-through requires looking up the site pins of its wires. Since the inner loop of the maze
+ * router does these checks for every connection of every wire it expands, the results are stored in compact tables:
+ * <ul>
+ *     <li>Wire flags are stored per wire enum (wire names only depend on the wire enum).</li>
+ *     <li>Tile flags are stored per tile.</li>
+ *     <li>The site pin that drives a wire is stored per tile type and wire enum.</li>
+ * </ul>
+ * Wire and site pin entries are classified the first time they are needed. The tables of a device are shared by all
+ * routers (and routing runs) for that device, see {@link #get(Device)}.
+ */
+public class WireFlags {
+	/** The wire's name contains "CLK" */
+	public static final int CLK = 1;
+	/** The wire's name contains "GFAN" */
+	public static final int GFAN = 1 << 1;
+	/** The wire is a GND tie-off wire */
+	public static final int GND_WIRE = 1 << 2;
+	/** The wire is a VCC tie-off wire */
+	public static final int VCC_WIRE = 1 << 3;
+	/** Marks entries that have been classified */
+	private static final int CLASSIFIED = 1 << 7;
+
+	/** The tile is an out-of-context (partial device) tile */
+	public static final int OOC_TILE = 1;
+	/** The tile is an I/O tile */
+	public static final int IO_TILE = 1 << 1;
+
+	/** Codes for the site pin driving a wire (its reverse connected pin) */
+	public static final int PIN_NONE = 0;
+	public static final int PIN_COUT = 1;
+	public static final int PIN_A = 2;
+	public static final int PIN_B = 3;
+	public static final int PIN_C = 4;
+	public static final int PIN_D = 5;
+	public static final int PIN_AMUX = 6;
+	public static final int PIN_BMUX = 7;
+	public static final int PIN_CMUX = 8;
+	public static final int PIN_DMUX = 9;
+	/** Any other site pin */
+	public static final int PIN_OTHER = 10;
+	private static final String[] PIN_NAMES = {null, "COUT", "A", "B", "C", "D", "AMUX", "BMUX", "CMUX", "DMUX"};
+
+	/** Flags tables of the devices that have been routed */
+	private static final Map<Device, WireFlags> deviceFlags = new WeakHashMap<>();
+
+	private final int numColumns;
+	/** Flags of each tile, indexed by tile index */
+	private final byte[] tileFlags;
+	/** Index of the tile type of each tile, indexed by tile index */
+	private final int[] tileTypeIndices;
+	/** Flags of each wire enum. Zero for wire enums that have not been classified yet. */
+	private volatile byte[] wireFlags;
+	/** Site pin codes (plus one, so zero means unclassified) indexed by tile type index and wire enum */
+	private final byte[][] sitePinCodes;
+
+	/**
+	 * Gets the flags tables for a device, creating them if this is the first time the device is routed.
+	 * @param device the device
+	 * @return the flags tables
+	 */
+	public static WireFlags get(Device device) {
+		synchronized (deviceFlags) {
+			return deviceFlags.computeIfAbsent(device, WireFlags::new);
+		}
+	}
+
+	private WireFlags(Device device) {
+		numColumns = device.getColumns();
+		int numTiles = device.getRows() * device.getColumns();
+		tileFlags = new byte[numTiles];
+		tileTypeIndices = new int[numTiles];
+
+		FamilyType family = device.getFamily();
+		FamilyInfo familyInfo = FamilyInfos.get(family);
+		TileType oocType = TileType.valueOf(family, "OOC_WIRE");
+		Map<TileType, Integer> typeIndices = new HashMap<>();
+		for (Tile tile : device.getTiles(0, 0, device.getRows() - 1, device.getColumns() - 1)) {
+			int index = getTileIndex(tile);
+			TileType type = tile.getType();
+			int flags = 0;
+			if (type.equals(oocType))
+				flags |= OOC_TILE;
+			if (familyInfo.ioTiles().contains(type))
+				flags |= IO_TILE;
+			tileFlags[index] = (byte) flags;
+			tileTypeIndices[index] = typeIndices.computeIfAbsent(type, k -> typeIndices.size());
+		}
+
+		wireFlags = new byte[0];
+		sitePinCodes = new byte[typeIndices.size()][];
+	}
+
+	private int getTileIndex(Tile tile) {
+		return tile.getRow() * numColumns + tile.getColumn();
+	}
+
+	/**
+	 * Gets the flags of a wire ({@link #CLK}, {@link #GFAN}, {@link #GND_WIRE}, {@link #VCC_WIRE}).
+	 * @param wire the wire
+	 * @return the flags of the wire
+	 */
+	public int getWireFlags(Wire wire) {
+		int wireEnum = wire.getWireEnum();
+		if (wireEnum < 0)
+			return classifyWire(wire);
+
+		byte[] flags = wireFlags;
+		if (wireEnum < flags.length && flags[wireEnum] != 0)
+			return flags[wireEnum] & ~CLASSIFIED;
+		return storeWireFlags(wireEnum, classifyWire(wire));
+	}
+
+	private static int classifyWire(Wire wire) {
+		String name = wire.getName();
+		int flags = 0;
+		if (name.contains("CLK"))
+			flags |= CLK;
+		if (name.contains("GFAN"))
+			flags |= GFAN;
+		if (name.equals("GND_WIRE"))
+			flags |= GND_WIRE;
+		if (name.equals("VCC_WIRE"))
+			flags |= VCC_WIRE;
+		return flags;
+	}
+
+	private synchronized int storeWireFlags(int wireEnum, int flags) {
+		byte[] table = wireFlags;
+		if (wireEnum >= table.length)
+			table = Arrays.copyOf(table, Math.max(wireEnum + 1, table.length * 2));
+		table[wireEnum] = (byte) (flags | CLASSIFIED);
+		wireFlags = table;
+		return flags;
+	}
+
+	/**
+	 * Gets the flags of a tile ({@link #OOC_TILE}, {@link #IO_TILE}).
+	 * @param tile the tile
+	 * @return the flags of the tile
+	 */
+	public int getTileFlags(Tile tile) {
+		return tileFlags[getTileIndex(tile)];
+	}
+
+	/**
+	 * Gets the code of the site pin that drives a wire (the wire's reverse connected pin).
+	 * @param wire the wire (must exist in a tile)
+	 * @return the site pin code, one of the PIN_ constants
+	 */
+	public int getSitePinCode(Wire wire) {
+		int typeIndex = tileTypeIndices[getTileIndex(wire.getTile())];
+		int wireEnum = wire.getWireEnum();
+		byte[] codes = sitePinCodes[typeIndex];
+		if (codes != null && wireEnum < codes.length && codes[wireEnum] != 0)
+			return codes[wireEnum] - 1;
+		return storeSitePinCode(typeIndex, wireEnum, classifySitePin(wire.getReverseConnectedPin()));
+	}
+
+	private static int classifySitePin(SitePin sitePin) {
+		if (sitePin == null)
+			return PIN_NONE;
+		for (int code = PIN_COUT; code < PIN_NAMES.length; code++) {
+			if (PIN_NAMES[code].equals(sitePin.getName()))
+				return code;
+		}
+		return PIN_OTHER;
+	}
+
+	private synchronized int storeSitePinCode(int typeIndex, int wireEnum, int code) {
+		byte[] codes = sitePinCodes[typeIndex];
+		if (codes == null)
+			codes = new byte[wireEnum + 1];
+		else if (wireEnum >= codes.length)
+			codes = Arrays.copyOf(codes, Math.max(wireEnum + 1, codes.length * 2));
+		codes[wireEnum] = (byte) (code + 1);
+		sitePinCodes[typeIndex] = codes;
+		return code;
+	}
+}
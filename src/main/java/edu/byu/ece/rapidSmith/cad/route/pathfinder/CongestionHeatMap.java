@@ -0,0 +1,134 @@
+package edu.byu.ece.rapidSmith.cad.route.pathfinder;
+
+import edu.byu.ece.rapidSmith.device.Device;
+import edu.byu.ece.rapidSmith.device.Tile;
+import edu.byu.ece.rapidSmith.device.Wire;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A tile-grid snapshot of the wire usage of a routing, used to see where a design is congested. For every tile,
+ * the heat map holds the number of wires of the tile that are used, the total occupancy of those wires and the
+ * total overuse of the tile's overused wires.
+ */
+public class CongestionHeatMap {
+	private final int rows;
+	private final int columns;
+	/** The number of used wires of each tile, indexed by row * columns + column */
+	private final int[] usedWires;
+	/** The total occupancy of the wires of each tile */
+	private final int[] occupancy;
+	/** The total overuse of the wires of each tile */
+	private final int[] overuse;
+
+	private CongestionHeatMap(int rows, int columns) {
+		this.rows = rows;
+		this.columns = columns;
+		this.usedWires = new int[rows * columns];
+		this.occupancy = new int[rows * columns];
+		this.overuse = new int[rows * columns];
+	}
+
+	/**
+	 * Creates a heat map of the current wire usage.
+	 * @param device the device being routed
+	 * @param wireUsage the wire usage of the routes
+	 * @return the heat map
+	 */
+	public static CongestionHeatMap create(Device device, WireUsageStore wireUsage) {
+		CongestionHeatMap heatMap = new CongestionHeatMap(device.getRows(), device.getColumns());
+		WireNodeIndex nodeIndex = wireUsage.getNodeIndex();
+		for (int node = 0; node < wireUsage.size(); node++) {
+			int nodeOccupancy = wireUsage.getOccupancy(node);
+			if (nodeOccupancy == 0)
+				continue;
+
+			Wire wire = nodeIndex.getWire(node);
+			Tile tile = wire.getTile();
+			if (tile == null)
+				continue;
+
+			int index = tile.getRow() * heatMap.columns + tile.getColumn();
+			heatMap.usedWires[index]++;
+			heatMap.occupancy[index] += nodeOccupancy;
+			heatMap.overuse[index] += Math.max(0, nodeOccupancy - wireUsage.getCapacity(node));
+		}
+		return heatMap;
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	public int getColumns() {
+		return columns;
+	}
+
+	public int getUsedWires(int row, int column) {
+		return usedWires[row * columns + column];
+	}
+
+	public int getOccupancy(int row, int column) {
+		return occupancy[row * columns + column];
+	}
+
+	public int getOveruse(int row, int column) {
+		return overuse[row * columns + column];
+	}
+
+	/**
+	 * Writes the overuse of every tile as a grid of comma-separated values, one line per tile row. This can be
+	 * loaded directly as an image or matrix by most plotting tools.
+	 * @param file the file to write
+	 * @throws IOException if the file can't be written
+	 */
+	public void writeOveruseGrid(Path file) throws IOException {
+		writeGrid(file, overuse);
+	}
+
+	/**
+	 * Writes the occupancy of every tile as a grid of comma-separated values, one line per tile row.
+	 * @param file the file to write
+	 * @throws IOException if the file can't be written
+	 */
+	public void writeOccupancyGrid(Path file) throws IOException {
+		writeGrid(file, occupancy);
+	}
+
+	private void writeGrid(Path file, int[] values) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+			for (int row = 0; row < rows; row++) {
+				StringBuilder line = new StringBuilder();
+				for (int column = 0; column < columns; column++) {
+					if (column > 0)
+						line.append(',');
+					line.append(values[row * columns + column]);
+				}
+				writer.write(line.toString());
+				writer.newLine();
+			}
+		}
+	}
+
+	/**
+	 * Writes the tiles that have used wires as comma-separated values with a header, one line per tile.
+	 * @param file the file to write
+	 * @throws IOException if the file can't be written
+	 */
+	public void writeCsv(Path file) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+			writer.write("row,column,used_wires,occupancy,overuse");
+			writer.newLine();
+			for (int index = 0; index < rows * columns; index++) {
+				if (usedWires[index] == 0)
+					continue;
+				writer.write((index / columns) + "," + (index % columns) + "," + usedWires[index] + ","
+						+ occupancy[index] + "," + overuse[index]);
+				writer.newLine();
+			}
+		}
+	}
+}
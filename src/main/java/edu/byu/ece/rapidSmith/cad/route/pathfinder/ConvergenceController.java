@@ -0,0 +1,198 @@
+package edu.byu.ece.rapidSmith.cad.route.pathfinder;
+
+/**
+ * Decides when PathFinder should stop negotiating and how its congestion factors change between iterations.
+ *
+ * After every iteration that leaves wires congested, the controller is given the number of overused wires and the
+ * total overuse. Negotiation stops when an iteration limit or a wall-clock time limit is reached, or when the total
+ * overuse has not improved on its best value for a number of iterations (a stall). Any of these can be disabled by
+ * setting it to -1.
+ *
+ * By default the present congestion factor grows geometrically without bound and the history factor is fixed, as in
+ * the original PathFinder loop. With adaptive factors enabled, the factors follow a schedule like VPR's: the present
+ * congestion factor is capped, and the history factor is raised while the overuse is not improving, so wires that
+ * are always fought over become expensive enough for some of their nets to find other paths.
+ */
+public class ConvergenceController {
+	/** The largest present congestion factor used with adaptive factors (VPR's default max_pres_fac) */
+	private static final double MAX_PRESENT_CONGESTION_FACTOR = 1000;
+	/** The largest history factor used with adaptive factors */
+	private static final double MAX_HISTORY_FACTOR = 16;
+	/** How much the history factor is raised each time the overuse stops improving */
+	private static final double HISTORY_FACTOR_MULT = 1.5;
+	/** The number of iterations without improvement after which the history factor is raised */
+	private static final int HISTORY_STALL_ITERATIONS = 4;
+
+	/**
+	 * Why negotiation has stopped (or that it should continue).
+	 */
+	public enum Status {
+		/** Negotiation should continue */
+		RUNNING,
+		/** No wires are congested */
+		CONVERGED,
+		/** The iteration limit was reached */
+		ITERATION_LIMIT,
+		/** The time limit was reached */
+		TIME_LIMIT,
+		/** The total overuse stopped improving */
+		STALLED
+	}
+
+	/** The last iteration to run, or -1 for no limit */
+	private int maxIterations;
+	/** The wall-clock time limit in milliseconds, or -1 for no limit */
+	private long timeLimit;
+	/** The number of iterations without a new best total overuse after which routing has stalled, or -1 */
+	private int stallIterations;
+	/** Whether the congestion factors are adapted to the progress of the negotiation */
+	private boolean adaptiveFactors;
+
+	private long startTime;
+	private int bestOveruse;
+	private int bestIteration;
+	/** The number of iterations since the best total overuse was found */
+	private int iterationsSinceImprovement;
+	private Status status;
+
+	/**
+	 * Creates a controller with no iteration or time limit that stops after 50 iterations without improvement.
+	 */
+	public ConvergenceController() {
+		this.maxIterations = -1;
+		this.timeLimit = -1;
+		this.stallIterations = 50;
+		this.adaptiveFactors = false;
+		start();
+	}
+
+	/**
+	 * Sets the last PathFinder iteration to run.
+	 * @param maxIterations the iteration limit, or -1 for no limit
+	 */
+	public void setMaxIterations(int maxIterations) {
+		this.maxIterations = maxIterations;
+	}
+
+	/**
+	 * Sets how long PathFinder may negotiate. The limit is checked between iterations.
+	 * @param timeLimit the time limit in milliseconds, or -1 for no limit
+	 */
+	public void setTimeLimit(long timeLimit) {
+		this.timeLimit = timeLimit;
+	}
+
+	/**
+	 * Sets the number of iterations without improving on the lowest total overuse after which negotiation stops.
+	 * @param stallIterations the number of iterations, or -1 to never stop because of a stall
+	 */
+	public void setStallIterations(int stallIterations) {
+		this.stallIterations = stallIterations;
+	}
+
+	/**
+	 * Sets whether the present congestion and history factors are adapted to the progress of the negotiation.
+	 * @param adaptiveFactors whether to adapt the factors
+	 */
+	public void setAdaptiveFactors(boolean adaptiveFactors) {
+		this.adaptiveFactors = adaptiveFactors;
+	}
+
+	/**
+	 * Resets the controller at the start of a negotiation.
+	 */
+	public void start() {
+		startTime = System.currentTimeMillis();
+		bestOveruse = Integer.MAX_VALUE;
+		bestIteration = 0;
+		iterationsSinceImprovement = 0;
+		status = Status.RUNNING;
+	}
+
+	/**
+	 * Records the result of an iteration and decides whether negotiation should continue.
+	 * @param iteration the iteration that was just run
+	 * @param numOverusedNodes the number of wires that are still overused
+	 * @param totalOveruse the total overuse of the overused wires
+	 * @return {@link Status#RUNNING} if negotiation should continue, or the reason it should stop
+	 */
+	public Status update(int iteration, int numOverusedNodes, int totalOveruse) {
+		if (numOverusedNodes == 0) {
+			status = Status.CONVERGED;
+			return status;
+		}
+
+		if (totalOveruse < bestOveruse) {
+			bestOveruse = totalOveruse;
+			bestIteration = iteration;
+			iterationsSinceImprovement = 0;
+		} else {
+			iterationsSinceImprovement++;
+		}
+
+		if (maxIterations >= 0 && iteration >= maxIterations)
+			status = Status.ITERATION_LIMIT;
+		else if (timeLimit >= 0 && getElapsedTime() >= timeLimit)
+			status = Status.TIME_LIMIT;
+		else if (stallIterations >= 0 && iterationsSinceImprovement >= stallIterations)
+			status = Status.STALLED;
+		else
+			status = Status.RUNNING;
+		return status;
+	}
+
+	/**
+	 * Computes the present congestion factor of the next iteration.
+	 * @param presentCongestionFactor the factor of the iteration that was just run
+	 * @param presentCongestionMultFactor the factor it is multiplied by each iteration
+	 * @return the factor to use in the next iteration
+	 */
+	public double nextPresentCongestionFactor(double presentCongestionFactor, double presentCongestionMultFactor) {
+		double next = presentCongestionFactor * presentCongestionMultFactor;
+		return adaptiveFactors ? Math.min(next, MAX_PRESENT_CONGESTION_FACTOR) : next;
+	}
+
+	/**
+	 * Computes the history factor of the next iteration. With adaptive factors, the factor is raised every few
+	 * iterations that the total overuse does not improve.
+	 * @param historyFactor the factor of the iteration that was just run
+	 * @return the factor to use in the next iteration
+	 */
+	public double nextHistoryFactor(double historyFactor) {
+		if (!adaptiveFactors || iterationsSinceImprovement == 0 || iterationsSinceImprovement % HISTORY_STALL_ITERATIONS != 0)
+			return historyFactor;
+		return Math.min(historyFactor * HISTORY_FACTOR_MULT, MAX_HISTORY_FACTOR);
+	}
+
+	/**
+	 * Gets the status decided by the last update.
+	 * @return the status
+	 */
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * Gets the lowest total overuse seen since the negotiation started.
+	 * @return the lowest total overuse, or Integer.MAX_VALUE if no iteration has been recorded
+	 */
+	public int getBestOveruse() {
+		return bestOveruse;
+	}
+
+	/**
+	 * Gets the iteration the lowest total overuse was seen in.
+	 * @return the iteration
+	 */
+	public int getBestIteration() {
+		return bestIteration;
+	}
+
+	/**
+	 * Gets the time since the negotiation started.
+	 * @return the elapsed time in milliseconds
+	 */
+	public long getElapsedTime() {
+		return System.currentTimeMillis() - startTime;
+	}
+}
@@ -0,0 +1,103 @@
+package edu.byu.ece.rapidSmith.cad.route.pathfinder;
+
+import edu.byu.ece.rapidSmith.cad.route.BoundingBox;
+import edu.byu.ece.rapidSmith.cad.route.IntersiteRoute;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The net ordering policies available to PathFinder.
+ */
+public final class NetOrderingPolicies {
+	private NetOrderingPolicies() {
+	}
+
+	/**
+	 * Routes nets with fewer sinks first. This is the order PathFinder has always used.
+	 * @return the policy
+	 */
+	public static NetOrderingPolicy bySinkCount() {
+		return intersiteRoute -> intersiteRoute.getSinkRouteTrees().size();
+	}
+
+	/**
+	 * Routes nets with smaller bounding boxes first. Nets without a bounding box (static nets) are routed last.
+	 * @return the policy
+	 */
+	public static NetOrderingPolicy byBoundingBoxArea() {
+		return intersiteRoute -> {
+			BoundingBox boundingBox = intersiteRoute.getBoundingBox();
+			return (boundingBox == null) ? Double.MAX_VALUE : boundingBox.getArea();
+		};
+	}
+
+	/**
+	 * Routes nets with the most critical sinks first, so they get first pick of the fastest wires.
+	 * @return the policy
+	 */
+	public static NetOrderingPolicy byCriticality() {
+		return intersiteRoute -> {
+			double maxCriticality = 0;
+			for (PathFinderRouteTree sinkTree : intersiteRoute.getSinkRouteTrees()) {
+				maxCriticality = Math.max(maxCriticality, intersiteRoute.getCriticality(sinkTree));
+			}
+			return -maxCriticality;
+		};
+	}
+
+	/**
+	 * Routes nets that have been congested in the most PathFinder iterations first.
+	 * @return the policy
+	 */
+	public static NetOrderingPolicy byFailureCount() {
+		return intersiteRoute -> -intersiteRoute.getNumFailures();
+	}
+
+	/**
+	 * Routes nets that used the most congested wires in the previous iteration first.
+	 * @return the policy
+	 */
+	public static NetOrderingPolicy byCongestionTouches() {
+		return intersiteRoute -> -intersiteRoute.getNumCongestedWires();
+	}
+
+	/**
+	 * Routes clock nets and high-fanout nets before all other nets. Each group of nets is ordered by another policy.
+	 * @param policy the policy to order nets within each group by
+	 * @param fanoutThreshold the number of sinks at which a net is considered high-fanout
+	 * @return the policy
+	 */
+	public static NetOrderingPolicy priorityNetsFirst(NetOrderingPolicy policy, int fanoutThreshold) {
+		return new NetOrderingPolicy() {
+			@Override
+			public double getKey(IntersiteRoute intersiteRoute) {
+				return policy.getKey(intersiteRoute);
+			}
+
+			@Override
+			public void sort(List<IntersiteRoute> intersiteRoutes) {
+				List<IntersiteRoute> priorityRoutes = new ArrayList<>();
+				List<IntersiteRoute> otherRoutes = new ArrayList<>();
+				for (IntersiteRoute intersiteRoute : intersiteRoutes) {
+					if (isPriorityRoute(intersiteRoute, fanoutThreshold))
+						priorityRoutes.add(intersiteRoute);
+					else
+						otherRoutes.add(intersiteRoute);
+				}
+
+				policy.sort(priorityRoutes);
+				policy.sort(otherRoutes);
+				intersiteRoutes.clear();
+				intersiteRoutes.addAll(priorityRoutes);
+				intersiteRoutes.addAll(otherRoutes);
+			}
+		};
+	}
+
+	private static boolean isPriorityRoute(IntersiteRoute intersiteRoute, int fanoutThreshold) {
+		if (intersiteRoute.isGlobalClk() || intersiteRoute.isLocalClk() || intersiteRoute.isClkBuffer())
+			return true;
+		return !intersiteRoute.isStatic() && intersiteRoute.getSinkRouteTrees().size() >= fanoutThreshold;
+	}
+}
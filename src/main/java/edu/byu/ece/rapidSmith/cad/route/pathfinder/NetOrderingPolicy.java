@@ -0,0 +1,39 @@
+package edu.byu.ece.rapidSmith.cad.route.pathfinder;
+
+import edu.byu.ece.rapidSmith.cad.route.IntersiteRoute;
+
+import java.util.*;
+
+/**
+ * Decides the order in which PathFinder routes the inter-site routes of each iteration. A policy gives each route a
+ * sort key, and routes are routed in increasing order of their keys. The keys are computed once per sort rather than
+ * on every comparison. See {@link NetOrderingPolicies} for the available policies.
+ */
+@FunctionalInterface
+public interface NetOrderingPolicy {
+	/**
+	 * Computes the sort key of an inter-site route. Routes with smaller keys are routed first.
+	 * @param intersiteRoute the inter-site route
+	 * @return the sort key
+	 */
+	double getKey(IntersiteRoute intersiteRoute);
+
+	/**
+	 * Sorts inter-site routes into the order they should be routed in. Routes with equal keys keep their order.
+	 * @param intersiteRoutes the inter-site routes to sort
+	 */
+	default void sort(List<IntersiteRoute> intersiteRoutes) {
+		IntersiteRoute[] routes = intersiteRoutes.toArray(new IntersiteRoute[0]);
+		double[] keys = new double[routes.length];
+		Integer[] order = new Integer[routes.length];
+		for (int i = 0; i < routes.length; i++) {
+			keys[i] = getKey(routes[i]);
+			order[i] = i;
+		}
+
+		Arrays.sort(order, Comparator.comparingDouble(i -> keys[i]));
+		for (int i = 0; i < routes.length; i++) {
+			intersiteRoutes.set(i, routes[order[i]]);
+		}
+	}
+}
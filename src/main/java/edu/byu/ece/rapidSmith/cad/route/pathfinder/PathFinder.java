@@ -1,25 +1,35 @@
 package edu.byu.ece.rapidSmith.cad.route.pathfinder;
 
+import edu.byu.ece.rapidSmith.cad.route.BoundingBox;
 import edu.byu.ece.rapidSmith.cad.route.GlobalWire;
 import edu.byu.ece.rapidSmith.cad.route.GlobalWireConnection;
 import edu.byu.ece.rapidSmith.cad.route.IntersiteRoute;
+import edu.byu.ece.rapidSmith.cad.route.LutPinSwapper;
 import edu.byu.ece.rapidSmith.cad.route.mazerouter.MazeRouter;
+import edu.byu.ece.rapidSmith.cad.route.timing.StaticTimingAnalyzer;
 import edu.byu.ece.rapidSmith.cad.pack.rsvpack.CadException;
 import edu.byu.ece.rapidSmith.design.subsite.*;
 import edu.byu.ece.rapidSmith.device.*;
 import edu.byu.ece.rapidSmith.device.families.FamilyInfo;
 import edu.byu.ece.rapidSmith.device.families.FamilyInfos;
-import edu.byu.ece.rapidSmith.util.Sorting;
 import edu.byu.ece.rapidSmith.util.Time;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.*;
 
 /**
  * An implementation of the Path Finder negotiated congestion routing algorithm. Based in part after the implementation
  * found in Verilog-to-Routing (VTR).
  */
 public class PathFinder {
+    /** Size (in tiles) of the square regions used to check whether routes of a parallel batch overlap */
+    private static final int BATCH_REGION_SIZE = 8;
+    /** The maximum number of routes in one parallel batch */
+    private static final int MAX_BATCH_SIZE = 256;
+    /** The margin (in tiles) of the windows parallel searches are restricted to when search windows are not used */
+    private static final int DEFAULT_BATCH_WINDOW_MARGIN = 3;
     private CellDesign design;
     private CellLibrary libCells;
     private FamilyInfo familyInfo;
@@ -27,6 +37,24 @@ public class PathFinder {
     private Set<Bel> gndSourceBels;
     /** The maze router to use in the inner loop of PathFinder */
     private MazeRouter mazeRouter;
+    /** The number of threads to route nets with */
+    private int numThreads;
+    /** Maze routers (one per thread) that are not currently routing a net */
+    private BlockingQueue<MazeRouter> workerRouters;
+    /** The threads that route nets with the worker routers. Created with the worker routers and shut down once PathFinder finishes. */
+    private ExecutorService executor;
+    /** Whether to only rip up and re-route the branches of routes that cross congested wires */
+    private boolean incrementalReroute;
+    /** The trees that congested branches were detached from, for each route (used for incremental re-routing) */
+    private Map<IntersiteRoute, List<PathFinderRouteTree>> detachedBranchParents;
+    /** The margin of the nets' search windows on the first iteration, or -1 to not restrict searches */
+    private int searchWindowMargin;
+    /** How much to grow the margin of the search windows per iteration */
+    private int searchWindowGrowth;
+    /** Computes the criticality of sinks for timing-driven routing, or null to route without timing */
+    private StaticTimingAnalyzer timingAnalyzer;
+    /** The order to route nets in each iteration */
+    private NetOrderingPolicy orderingPolicy;
     /** Present congestion factor */
     private double presentCongestionFactor;
     /** How much to multiply the present congestion factor by after each iteration */
@@ -37,19 +65,49 @@ public class PathFinder {
     private int initStaticSearchSize;
     /** How much to increase the static search size per iteration */
     private int staticSearchSizeFactor;
-    /** Map from wires to their corresponding wire usage. */
-    private Map<Wire, WireUsage> wireUsageMap;
-
-    public PathFinder(Device device, CellLibrary libCells, CellDesign design, MazeRouter mazeRouter, Map<Wire, WireUsage> wireUsageMap, Set<Bel> vccSourceBels, Set<Bel> gndSourceBels) {
+    /** Whether unused LUTs near the sinks of static nets are added as static sources */
+    private boolean useStaticSourceLuts;
+    /** Index of the LUTs that can be used as static sources (created the first time static sources are added) */
+    private StaticSourceIndex staticSourceIndex;
+    /** The radius (in index buckets) that has been searched for static sources around each static sink */
+    private Map<PathFinderRouteTree, Integer> staticSearchRadii;
+    /** The static source wires that have been added to each static route */
+    private Map<IntersiteRoute, Set<Wire>> staticSourceWires;
+    /** The file to save checkpoints to, or null to not save checkpoints */
+    private Path checkpointFile;
+    /** The number of iterations between checkpoints */
+    private int checkpointInterval;
+    /** Decides when negotiation stops and how the congestion factors change between iterations */
+    private ConvergenceController convergence;
+    /** The report of why the last negotiation did not converge, or null if it converged */
+    private RoutingFailureReport failureReport;
+    /** Collects per-iteration statistics of the negotiation, or null to not collect any */
+    private RoutingTelemetry telemetry;
+    /** Moves congested LUT inputs to equivalent pins between iterations, or null to keep the packed pin mapping */
+    private LutPinSwapper lutPinSwapper;
+    /** The usage of every wire used by a route. */
+    private WireUsageStore wireUsage;
+
+    public PathFinder(Device device, CellLibrary libCells, CellDesign design, MazeRouter mazeRouter, WireUsageStore wireUsage, Set<Bel> vccSourceBels, Set<Bel> gndSourceBels) {
         this.familyInfo = FamilyInfos.get(device.getFamily());
         this.design = design;
         this.libCells = libCells;
         this.mazeRouter = mazeRouter;
-        this.wireUsageMap = wireUsageMap;
+        this.wireUsage = wireUsage;
         presentCongestionFactor = 1;
         presentCongestionMultFactor = 1.3;
         historyFactor = 1;
         staticSearchSizeFactor = 4;
+        numThreads = 1;
+        incrementalReroute = false;
+        detachedBranchParents = new HashMap<>();
+        searchWindowMargin = -1;
+        searchWindowGrowth = 2;
+        orderingPolicy = NetOrderingPolicies.bySinkCount();
+        useStaticSourceLuts = false;
+        staticSearchRadii = new HashMap<>();
+        staticSourceWires = new HashMap<>();
+        convergence = new ConvergenceController();
         this.vccSourceBels = vccSourceBels;
         this.gndSourceBels = gndSourceBels;
     }
@@ -57,69 +115,133 @@ public class PathFinder {
     /**
      * Execute the pathfinder algorithm.
      * @param intersiteRoutes The inter-site routes for PathFinder to route
+     * @throws CadException if a net can't be routed, or if the convergence controller stops the negotiation before
+     * all congestion is resolved
      */
-    public void execute(ArrayList<IntersiteRoute> intersiteRoutes) {
-        // Initialize the static search size (the tile distance to search for static sources)
-        int staticSearchSize = initStaticSearchSize;
+    public void execute(ArrayList<IntersiteRoute> intersiteRoutes) throws CadException {
+        // Make a list of nets to route. Routes whose sinks were all connected before PathFinder started (such as
+        // direct connections) only need to be applied.
+        List<IntersiteRoute> toRoute = new ArrayList<>();
+        for (IntersiteRoute intersiteRoute : intersiteRoutes) {
+            if (!intersiteRoute.getSinksToRoute().isEmpty())
+                toRoute.add(intersiteRoute);
+        }
 
-        boolean routed = false;
-        int iteration = 1;
+        // The first iteration searches the initial static search size (the tile distance to search for static sources)
+        try {
+            negotiate(intersiteRoutes, toRoute, 1, initStaticSearchSize);
+        } finally {
+            shutDownWorkers();
+        }
+    }
+
+    /**
+     * Resumes the pathfinder algorithm from a checkpoint saved by an earlier run. The route trees, historical
+     * congestion, iteration number, present congestion factor and static search size are restored from the
+     * checkpoint. All other parameters (such as the congestion multiplication and history factors) are taken from
+     * this instance, so they may differ from those of the run that saved the checkpoint.
+     * @param intersiteRoutes the inter-site routes for PathFinder to route (freshly created for the design)
+     * @param checkpoint the checkpoint to resume from
+     * @throws CadException if the checkpoint does not match the design, if a net can't be routed, or if the
+     * convergence controller stops the negotiation before all congestion is resolved
+     */
+    public void resume(ArrayList<IntersiteRoute> intersiteRoutes, RouteCheckpoint checkpoint) throws CadException {
+        Device device = design.getDevice();
+        if (!checkpoint.getPartName().equals(device.getPartName()))
+            throw new CadException("Checkpoint is for part " + checkpoint.getPartName() + ", not " + device.getPartName());
+
+        // The saved route trees lead to the swapped LUT pins, so the pins are swapped first
+        if (checkpoint.hasPinSwaps()) {
+            if (lutPinSwapper == null)
+                throw new CadException("Checkpoint has swapped LUT pins, so LUT pin swapping must be enabled to resume it");
+            checkpoint.restorePinSwaps(intersiteRoutes, design, lutPinSwapper);
+        }
+        List<IntersiteRoute> toRoute = checkpoint.restoreRoutes(intersiteRoutes, device);
+        for (IntersiteRoute intersiteRoute : intersiteRoutes) {
+            updateWireUsage(intersiteRoute);
+        }
+        checkpoint.restoreHistory(wireUsage, device);
+        presentCongestionFactor = checkpoint.getPresentCongestionFactor();
+
+        System.out.println("[INFO] Resuming from iteration " + checkpoint.getIteration() + " with " + toRoute.size()
+                + " routes still congested.");
+        try {
+            negotiate(intersiteRoutes, toRoute, checkpoint.getIteration(), checkpoint.getStaticSearchSize());
+        } finally {
+            shutDownWorkers();
+        }
+    }
 
-        // Make a list of nets to route
-        List<IntersiteRoute> toRoute = new ArrayList<>(intersiteRoutes);
+    /**
+     * Runs PathFinder iterations until no routes are congested or the convergence controller stops the negotiation.
+     * @param intersiteRoutes all the inter-site routes
+     * @param toRoute the inter-site routes to route in the first iteration
+     * @param iteration the number of the first iteration
+     * @param staticSearchSize the distance in tiles to search for static sources in the first iteration
+     * @throws CadException if a net can't be routed or the negotiation is stopped before all congestion is resolved
+     */
+    private void negotiate(ArrayList<IntersiteRoute> intersiteRoutes, List<IntersiteRoute> toRoute, int iteration, int staticSearchSize) throws CadException {
+        boolean routed = false;
+        failureReport = null;
+        convergence.start();
 
-        // Sort the nets by decreasing number of sinks
-        Sorting.quickSort(toRoute, 0, toRoute.size() - 1);
+        // Sort the nets into the order they will be routed in
+        orderingPolicy.sort(toRoute);
+        wireUsage.setPresentCongestionFactor(presentCongestionFactor);
 
         // Loop until all nets are routed
         while (!routed) {
-            int numRouted = 1;
-
-            // Inner Loop of PathFinder - Route unrouted nets using a maze router
+            // Count the sinks that will be re-routed and the sinks whose routes are kept this iteration
+            int sinksRerouted = 0;
+            int sinksPreserved = 0;
             for (IntersiteRoute intersiteRoute : toRoute) {
-                if (iteration > 1) {
-                    ripUpRoute(intersiteRoute);
-                }
+                sinksRerouted += intersiteRoute.getSinksToRoute().size();
+                sinksPreserved += intersiteRoute.getRoutedSinks().size();
+            }
+
+            // Update the criticality of every sink from the routes made so far (and estimates for unrouted sinks)
+            if (timingAnalyzer != null) {
+                timingAnalyzer.updateCriticalities(intersiteRoutes);
+                System.out.printf("[INFO] Estimated critical path delay: %.3f ns%n", timingAnalyzer.getCriticalPathDelay());
+            }
 
-                System.out.println("[INFO] Finding route for " + intersiteRoute.getNet().getName() + " (" + numRouted + "/" + toRoute.size() + ")");
-                if (mazeRouter.routeNet(intersiteRoute)) {
-                    // Update the occupancy and present congestion of every node in the new route
+            // Routes that are still congested get more room to detour each iteration
+            if (searchWindowMargin >= 0)
+                applySearchWindowMargin(getSearchWindowMargin(iteration));
 
-                    if (iteration > 1)
-                        updateWireUsage(intersiteRoute);
-                } else {
-                    // Route could not be found
-                    System.err.println("[WARNING] " + intersiteRoute.getNet().getName() + " could not be routed.");
-                    return;
+            // Give the static routes more sources near their unrouted sinks
+            if (useStaticSourceLuts) {
+                for (IntersiteRoute intersiteRoute : toRoute) {
+                    if (intersiteRoute.isStatic())
+                        addPossibleStaticSources(intersiteRoute, staticSearchSize);
                 }
+            }
 
-                numRouted++;
+            if (telemetry != null)
+                telemetry.startIteration(iteration, toRoute, getRouters(), presentCongestionFactor, historyFactor);
+
+            // Inner Loop of PathFinder - Route unrouted nets using a maze router
+            IntersiteRoute unroutable = (numThreads > 1) ? routeParallel(toRoute, iteration) : routeSequential(toRoute, iteration);
+            if (unroutable != null) {
+                printSearchStatistics();
+                if (telemetry != null)
+                    telemetry.finish(wireUsage);
+                throw new CadException("Net " + unroutable.getNet().getName() + " could not be routed in iteration "
+                        + iteration);
             }
 
             // Calculate conflicts and update usage
             Set<IntersiteRoute> unrouted = new HashSet<>();
-            Set<WireUsage> congestedWires = new HashSet<>();
+            // The congested branches found in each of the routes just made
+            Map<IntersiteRoute, List<PathFinderRouteTree>> congestedBranches = new HashMap<>();
             int numCongestedRoutes;
 
-            // Identify congested wires by iterating through all routes just made
             for (IntersiteRoute intersiteRoute : toRoute) {
 
                 if (iteration == 1)
                     updateWireUsage(intersiteRoute);
 
-                // Search the inter-site tree for conflicted wires
-                PathFinderRouteTree root = intersiteRoute.getRouteTree().getRoot();
-                Iterable<PathFinderRouteTree> typed = root.typedIterator();
-                for (PathFinderRouteTree rt : typed) {
-                    WireUsage wireUsage = wireUsageMap.get(rt.getWire());
-                    assert (wireUsage != null);
-                    assert (wireUsage.getRoutes() != null);
-                    assert (wireUsageMap.get(rt.getWire()) != null);
-
-                    if (wireUsage.isCongested()) {
-                        congestedWires.add(wireUsage);
-                    }
-                }
+                intersiteRoute.setNumCongestedWires(0);
 
                 // Reset the inter-sites sinks to route
                 intersiteRoute.getSinksToRoute().clear();
@@ -129,19 +251,64 @@ public class PathFinder {
                 intersiteRoute.setRoutedSinks(new HashSet<>(intersiteRoute.getSinkRouteTrees()));
             }
 
-            // After each iteration, recompute the present congestion and historical congestion for each congested
-            // wire. Also create a list of routes that need to be re-routed.
-            for (WireUsage wireUsage : congestedWires) {
+            // The wire usage store keeps track of the overused wires, so only those need to be visited to update the
+            // historical congestion and to create a list of routes that need to be re-routed.
+            int[] congestedWires = wireUsage.getOverusedNodes();
+            int totalOveruse = wireUsage.getTotalOveruse();
+            for (int node : congestedWires) {
                 // Add to list of inter-site routes to re-route (we will re-route every net that used this congested wire)
-                unrouted.addAll(wireUsage.getRoutes());
+                for (IntersiteRoute intersiteRoute : wireUsage.getRoutes(node)) {
+                    unrouted.add(intersiteRoute);
+                    intersiteRoute.setNumCongestedWires(intersiteRoute.getNumCongestedWires() + 1);
+                }
 
                 // update the historical congestion factor
-                wireUsage.incrementHistory(historyFactor);
+                wireUsage.incrementHistory(node, historyFactor);
+            }
+
+            if (telemetry != null)
+                telemetry.endIteration(getRouters(), wireUsage, unrouted.size());
+
+            // Stop (with a report of the remaining congestion) instead of negotiating forever
+            if (congestedWires.length > 0
+                    && convergence.update(iteration, congestedWires.length, totalOveruse) != ConvergenceController.Status.RUNNING) {
+                failureReport = RoutingFailureReport.create(convergence, iteration, wireUsage, unrouted.size());
+                failureReport.print();
+                printSearchStatistics();
+                if (telemetry != null)
+                    telemetry.finish(wireUsage);
+                throw new CadException("Routing did not converge after " + iteration + " iterations ("
+                        + congestedWires.length + " wires still congested)");
+            }
+
+            // Find the congested branches of the congested routes before any of them are ripped up
+            if (incrementalReroute) {
+                for (IntersiteRoute intersiteRoute : unrouted) {
+                    congestedBranches.put(intersiteRoute, findCongestedBranches(intersiteRoute));
+                }
             }
 
             // Update the set of routed and un-routed sinks for each of the inter-site routes that aren't fully routed.
             for (IntersiteRoute intersiteRoute : unrouted) {
-                updateSinkStatus(intersiteRoute);
+                intersiteRoute.incrementNumFailures();
+                List<PathFinderRouteTree> branches = congestedBranches.get(intersiteRoute);
+                if (branches != null) {
+                    // The congested branches were already found
+                    for (PathFinderRouteTree branch : branches) {
+                        ripUpBranch(intersiteRoute, branch);
+                    }
+                } else {
+                    updateSinkStatus(intersiteRoute);
+                }
+            }
+
+            // Move ripped-up LUT inputs to equivalent pins that are less congested
+            if (lutPinSwapper != null && !unrouted.isEmpty()) {
+                int numSwapped = 0;
+                for (IntersiteRoute intersiteRoute : unrouted) {
+                    numSwapped += lutPinSwapper.swapPins(intersiteRoute, wireUsage);
+                }
+                System.out.println("[INFO] " + numSwapped + " LUT input pins swapped.");
             }
 
             // Finish preparing for the next iteration, if there needs to be one
@@ -151,31 +318,125 @@ public class PathFinder {
             } else {
                 toRoute = new ArrayList<>(unrouted);
 
-                // Update the present congestion factor for every single wire ever used.
-                // This includes congested wires, wires used in just-created routes that weren't congested,
-                // AND wires that were used in previous iterations.
-                for (WireUsage wireUsage : wireUsageMap.values()) {
-                    wireUsage.updatePresentCongestion(presentCongestionFactor);
-                }
-
-                // increase the present congestion factor
+                // increase the present congestion factor. The present congestion of every wire is computed from
+                // the factor when its cost is needed, so no wires need to be updated.
                 iteration++;
-                presentCongestionFactor *= presentCongestionMultFactor;
+                presentCongestionFactor = convergence.nextPresentCongestionFactor(presentCongestionFactor, presentCongestionMultFactor);
+                historyFactor = convergence.nextHistoryFactor(historyFactor);
+                wireUsage.setPresentCongestionFactor(presentCongestionFactor);
                 staticSearchSize += (iteration * staticSearchSizeFactor);
 
                 // Re-sort the list of inter-site routes to route
-                Sorting.quickSort(toRoute, 0, toRoute.size() - 1);
+                orderingPolicy.sort(toRoute);
+
+                if (checkpointFile != null && (iteration - 1) % checkpointInterval == 0)
+                    saveCheckpoint(intersiteRoutes, iteration, staticSearchSize);
             }
 
             System.out.println("Iteration " + iteration + " done");
-            System.out.println("[INFO] " + congestedWires.size() + " wires still congested.");
-            System.out.println("[INFO] " + unrouted.size() + " routes still congested.\n");
+            System.out.println("[INFO] " + congestedWires.length + " wires still congested (total overuse " + totalOveruse + ").");
+            System.out.println("[INFO] " + unrouted.size() + " routes still congested.");
+            System.out.println("[INFO] " + sinksRerouted + " sinks routed, " + sinksPreserved + " sinks preserved.\n");
         }
 
+        printSearchStatistics();
+        if (telemetry != null)
+            telemetry.finish(wireUsage);
+
         // Apply the inter-site routes and add any static source LUTs
         applyRoutes(intersiteRoutes);
     }
 
+    /**
+     * Saves the state of the negotiation to the checkpoint file.
+     * @param intersiteRoutes all the inter-site routes
+     * @param iteration the next iteration to run
+     * @param staticSearchSize the static search size of the next iteration
+     */
+    private void saveCheckpoint(List<IntersiteRoute> intersiteRoutes, int iteration, int staticSearchSize) {
+        RouteCheckpoint checkpoint = RouteCheckpoint.capture(design.getDevice(), intersiteRoutes, wireUsage,
+                iteration, presentCongestionFactor, staticSearchSize,
+                (lutPinSwapper == null) ? Collections.emptyMap() : lutPinSwapper.getSwappedPins());
+        try {
+            checkpoint.save(checkpointFile);
+            System.out.println("[INFO] Saved routing checkpoint to " + checkpointFile);
+        } catch (IOException e) {
+            System.err.println("[WARNING] Could not save routing checkpoint to " + checkpointFile);
+        }
+    }
+
+    /**
+     * Gets the maze router and the worker maze routers (if routing in parallel).
+     */
+    private List<MazeRouter> getRouters() {
+        List<MazeRouter> routers = new ArrayList<>();
+        routers.add(mazeRouter);
+        if (workerRouters != null)
+            routers.addAll(workerRouters);
+        return routers;
+    }
+
+    /**
+     * Prints the number of sinks routed and wires expanded by the maze routers, along with the number of bytes
+     * they allocated per sink (if allocations were measured).
+     */
+    private void printSearchStatistics() {
+        List<MazeRouter> routers = getRouters();
+
+        long numSinks = 0;
+        long numNodes = 0;
+        long numBytes = 0;
+        long numFallbacks = 0;
+        long numHighFanoutNets = 0;
+        long highFanoutTime = 0;
+        for (MazeRouter router : routers) {
+            numSinks += router.getNumSinksRouted();
+            numNodes += router.getNumNodesExpanded();
+            numBytes += router.getNumBytesAllocated();
+            numFallbacks += router.getNumWindowFallbacks();
+            numHighFanoutNets += router.getNumHighFanoutNets();
+            highFanoutTime += router.getHighFanoutTime();
+        }
+
+        if (numSinks == 0)
+            return;
+        System.out.printf("[INFO] Maze router: %d sinks routed, %d wires expanded (%.1f per sink)%n",
+                numSinks, numNodes, (double) numNodes / numSinks);
+        if (searchWindowMargin >= 0 || numThreads > 1)
+            System.out.println("[INFO] Maze router: " + numFallbacks + " sinks were searched for outside of their search window");
+        if (numBytes > 0)
+            System.out.printf("[INFO] Maze router: %d bytes allocated (%.1f per sink)%n",
+                    numBytes, (double) numBytes / numSinks);
+        if (numHighFanoutNets > 0)
+            System.out.printf("[INFO] Maze router: %d high-fanout nets routed in %.3f s (%.2f ms per net)%n",
+                    numHighFanoutNets, highFanoutTime / 1e9, highFanoutTime / 1e6 / numHighFanoutNets);
+    }
+
+    /**
+     * Sets the controller that decides when negotiation stops and how the congestion factors change between
+     * iterations.
+     * @param convergence the convergence controller
+     */
+    public void setConvergenceController(ConvergenceController convergence) {
+        this.convergence = convergence;
+    }
+
+    /**
+     * Sets the collector of per-iteration routing statistics and congestion heat maps.
+     * @param telemetry the telemetry collector, or null to not collect statistics
+     */
+    public void setTelemetry(RoutingTelemetry telemetry) {
+        this.telemetry = telemetry;
+    }
+
+    /**
+     * Gets the report of why the last negotiation stopped before all congestion was resolved.
+     * @return the failure report, or null if the last negotiation converged
+     */
+    public RoutingFailureReport getFailureReport() {
+        return failureReport;
+    }
+
     /**
      * Set the present congestion factor for Path Finder.
      * @param presentCongestionFactor the factor
@@ -197,12 +458,109 @@ public class PathFinder {
         this.presentCongestionMultFactor = presentCongestionMultFactor;
     }
 
+    /**
+     * Sets whether PathFinder re-routes incrementally. When enabled, only the branches of a route that pass through
+     * congested wires are ripped up (along with their wire usage) and re-routed, while the usage of the rest of the
+     * route tree is kept. Otherwise, the usage of every wire of a congested route is removed and re-added each time
+     * it is re-routed.
+     * @param incrementalReroute whether to re-route incrementally
+     */
+    public void setIncrementalReroute(boolean incrementalReroute) {
+        this.incrementalReroute = incrementalReroute;
+    }
+
+    /**
+     * Sets the static timing analyzer used for timing-driven routing. Before each iteration, the analyzer updates
+     * the criticality of every sink, which the maze router uses to blend delay and congestion costs. The maze
+     * router must also be given a delay model.
+     * @param timingAnalyzer the timing analyzer, or null to route without timing
+     */
+    public void setTimingAnalyzer(StaticTimingAnalyzer timingAnalyzer) {
+        this.timingAnalyzer = timingAnalyzer;
+    }
+
+    /**
+     * Sets the order nets are routed in. The nets still to route are sorted with the policy at the start of every
+     * iteration, so policies based on criticality or congestion see the results of the previous iteration.
+     * See {@link NetOrderingPolicies} for the available policies.
+     * @param orderingPolicy the net ordering policy (routes nets with fewer sinks first by default)
+     */
+    public void setNetOrderingPolicy(NetOrderingPolicy orderingPolicy) {
+        this.orderingPolicy = orderingPolicy;
+    }
+
+    /**
+     * Sets the LUT pin swapper. After the congested sinks of each iteration are ripped up, the swapper may move
+     * sinks at LUT inputs to equivalent inputs of the same LUT that are less congested.
+     * @param lutPinSwapper the LUT pin swapper, or null to keep the packed LUT pin mapping
+     */
+    public void setLutPinSwapper(LutPinSwapper lutPinSwapper) {
+        this.lutPinSwapper = lutPinSwapper;
+    }
+
+    /**
+     * Sets the margin of the search windows of nets on the first iteration. The search for each sink of a net is
+     * restricted to the net's bounding box expanded by the margin, which grows by the search window growth every
+     * iteration. Sinks that cannot be reached within their window are searched for across the whole device.
+     * @param searchWindowMargin the margin in tiles, or -1 to not restrict searches
+     */
+    public void setSearchWindowMargin(int searchWindowMargin) {
+        this.searchWindowMargin = searchWindowMargin;
+        if (searchWindowMargin < 0)
+            applySearchWindowMargin(-1);
+    }
+
+    /**
+     * Sets how much the margin of the search windows grows each iteration.
+     * @param searchWindowGrowth the growth in tiles per iteration
+     */
+    public void setSearchWindowGrowth(int searchWindowGrowth) {
+        this.searchWindowGrowth = searchWindowGrowth;
+    }
+
+    /**
+     * Gets the margin of the search windows of an iteration.
+     */
+    private int getSearchWindowMargin(int iteration) {
+        return searchWindowMargin + (iteration - 1) * searchWindowGrowth;
+    }
+
+    /**
+     * Sets the search window margin of the maze router. The margin of the worker routers is set for each iteration
+     * they route (see {@link #routeParallel}).
+     */
+    private void applySearchWindowMargin(int margin) {
+        mazeRouter.setSearchWindowMargin(margin);
+    }
+
+    /**
+     * Set the number of threads used to route nets within each PathFinder iteration. When more than one thread is
+     * used, nets with non-overlapping search windows are routed concurrently, each thread using its own copy of the
+     * maze router. The results may differ from routing with one thread (see {@link #routeParallel}).
+     * @param numThreads the number of threads
+     */
+    public void setNumThreads(int numThreads) {
+        this.numThreads = Math.max(1, numThreads);
+        shutDownWorkers();
+    }
+
+    /**
+     * Shuts down the routing threads and discards the worker routers, if they were created.
+     */
+    private void shutDownWorkers() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        workerRouters = null;
+    }
+
     /**
      * Sets the size (in tiles) to search for static sources from sinks on the first iteration.
      * @param initStaticSearchSize size in tile distance
      */
     public void setInitStaticSearchSize(int initStaticSearchSize) {
-        initStaticSearchSize = initStaticSearchSize;
+        this.initStaticSearchSize = initStaticSearchSize;
     }
 
     /**
@@ -210,7 +568,286 @@ public class PathFinder {
      * @param staticSearchSizeFactor the factor
      */
     public void setStaticSearchSizeFactor(int staticSearchSizeFactor) {
-        staticSearchSizeFactor = staticSearchSizeFactor;
+        this.staticSearchSizeFactor = staticSearchSizeFactor;
+    }
+
+    /**
+     * Sets whether unused LUTs near the unrouted sinks of static (VCC/GND) nets are added as sources of the nets,
+     * in addition to the tie-off wires. The search distance starts at the initial static search size and grows every
+     * iteration by the static search size factor.
+     * @param useStaticSourceLuts whether to use LUTs as static sources
+     */
+    public void setUseStaticSourceLuts(boolean useStaticSourceLuts) {
+        this.useStaticSourceLuts = useStaticSourceLuts;
+    }
+
+    /**
+     * Sets where and how often to save checkpoints of the negotiation state. A checkpoint is saved after every
+     * interval iterations (unless routing finished), replacing the previous checkpoint. Routing can be resumed from
+     * a checkpoint with {@link #resume(ArrayList, RouteCheckpoint)}.
+     * @param checkpointFile the file to save checkpoints to, or null to not save checkpoints
+     * @param checkpointInterval the number of iterations between checkpoints
+     */
+    public void setCheckpoint(Path checkpointFile, int checkpointInterval) {
+        this.checkpointFile = checkpointFile;
+        this.checkpointInterval = Math.max(1, checkpointInterval);
+    }
+
+    /**
+     * Routes the inter-site routes of one PathFinder iteration, one at a time, with the maze router.
+     * @param toRoute the inter-site routes to route
+     * @param iteration the current PathFinder iteration
+     * @return the first inter-site route that could not be found, or null if every route was found
+     */
+    private IntersiteRoute routeSequential(List<IntersiteRoute> toRoute, int iteration) {
+        int numRouted = 1;
+
+        for (IntersiteRoute intersiteRoute : toRoute) {
+            if (iteration > 1) {
+                ripUpRoute(intersiteRoute);
+            }
+
+            System.out.println("[INFO] Finding route for " + intersiteRoute.getNet().getName() + " (" + numRouted + "/" + toRoute.size() + ")");
+            int numSinks = intersiteRoute.getSinksToRoute().size();
+            long startTime = System.nanoTime();
+            if (mazeRouter.routeNet(intersiteRoute)) {
+                if (telemetry != null)
+                    telemetry.recordNet(intersiteRoute, numSinks, System.nanoTime() - startTime);
+
+                // Update the occupancy and present congestion of every node in the new route
+
+                if (iteration > 1)
+                    updateReroutedWireUsage(intersiteRoute);
+            } else {
+                // Route could not be found
+                return intersiteRoute;
+            }
+
+            numRouted++;
+        }
+        return null;
+    }
+
+    /**
+     * Routes the inter-site routes of one PathFinder iteration with multiple threads. The routes are partitioned
+     * into batches of routes with non-overlapping search windows and the routes of each batch are routed
+     * concurrently. The worker routers never search outside of a route's window, so the routes of a batch only share
+     * the nodes of wires that cross between their windows. Every route of a batch sees the wire usage from before the batch began. The usage of the new
+     * routes is merged into the wire usage store in the order of the batch once all of its routes are found, so the
+     * results do not depend on thread timing.
+     *
+     * The windows are the search windows of the current iteration, or the bounding boxes expanded by
+     * {@link #DEFAULT_BATCH_WINDOW_MARGIN} when search windows are not used. Sinks that can't be reached within their
+     * window are routed after the rest of the batch is applied, one route at a time with the maze router, which may
+     * search the whole device. Routes without a window (static and clock routes) are in batches of their own. Since
+     * the routes of a batch don't see each other's usage and the windows are not the same as those of the maze
+     * router, the results can differ from {@link #routeSequential}.
+     * @param toRoute the inter-site routes to route
+     * @param iteration the current PathFinder iteration
+     * @return the first inter-site route that could not be found, or null if every route was found
+     * @throws CadException if the thread is interrupted while waiting for the routes
+     */
+    private IntersiteRoute routeParallel(List<IntersiteRoute> toRoute, int iteration) throws CadException {
+        if (workerRouters == null) {
+            workerRouters = new ArrayBlockingQueue<>(numThreads);
+            for (int i = 0; i < numThreads; i++) {
+                MazeRouter router = mazeRouter.newInstance();
+                router.setWindowFallback(false);
+                workerRouters.add(router);
+            }
+            executor = Executors.newFixedThreadPool(numThreads);
+        }
+
+        int windowMargin = (searchWindowMargin >= 0) ? getSearchWindowMargin(iteration) : DEFAULT_BATCH_WINDOW_MARGIN;
+        for (MazeRouter router : workerRouters) {
+            router.setSearchWindowMargin(windowMargin);
+        }
+
+        List<List<IntersiteRoute>> batches = partitionIntoBatches(toRoute, windowMargin);
+        long startTime = System.nanoTime();
+        // Total time spent routing individual nets, on the worker threads and after the batches
+        long routeTime = 0;
+        long deferredTime = 0;
+        int numDeferredSinks = 0;
+        int numRouted = 1;
+
+        try {
+            for (List<IntersiteRoute> batch : batches) {
+                if (iteration > 1) {
+                    for (IntersiteRoute intersiteRoute : batch) {
+                        ripUpRoute(intersiteRoute);
+                    }
+                }
+
+                // The sinks each route of the batch left unrouted
+                Map<IntersiteRoute, List<PathFinderRouteTree>> deferredSinks = new ConcurrentHashMap<>();
+                List<Future<Long>> results = new ArrayList<>(batch.size());
+                for (IntersiteRoute intersiteRoute : batch) {
+                    System.out.println("[INFO] Finding route for " + intersiteRoute.getNet().getName() + " (" + numRouted + "/" + toRoute.size() + ")");
+                    results.add(executor.submit(() -> routeWithWorker(intersiteRoute, deferredSinks)));
+                    numRouted++;
+                }
+
+                for (int i = 0; i < batch.size(); i++) {
+                    long time = results.get(i).get();
+                    if (time < 0) {
+                        // Route could not be found
+                        return batch.get(i);
+                    }
+                    routeTime += time;
+                }
+
+                // Update the occupancy and present congestion of every node in the new routes. The usage of routes
+                // with unrouted sinks is updated once they are complete.
+                if (iteration > 1) {
+                    for (IntersiteRoute intersiteRoute : batch) {
+                        if (!deferredSinks.containsKey(intersiteRoute))
+                            updateReroutedWireUsage(intersiteRoute);
+                    }
+                }
+
+                // Route the sinks that could not be reached within their windows one route at a time
+                for (IntersiteRoute intersiteRoute : batch) {
+                    List<PathFinderRouteTree> sinks = deferredSinks.get(intersiteRoute);
+                    if (sinks == null)
+                        continue;
+                    long time = routeDeferredSinks(intersiteRoute, sinks);
+                    if (time < 0)
+                        return intersiteRoute;
+                    deferredTime += time;
+                    numDeferredSinks += sinks.size();
+                    if (iteration > 1)
+                        updateReroutedWireUsage(intersiteRoute);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CadException("Interrupted while routing nets in parallel");
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error routing nets in parallel", e.getCause());
+        }
+
+        // The speedup is estimated against routing the same nets one after the other, which takes the sum of the
+        // times spent routing each net. Routes that compete for memory take longer, so it is an upper bound.
+        long wallTime = System.nanoTime() - startTime;
+        double speedup = (wallTime > 0) ? (double) (routeTime + deferredTime) / wallTime : 1;
+        double utilization = (wallTime > 0) ? (double) routeTime / ((wallTime - deferredTime) * numThreads) : 1;
+        System.out.printf("[INFO] Iteration %d: routed %d nets in %d batches on %d threads in %.3f seconds "
+                        + "(estimated %.2fx speedup over %.3f seconds on one thread, %.0f%% thread utilization)%n",
+                iteration, toRoute.size(), batches.size(), numThreads, wallTime / 1e9, speedup,
+                (routeTime + deferredTime) / 1e9, utilization * 100);
+        if (numDeferredSinks > 0)
+            System.out.printf("[INFO] Iteration %d: routed %d sinks outside of their search window in %.3f seconds on one thread%n",
+                    iteration, numDeferredSinks, deferredTime / 1e9);
+        return null;
+    }
+
+    /**
+     * Routes an inter-site route with one of the worker maze routers.
+     * @param intersiteRoute the inter-site route to route
+     * @param deferredSinks filled with the sinks of the route that could not be reached within its search window
+     * @return the time in nanoseconds it took to route, or -1 if the route could not be found
+     */
+    private long routeWithWorker(IntersiteRoute intersiteRoute, Map<IntersiteRoute, List<PathFinderRouteTree>> deferredSinks)
+            throws InterruptedException {
+        MazeRouter router = workerRouters.take();
+        try {
+            int numSinks = intersiteRoute.getSinksToRoute().size();
+            long startTime = System.nanoTime();
+            boolean routed = router.routeNet(intersiteRoute);
+            long time = System.nanoTime() - startTime;
+            if (routed && telemetry != null)
+                telemetry.recordNet(intersiteRoute, numSinks, time);
+            if (routed && !router.getDeferredSinks().isEmpty())
+                deferredSinks.put(intersiteRoute, new ArrayList<>(router.getDeferredSinks()));
+            return routed ? time : -1;
+        } finally {
+            workerRouters.put(router);
+        }
+    }
+
+    /**
+     * Routes the sinks of an inter-site route that a worker router could not reach within the route's search window.
+     * The other sinks were routed by the worker. The sinks to route of the route are restored afterwards, so the
+     * usage of all of the route's new wires can be updated.
+     * @param intersiteRoute the inter-site route
+     * @param deferredSinks the sinks that have not been routed
+     * @return the time in nanoseconds it took to route, or -1 if the sinks could not be routed
+     */
+    private long routeDeferredSinks(IntersiteRoute intersiteRoute, List<PathFinderRouteTree> deferredSinks) {
+        Collection<PathFinderRouteTree> sinksToRoute = intersiteRoute.getSinksToRoute();
+        Set<PathFinderRouteTree> deferred = new HashSet<>(deferredSinks);
+        for (PathFinderRouteTree sink : sinksToRoute) {
+            if (!deferred.contains(sink))
+                intersiteRoute.getRoutedSinks().add(sink);
+        }
+
+        intersiteRoute.setSinksToRoute(new ArrayList<>(deferredSinks));
+        long startTime = System.nanoTime();
+        boolean routed = mazeRouter.routeNet(intersiteRoute);
+        long time = System.nanoTime() - startTime;
+        intersiteRoute.setSinksToRoute(sinksToRoute);
+        return routed ? time : -1;
+    }
+
+    /**
+     * Partitions inter-site routes into batches that can be routed concurrently. Routes are placed into the first
+     * batch whose routes' search windows do not overlap their own (at the granularity of square regions of the
+     * device). Routes without a search window (static and clock routes) are always placed in a batch of their own.
+     * @param routes the routes to partition
+     * @param windowMargin the margin of the search windows
+     * @return the batches of routes
+     */
+    private List<List<IntersiteRoute>> partitionIntoBatches(List<IntersiteRoute> routes, int windowMargin) {
+        Device device = design.getDevice();
+        int regionColumns = (device.getColumns() + BATCH_REGION_SIZE - 1) / BATCH_REGION_SIZE;
+        List<List<IntersiteRoute>> batches = new ArrayList<>();
+        // The regions occupied by each batch, or null for batches that must not be shared
+        List<BitSet> batchRegions = new ArrayList<>();
+
+        for (IntersiteRoute intersiteRoute : routes) {
+            BoundingBox box = MazeRouter.getSearchWindow(intersiteRoute, windowMargin);
+            if (box == null) {
+                batches.add(Collections.singletonList(intersiteRoute));
+                batchRegions.add(null);
+                continue;
+            }
+
+            // Windows may extend past the edges of the device
+            int minRegionRow = Math.max(0, box.getMinRow()) / BATCH_REGION_SIZE;
+            int maxRegionRow = Math.min(device.getRows() - 1, box.getMaxRow()) / BATCH_REGION_SIZE;
+            int minRegionCol = Math.max(0, box.getMinColumn()) / BATCH_REGION_SIZE;
+            int maxRegionCol = Math.min(device.getColumns() - 1, box.getMaxColumn()) / BATCH_REGION_SIZE;
+
+            int batchIndex = -1;
+            for (int i = 0; i < batches.size() && batchIndex == -1; i++) {
+                BitSet regions = batchRegions.get(i);
+                if (regions == null || batches.get(i).size() >= MAX_BATCH_SIZE)
+                    continue;
+
+                boolean overlaps = false;
+                for (int row = minRegionRow; row <= maxRegionRow && !overlaps; row++) {
+                    int rowStart = row * regionColumns;
+                    int next = regions.nextSetBit(rowStart + minRegionCol);
+                    overlaps = next != -1 && next <= rowStart + maxRegionCol;
+                }
+                if (!overlaps)
+                    batchIndex = i;
+            }
+
+            if (batchIndex == -1) {
+                batches.add(new ArrayList<>());
+                batchRegions.add(new BitSet());
+                batchIndex = batches.size() - 1;
+            }
+
+            BitSet regions = batchRegions.get(batchIndex);
+            for (int row = minRegionRow; row <= maxRegionRow; row++) {
+                regions.set(row * regionColumns + minRegionCol, row * regionColumns + maxRegionCol + 1);
+            }
+            batches.get(batchIndex).add(intersiteRoute);
+        }
+        return batches;
     }
 
     /**
@@ -219,14 +856,18 @@ public class PathFinder {
      */
     private void ripUpRoute(IntersiteRoute intersiteRoute) {
         assert (intersiteRoute.getRouteTree() != null);
-        // Update the congestion for every node (and its wires)
-        for (RouteTree rt : intersiteRoute.getRouteTree().getRoot()) {
-            // Update for every wire in the node
-            for (Wire wire : rt.getWire().getWiresInNode()) {
-                assert (wireUsageMap.containsKey(wire));
-                WireUsage wireUsage = wireUsageMap.get(wire);
-                wireUsage.removeRoute(intersiteRoute);
-                wireUsage.updatePresentCongestion(presentCongestionFactor);
+        if (incrementalReroute) {
+            // Only the wires of the detached branches are freed
+            pruneDetachedBranches(intersiteRoute);
+        } else {
+            // Update the congestion for every node (and its wires)
+            for (RouteTree rt : intersiteRoute.getRouteTree().getRoot()) {
+                // Update for every wire in the node
+                for (Wire wire : rt.getWire().getWiresInNode()) {
+                    int node = wireUsage.getNode(wire);
+                    assert (node != -1);
+                    wireUsage.removeRoute(node, intersiteRoute);
+                }
             }
         }
 
@@ -239,11 +880,13 @@ public class PathFinder {
             }
         }
 
-        Set<PathFinderRouteTree> terminalsToKeep = new HashSet<>();
-        for (PathFinderRouteTree rt : intersiteRoute.getRoutedSinks()) {
-            terminalsToKeep.add(intersiteRoute.getSinkTerminalTreeMap().get(rt));
+        if (!incrementalReroute) {
+            Set<PathFinderRouteTree> terminalsToKeep = new HashSet<>();
+            for (PathFinderRouteTree rt : intersiteRoute.getRoutedSinks()) {
+                terminalsToKeep.add(intersiteRoute.getSinkTerminalTreeMap().get(rt));
+            }
+            intersiteRoute.getRouteTree().prune(terminalsToKeep);
         }
-        intersiteRoute.getRouteTree().prune(terminalsToKeep);
         intersiteRoute.getRouteTree().unregisterLeaves();
 
         assert (!intersiteRoute.getSinksToRoute().isEmpty());
@@ -263,35 +906,13 @@ public class PathFinder {
         while (!stack.isEmpty()) {
             PathFinderRouteTree tree = stack.pop();
             Wire wire = tree.getWire();
-            WireUsage wireUsage = wireUsageMap.get(wire);
-
+            int node = wireUsage.getNode(wire);
 
             // If there is congestion
-            if (wireUsage.isCongested()) {
-                // Remove the sinks of the conflicted wire from the inter-site route's list of routed sinks
-                // and add them to the list of sinks to route
-                for (PathFinderRouteTree terminal : tree.getLeaves()) {
-                    PathFinderRouteTree sink = intersiteRoute.getTerminalSinkTreeMap().get(terminal);
-                    intersiteRoute.getRoutedSinks().remove(sink);
-
-                    // ADDED recently!
-                    // Remove the route from the sink and its children's wire usage
-                    Iterable<PathFinderRouteTree> typed = sink.typedIterator();
-                    for (PathFinderRouteTree sinkNode : typed) {
-                        WireUsage sinkWireUsage = wireUsageMap.get(sinkNode.getWire());
-                        assert (sinkWireUsage != null);
-                        assert (sinkWireUsage.getRoutes() != null);
-                        assert (wireUsageMap.get(sinkNode.getWire()) != null);
-                        sinkWireUsage.removeRoute(intersiteRoute);
-                    }
-
-                    // Detach the tree from its parent
-                    assert (sink.getParent() != null);
-                    sink.getParent().disconnect(sink);
-                    intersiteRoute.getSinksToRoute().add(sink);
-                    // No need to keep iterating through this branch's children as they will all have the
-                    // same leaves
-                }
+            if (wireUsage.isCongested(node)) {
+                ripUpBranch(intersiteRoute, tree);
+                // No need to keep iterating through this branch's children as they will all have the
+                // same leaves
             } else {
                 // Continue searching down this branch's children for conflicts
                 for (RouteTree child : tree.getChildren()) {
@@ -303,6 +924,108 @@ public class PathFinder {
         assert(!(intersiteRoute.getSinksToRoute().isEmpty()));
     }
 
+    /**
+     * Finds the congested branches of an inter-site route. Trees below a congested tree are not searched, since
+     * ripping up the congested tree rips up all of their sinks.
+     * @param intersiteRoute the inter-site route to search
+     * @return the congested trees of the route
+     */
+    private List<PathFinderRouteTree> findCongestedBranches(IntersiteRoute intersiteRoute) {
+        List<PathFinderRouteTree> branches = new ArrayList<>();
+        Deque<PathFinderRouteTree> stack = new ArrayDeque<>();
+        stack.push(intersiteRoute.getRouteTree().getRoot());
+        while (!stack.isEmpty()) {
+            PathFinderRouteTree tree = stack.pop();
+            int node = wireUsage.getNode(tree.getWire());
+            if (node != -1 && wireUsage.isCongested(node)) {
+                branches.add(tree);
+            } else {
+                for (RouteTree child : tree.getChildren()) {
+                    stack.push((PathFinderRouteTree) child);
+                }
+            }
+        }
+        return branches;
+    }
+
+    /**
+     * Removes the sinks below a congested tree from the inter-site route's list of routed sinks and adds them to the
+     * list of sinks to route. The sink trees are detached from their parents.
+     * @param intersiteRoute the inter-site route
+     * @param tree the congested tree
+     */
+    private void ripUpBranch(IntersiteRoute intersiteRoute, PathFinderRouteTree tree) {
+        for (PathFinderRouteTree terminal : tree.getLeaves()) {
+            PathFinderRouteTree sink = intersiteRoute.getTerminalSinkTreeMap().get(terminal);
+            if (!intersiteRoute.getRoutedSinks().remove(sink)) {
+                // Already ripped up along with a congested ancestor of this tree
+                continue;
+            }
+
+            // Remove the route from the sink and its children's wire usage
+            Iterable<PathFinderRouteTree> typed = sink.typedIterator();
+            for (PathFinderRouteTree sinkNode : typed) {
+                if (incrementalReroute) {
+                    removeWireUsage(intersiteRoute, sinkNode);
+                } else {
+                    int sinkNodeIndex = wireUsage.getNode(sinkNode.getWire());
+                    assert (sinkNodeIndex != -1);
+                    wireUsage.removeRoute(sinkNodeIndex, intersiteRoute);
+                }
+            }
+
+            // Detach the tree from its parent
+            PathFinderRouteTree parent = sink.getParent();
+            assert (parent != null);
+            parent.disconnect(sink);
+            intersiteRoute.getSinksToRoute().add(sink);
+
+            if (incrementalReroute)
+                detachedBranchParents.computeIfAbsent(intersiteRoute, k -> new ArrayList<>()).add(parent);
+        }
+    }
+
+    /**
+     * Prunes the branches of an inter-site route that were left dangling when its congested sinks were detached,
+     * freeing the wires they used. Only the trees between a detached sink and the closest ancestor that still leads
+     * to another sink are visited.
+     * @param intersiteRoute the inter-site route
+     */
+    private void pruneDetachedBranches(IntersiteRoute intersiteRoute) {
+        List<PathFinderRouteTree> parents = detachedBranchParents.remove(intersiteRoute);
+        if (parents == null)
+            return;
+
+        PathFinderRouteTree startTree = intersiteRoute.getRouteTree();
+        for (PathFinderRouteTree tree : parents) {
+            while (tree != startTree && tree.isSourced() && tree.getChildren().isEmpty()
+                    && !intersiteRoute.getTerminalSinkTreeMap().containsKey(tree)) {
+                PathFinderRouteTree parent = tree.getParent();
+                removeWireUsage(intersiteRoute, tree);
+                parent.disconnect(tree);
+                tree = parent;
+            }
+        }
+    }
+
+    /**
+     * Removes an inter-site route from the usage of the wires of a tree's node. Trees reached through a non-PIP
+     * connection share their node with their parent, so they are skipped.
+     * @param intersiteRoute the inter-site route
+     * @param tree the tree to free
+     */
+    private void removeWireUsage(IntersiteRoute intersiteRoute, PathFinderRouteTree tree) {
+        if (tree.getConnection() != null && !tree.getConnection().isPip())
+            return;
+
+        for (Wire wire : tree.getWire().getWiresInNode()) {
+            int node = wireUsage.getNode(wire);
+            if (node != -1) {
+                wireUsage.removeRoute(node, intersiteRoute);
+            }
+        }
+    }
+
     /**
      * Apply the found routes to the RapidSmith2 data structures. This includes setting the inter-site route tree(s)
      * of CellNets and adding static source LUT Bels to the placement data structures. Note that individual cell pins
@@ -337,13 +1060,13 @@ public class PathFinder {
     }
 
     /**
-     * Adds possible static source LUTs that are within staticSearch size tiles of the inter-site route's
+     * Adds possible static source LUTs that are within staticSearchSize tiles of the inter-site route's
      * unrouted sinks. Each start tree starts at the output pin wire of a site whose corresponding LUT can be used as
      * a static source. Static source LUTs are unused LUTs that can reach an output pin of a site. This method only
      * considers leaving on the A/B/C/D pins, using the corresponding USED site PIP. Additionally, this method only
      * considers using the O6 output pin of LUT BELs.
-     * TODO: Make the search more efficient by only searching through tiles that haven't been searched during
-     * previous iterations.
+     * The candidate LUTs are found with a {@link StaticSourceIndex}. The radius already searched around each sink is
+     * remembered, so later iterations only search the area the larger static search size adds.
      * @param intersiteRoute the static (VCC/GND) inter-site route
      * @param staticSearchSize the distance in tiles to search for sources
      */
@@ -351,52 +1074,25 @@ public class PathFinder {
         Time runTime = new Time();
         runTime.setStartTime();
 
-        Device device = design.getDevice();
-        FamilyInfo familyInfo = FamilyInfos.get(device.getFamily());
-        List<Wire> staticSourceWires = new ArrayList<>();
+        if (staticSourceIndex == null)
+            staticSourceIndex = new StaticSourceIndex(design);
+
+        int radius = staticSourceIndex.getRadius(staticSearchSize);
+        Set<Wire> addedWires = staticSourceWires.computeIfAbsent(intersiteRoute, k -> new HashSet<>());
+        List<Wire> newSourceWires = new ArrayList<>();
 
         for (PathFinderRouteTree sinkTree : intersiteRoute.getSinksToRoute()) {
-            // Search for possible sources staticSearchSize tiles to the left, right, etc.
-            Tile sinkTile = sinkTree.getWire().getTile();
+            // Search for possible sources in the buckets around the sink that have not been searched yet
+            int searchedRadius = staticSearchRadii.getOrDefault(sinkTree, -1);
+            if (searchedRadius >= radius)
+                continue;
 
-            // Get the SLICEL/SLICEM sites in our search space
-            int minRow = Math.max(sinkTile.getRow() - staticSearchSize, 0);
-            int minCol = Math.max(sinkTile.getColumn() - staticSearchSize, 0);
-            int maxRow = Math.min(device.getRows() - 1, sinkTile.getRow() + staticSearchSize);
-            int maxCol = Math.min(device.getColumns() - 1, sinkTile.getColumn() + staticSearchSize);
-
-            Collection<Tile> clbTiles = device.getTiles(minRow, minCol, maxRow, maxCol).stream()
-                    .filter(tile -> familyInfo.clbTiles().contains(tile.getType()))
-                    .collect(Collectors.toList());
-
-            for (Tile tile : clbTiles) {
-                for (Site site : tile.getSites()) {
-                    Set<Bel> freeLutBels = site.getBels().stream()
-                            .filter(bel -> bel.getType().equals("LUT6") || bel.getType().equals("LUT_OR_MEM6"))
-                            .filter(bel -> !design.isBelUsed(bel))
-                            .collect(Collectors.toSet());
-
-                    for (Bel lutBel : freeLutBels) {
-                        // Check if the corresponding site pips are used
-                        String lutLetter = lutBel.getName().substring(0, 1);
-
-                        if (design.getPIPInputValsAtSite(site) != null) {
-                            boolean outputUsed = design.getPIPInputValsAtSite(site).containsKey(lutLetter + "USED");
-                            boolean outMuxUsed = design.getPIPInputValsAtSite(site).containsKey(lutLetter + "OUTMUX");
-                            boolean ffMuxUsed = design.getPIPInputValsAtSite(site).containsKey(lutLetter + "FFMUX");
-
-                            if (outMuxUsed || outputUsed || ffMuxUsed)
-                                continue;
-                        }
-
-                        Wire outWire = site.getPin(lutLetter).getExternalWire();
-
-                        // There is always more than one PIP from the site-pin output wire, so we already don't need to find
-                        // the first wire that branches.
-                        staticSourceWires.add(outWire);
-                    }
-                }
+            Tile sinkTile = sinkTree.getWire().getTile();
+            for (Wire wire : staticSourceIndex.findSources(sinkTile, searchedRadius, radius)) {
+                if (addedWires.add(wire))
+                    newSourceWires.add(wire);
             }
+            staticSearchRadii.put(sinkTree, radius);
         }
 
         // Get the global wire
@@ -404,13 +1100,13 @@ public class PathFinder {
         assert (globalWire instanceof GlobalWire);
 
         // Add the new connections
-        for (Wire wire : staticSourceWires) {
+        for (Wire wire : newSourceWires) {
             ((GlobalWire) globalWire).addConnection(new GlobalWireConnection(globalWire, wire));
         }
 
         runTime.setEndTime();
-        System.err.println("Took " + runTime.getTotalTime() + " seconds to get more static sources");
-
+        System.out.println("[INFO] Added " + newSourceWires.size() + " static sources to " + intersiteRoute.getNet().getName()
+                + " in " + runTime.getTotalTime() + " seconds");
     }
 
 
@@ -443,6 +1139,10 @@ public class PathFinder {
                 design.placeCell(staticSourceCell, staticSourceBel);
                 design.addPipInputValAtSite(staticSourceBel.getSite(), staticSourceBel.getName().charAt(0) + "USED", "0");
 
+                // The LUT can't be a source of any other static net
+                if (staticSourceIndex != null)
+                    staticSourceIndex.remove(staticSourceBel);
+
                 // Add the BEL to the list of VCC/GND BELs
                 if (net.isVCCNet()) {
                     vccSourceBels.add(staticSourceBel);
@@ -457,24 +1157,38 @@ public class PathFinder {
     }
 
     /**
-     * Creates wire usage for a wire if the wire is not already present in the wire usage map (if it has not been
-     * seen before).
-     * @param wire the wire to create or get the wire usage for.
-     * @return the wire usage for the wire
+     * Updates the wire usage of an inter-site route that was just re-routed. When re-routing incrementally, only the
+     * new branches to the re-routed sinks are added; otherwise the usage of the whole route is updated.
+     * @param intersiteRoute the re-routed inter-site route
      */
-    private WireUsage computeWireUsage(Wire wire) {
-        WireUsage wireUsage = wireUsageMap.get(wire);
-
-        if (wireUsage == null) {
-            wireUsage = new WireUsage();
-            wireUsageMap.put(wire, wireUsage);
+    private void updateReroutedWireUsage(IntersiteRoute intersiteRoute) {
+        if (!incrementalReroute) {
+            updateWireUsage(intersiteRoute);
+            return;
         }
 
-        return wireUsage;
+        for (PathFinderRouteTree sink : intersiteRoute.getSinksToRoute()) {
+            // Walk from the terminal towards the source until reaching a wire the route already uses
+            PathFinderRouteTree rt = intersiteRoute.getTerminalTree(sink);
+            while (rt != null) {
+                int existing = wireUsage.getNode(rt.getWire());
+                if (existing != -1 && wireUsage.isUsedBy(existing, intersiteRoute))
+                    break;
+
+                // Wires reached through non-PIP connections are in the node of their parent
+                if (rt.getConnection() == null || rt.getConnection().isPip()) {
+                    for (Wire wire : rt.getWire().getWiresInNode()) {
+                        int node = wireUsage.computeNode(wire);
+                        wireUsage.addRoute(node, intersiteRoute);
+                    }
+                }
+                rt = rt.getParent();
+            }
+        }
     }
 
     /**
-     * Updates the usage of all the wires of an inter-site route. This adds any used wires to the wireUsageMap and
+     * Updates the usage of all the wires of an inter-site route. This adds any used wires to the wire usage store and
      * updates their congestion.
      * @param intersiteRoute the intersite route
      */
@@ -491,9 +1205,8 @@ public class PathFinder {
 
             // Every wire in the node is now occupied by this route
             for (Wire wire : rt.getWire().getWiresInNode()) {
-                WireUsage wireUsage = computeWireUsage(wire);
-                wireUsage.addRoute(intersiteRoute);
-                wireUsage.updatePresentCongestion(presentCongestionFactor);
+                int node = wireUsage.computeNode(wire);
+                wireUsage.addRoute(node, intersiteRoute);
             }
 
         }
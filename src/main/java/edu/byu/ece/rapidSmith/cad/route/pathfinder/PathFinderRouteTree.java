@@ -3,20 +3,26 @@ package edu.byu.ece.rapidSmith.cad.route.pathfinder;
 import edu.byu.ece.rapidSmith.design.subsite.RouteTree;
 import edu.byu.ece.rapidSmith.device.Wire;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Deque;
+import java.util.List;
 
 /**
  * The route tree to use for Path Finder. Includes cost variables and the ability to manually register leaves.
+ *
+ * A route tree is made for every wire of every route, so the trees are kept small. Registered leaves are only
+ * marked on the leaf itself, and the leaves of a tree are found by searching its subtree when they are requested,
+ * instead of every tree keeping a set of all the leaves below it (which takes space for each leaf at every level
+ * of the tree).
  */
 public class PathFinderRouteTree extends RouteTree {
 	/** The cost of using a single wire segment. */
 	private double wireSegmentCost = 1;
 	private double pathFinderCost = 1;
-	/** The manually registered leaves of the tree. */
-	private Collection<PathFinderRouteTree> leaves;
-	private double previousWireSegmentCost = 0;
-	private double previousPathFinderCost = 0;
+	/** Whether the tree has been registered as a leaf */
+	private boolean registeredLeaf;
 
 	public PathFinderRouteTree(Wire wire) {
 		super(wire);
@@ -30,18 +36,6 @@ public class PathFinderRouteTree extends RouteTree {
 		this.pathFinderCost = pathFinderCost;
 	}
 
-	public void freePathFinderCost() {
-		previousPathFinderCost = pathFinderCost;
-		pathFinderCost = 0;
-	}
-
-	public void unfreePathFinderCost() {
-		if (pathFinderCost == 0) {
-			pathFinderCost = previousPathFinderCost;
-			previousPathFinderCost = 0;
-		}
-	}
-
 	@Override
 	protected PathFinderRouteTree newInstance(Wire wire) {
 		return new PathFinderRouteTree(wire);
@@ -55,33 +49,12 @@ public class PathFinderRouteTree extends RouteTree {
 		this.wireSegmentCost = wireSegmentCost;
 	}
 
-	public void freeWireSegmentCost() {
-		previousWireSegmentCost = wireSegmentCost;
-		wireSegmentCost = 0;
-	}
-
-	public void unfreeWireSegmentCost() {
-		if (wireSegmentCost == 0) {
-			wireSegmentCost = previousWireSegmentCost;
-			previousWireSegmentCost = 0;
-		}
-
-	}
-
 	/**
-	 * Register a PathFinderRouteTree as a leaf of this PathFinderRouteTree. The leaf tree is also registered as a
-	 * leaf for all of this tree's ancestors.
-	 *
-	 * @param leaf the leaf tree
+	 * Register this tree as a leaf. The leaf is a leaf of every tree it is connected below, and is returned by their
+	 * {@link #getLeaves()}.
 	 */
-	public void registerLeaf(PathFinderRouteTree leaf) {
-		if (leaves == null)
-			leaves = new HashSet<>();
-		leaves.add(leaf);
-
-		if (this.isSourced()) {
-			((PathFinderRouteTree) getParent()).registerLeaf(leaf);
-		}
+	public void markLeaf() {
+		registeredLeaf = true;
 	}
 
 	/**
@@ -91,12 +64,27 @@ public class PathFinderRouteTree extends RouteTree {
 		Iterable<PathFinderRouteTree> typed = this.typedIterator();
 
 		for (PathFinderRouteTree tree : typed) {
-			tree.leaves.clear();
+			tree.registeredLeaf = false;
 		}
 	}
 
+	/**
+	 * Gets the registered leaves of this tree and all of its children.
+	 * @return the registered leaves
+	 */
 	@Override
 	public Collection<PathFinderRouteTree> getLeaves() {
+		List<PathFinderRouteTree> leaves = new ArrayList<>();
+		Deque<RouteTree> stack = new ArrayDeque<>();
+		stack.push(this);
+		while (!stack.isEmpty()) {
+			PathFinderRouteTree tree = (PathFinderRouteTree) stack.pop();
+			if (tree.registeredLeaf)
+				leaves.add(tree);
+			for (RouteTree child : tree.getChildren()) {
+				stack.push(child);
+			}
+		}
 		return leaves;
 	}
 
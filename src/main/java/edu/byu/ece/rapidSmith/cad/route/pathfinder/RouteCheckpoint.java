@@ -0,0 +1,431 @@
+package edu.byu.ece.rapidSmith.cad.route.pathfinder;
+
+import com.caucho.hessian.io.Hessian2Input;
+import com.caucho.hessian.io.Hessian2Output;
+import edu.byu.ece.rapidSmith.cad.pack.rsvpack.CadException;
+import edu.byu.ece.rapidSmith.cad.route.GlobalWire;
+import edu.byu.ece.rapidSmith.cad.route.GlobalWireConnection;
+import edu.byu.ece.rapidSmith.cad.route.IntersiteRoute;
+import edu.byu.ece.rapidSmith.cad.route.LutPinSwapper;
+import edu.byu.ece.rapidSmith.design.subsite.*;
+import edu.byu.ece.rapidSmith.device.*;
+import edu.byu.ece.rapidSmith.util.FileTools;
+import edu.byu.ece.rapidSmith.util.Version;
+import edu.byu.ece.rapidSmith.util.VersionException;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * A checkpoint of the negotiation state of {@link PathFinder}, which lets a long routing run be resumed (possibly with
+ * different router parameters) without repeating its early iterations. A checkpoint holds:
+ * <ul>
+ *     <li>The iteration to resume at, the present congestion factor and the static search size.</li>
+ *     <li>The routed part of every inter-site route tree, stored as the keys of its wires in depth-first order along
+ *     with the index of each wire's parent. Only the branches that lead to routed sinks are stored.</li>
+ *     <li>The historical congestion of every wire whose history has grown.</li>
+ *     <li>The LUT input pins that were swapped by the {@link LutPinSwapper}, and the BEL pins they were moved to.</li>
+ * </ul>
+ * Wires are identified by the keys of a {@link WireNodeIndex}, which are stable between runs. The occupancy of the
+ * wires is not stored, since it is rebuilt from the restored route trees.
+ */
+public class RouteCheckpoint implements Serializable {
+	private static final long serialVersionUID = 2739586125190473810L;
+	private static final Version LATEST_VERSION = new Version(1, 2);
+	/** Key of wires that do not exist in a tile (the VCC/GND global wires at the root of static routes) */
+	private static final long TILELESS_WIRE = -1;
+
+	private final Version version;
+	private final String partName;
+	/** The iteration to resume at */
+	private final int iteration;
+	private final double presentCongestionFactor;
+	private final int staticSearchSize;
+	/** The keys of the wires with historical congestion, and their history */
+	private final long[] historyKeys;
+	private final double[] historyValues;
+	private final List<RouteState> routes;
+	private final List<PinSwap> pinSwaps;
+
+	/**
+	 * The saved state of one inter-site route.
+	 */
+	private static class RouteState implements Serializable {
+		private static final long serialVersionUID = -3406412739867390564L;
+		private final String netName;
+		/** The keys of the wires of the route tree in depth-first order, starting with the route's start tree */
+		private final long[] wireKeys;
+		/** The index (in wireKeys) of the parent of each wire, or -1 for the start tree */
+		private final int[] parents;
+		private final int numFailures;
+
+		private RouteState(String netName, long[] wireKeys, int[] parents, int numFailures) {
+			this.netName = netName;
+			this.wireKeys = wireKeys;
+			this.parents = parents;
+			this.numFailures = numFailures;
+		}
+	}
+
+	/**
+	 * A cell pin that was moved to another BEL pin of its LUT.
+	 */
+	private static class PinSwap implements Serializable {
+		private static final long serialVersionUID = 6021938457793510623L;
+		private final String cellName;
+		private final String pinName;
+		private final String belPinName;
+
+		private PinSwap(String cellName, String pinName, String belPinName) {
+			this.cellName = cellName;
+			this.pinName = pinName;
+			this.belPinName = belPinName;
+		}
+	}
+
+	private RouteCheckpoint(String partName, int iteration, double presentCongestionFactor, int staticSearchSize,
+							long[] historyKeys, double[] historyValues, List<RouteState> routes,
+							List<PinSwap> pinSwaps) {
+		this.version = LATEST_VERSION;
+		this.partName = partName;
+		this.iteration = iteration;
+		this.presentCongestionFactor = presentCongestionFactor;
+		this.staticSearchSize = staticSearchSize;
+		this.historyKeys = historyKeys;
+		this.historyValues = historyValues;
+		this.routes = routes;
+		this.pinSwaps = pinSwaps;
+	}
+
+	/**
+	 * Captures the negotiation state of PathFinder between two iterations.
+	 * @param device the device being routed
+	 * @param intersiteRoutes all the inter-site routes
+	 * @param wireUsage the wire usage store
+	 * @param iteration the next iteration to run
+	 * @param presentCongestionFactor the present congestion factor of the next iteration
+	 * @param staticSearchSize the static search size of the next iteration
+	 * @param swappedPins the LUT input cell pins that have been swapped, and the BEL pins they were moved to
+	 * @return the checkpoint
+	 */
+	public static RouteCheckpoint capture(Device device, Collection<IntersiteRoute> intersiteRoutes,
+										  WireUsageStore wireUsage, int iteration, double presentCongestionFactor,
+										  int staticSearchSize, Map<CellPin, BelPin> swappedPins) {
+		WireNodeIndex nodeIndex = wireUsage.getNodeIndex();
+
+		List<RouteState> routes = new ArrayList<>(intersiteRoutes.size());
+		for (IntersiteRoute intersiteRoute : intersiteRoutes) {
+			routes.add(captureRoute(intersiteRoute, nodeIndex));
+		}
+
+		int numHistory = 0;
+		for (int node = 0; node < wireUsage.size(); node++) {
+			if (nodeIndex.getWire(node).getTile() != null && wireUsage.getHistory(node) > 1)
+				numHistory++;
+		}
+		long[] historyKeys = new long[numHistory];
+		double[] historyValues = new double[numHistory];
+		int i = 0;
+		for (int node = 0; node < wireUsage.size(); node++) {
+			Wire wire = nodeIndex.getWire(node);
+			if (wire.getTile() != null && wireUsage.getHistory(node) > 1) {
+				historyKeys[i] = nodeIndex.getKey(wire);
+				historyValues[i] = wireUsage.getHistory(node);
+				i++;
+			}
+		}
+
+		List<PinSwap> pinSwaps = new ArrayList<>(swappedPins.size());
+		for (Map.Entry<CellPin, BelPin> swap : swappedPins.entrySet()) {
+			CellPin cellPin = swap.getKey();
+			pinSwaps.add(new PinSwap(cellPin.getCell().getName(), cellPin.getName(), swap.getValue().getName()));
+		}
+
+		return new RouteCheckpoint(device.getPartName(), iteration, presentCongestionFactor, staticSearchSize,
+				historyKeys, historyValues, routes, pinSwaps);
+	}
+
+	/**
+	 * Stores the branches of a route tree that lead to the route's routed sinks.
+	 */
+	private static RouteState captureRoute(IntersiteRoute intersiteRoute, WireNodeIndex nodeIndex) {
+		PathFinderRouteTree startTree = intersiteRoute.getRouteTree();
+
+		// Mark the trees between the start tree and the terminals of the routed sinks
+		Set<RouteTree> routedTrees = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (PathFinderRouteTree sink : intersiteRoute.getRoutedSinks()) {
+			RouteTree tree = intersiteRoute.getTerminalTree(sink);
+			while (tree != null && routedTrees.add(tree) && tree != startTree) {
+				tree = tree.getParent();
+			}
+		}
+
+		List<Long> wireKeys = new ArrayList<>();
+		List<Integer> parents = new ArrayList<>();
+		Deque<RouteTree> stack = new ArrayDeque<>();
+		Deque<Integer> parentStack = new ArrayDeque<>();
+		stack.push(startTree);
+		parentStack.push(-1);
+		while (!stack.isEmpty()) {
+			RouteTree tree = stack.pop();
+			int parent = parentStack.pop();
+			int index = wireKeys.size();
+			Wire wire = tree.getWire();
+			wireKeys.add((wire.getTile() == null) ? TILELESS_WIRE : nodeIndex.getKey(wire));
+			parents.add(parent);
+
+			for (RouteTree child : tree.getChildren()) {
+				if (routedTrees.contains(child)) {
+					stack.push(child);
+					parentStack.push(index);
+				}
+			}
+		}
+
+		long[] keyArray = new long[wireKeys.size()];
+		int[] parentArray = new int[parents.size()];
+		for (int i = 0; i < keyArray.length; i++) {
+			keyArray[i] = wireKeys.get(i);
+			parentArray[i] = parents.get(i);
+		}
+		return new RouteState(intersiteRoute.getNet().getName(), keyArray, parentArray, intersiteRoute.getNumFailures());
+	}
+
+	/**
+	 * Loads a checkpoint from a file.
+	 * @param path the checkpoint file
+	 * @return the checkpoint
+	 * @throws IOException if the file cannot be read
+	 * @throws VersionException if the checkpoint was saved by an older version of the router
+	 */
+	public static RouteCheckpoint load(Path path) throws IOException, VersionException {
+		Hessian2Input his = FileTools.getCompactReader(path);
+		try {
+			RouteCheckpoint checkpoint = (RouteCheckpoint) his.readObject();
+			if (checkpoint.version.compareTo(LATEST_VERSION) < 0)
+				throw new VersionException(checkpoint.version, LATEST_VERSION);
+			return checkpoint;
+		} finally {
+			his.close();
+		}
+	}
+
+	/**
+	 * Saves the checkpoint to a file.
+	 * @param path the file to save to
+	 * @throws IOException if the file cannot be written
+	 */
+	public void save(Path path) throws IOException {
+		Hessian2Output hos = FileTools.getCompactWriter(path);
+		try {
+			hos.writeObject(this);
+		} finally {
+			hos.close();
+		}
+	}
+
+	public String getPartName() {
+		return partName;
+	}
+
+	public int getIteration() {
+		return iteration;
+	}
+
+	public double getPresentCongestionFactor() {
+		return presentCongestionFactor;
+	}
+
+	public int getStaticSearchSize() {
+		return staticSearchSize;
+	}
+
+	/**
+	 * Checks whether any LUT pins were swapped in the saved run.
+	 * @return true if the checkpoint has swapped pins
+	 */
+	public boolean hasPinSwaps() {
+		return !pinSwaps.isEmpty();
+	}
+
+	/**
+	 * Moves the LUT input pins that were swapped in the saved run to the same BEL pins again. This must be done
+	 * before the route trees are restored, since the saved route trees lead to the swapped pins.
+	 * @param intersiteRoutes the inter-site routes
+	 * @param design the design being routed
+	 * @param lutPinSwapper the LUT pin swapper of the resumed run, which remembers the swapped pins
+	 * @throws CadException if a swapped pin does not exist in the design or can't be moved again
+	 */
+	public void restorePinSwaps(Collection<IntersiteRoute> intersiteRoutes, CellDesign design,
+								LutPinSwapper lutPinSwapper) throws CadException {
+		// The inter-site routes of the unrouted sink pins
+		Map<CellPin, IntersiteRoute> sinkPinRoutes = new HashMap<>();
+		for (IntersiteRoute intersiteRoute : intersiteRoutes) {
+			for (PathFinderRouteTree sink : intersiteRoute.getSinksToRoute()) {
+				Wire terminalWire = intersiteRoute.getTerminalTree(sink).getWire();
+				for (CellPin cellPin : intersiteRoute.getSinkCellPins(terminalWire)) {
+					sinkPinRoutes.put(cellPin, intersiteRoute);
+				}
+			}
+		}
+
+		for (PinSwap swap : pinSwaps) {
+			Cell cell = design.getCell(swap.cellName);
+			CellPin cellPin = (cell == null) ? null : cell.getPin(swap.pinName);
+			BelPin belPin = (cellPin == null || cell.getBel() == null) ? null : cell.getBel().getBelPin(swap.belPinName);
+			IntersiteRoute intersiteRoute = sinkPinRoutes.get(cellPin);
+			if (belPin == null || intersiteRoute == null || !lutPinSwapper.restoreSwap(intersiteRoute, cellPin, belPin))
+				throw new CadException("Checkpoint LUT pin swap of " + swap.cellName + "/" + swap.pinName + " to "
+						+ swap.belPinName + " can't be restored");
+		}
+	}
+
+	/**
+	 * Restores the route trees of freshly created inter-site routes. Routes are matched to the saved routes by the
+	 * names of their nets. The sinks reached by a restored tree are marked as routed and the remaining sinks are left
+	 * to be routed. Routes of nets that are not in the checkpoint are left unrouted.
+	 * The wire usage of the routes is not updated.
+	 * @param intersiteRoutes the inter-site routes
+	 * @param device the device being routed
+	 * @return the inter-site routes that still have sinks to route
+	 * @throws CadException if a saved route tree does not match the device or the route
+	 */
+	public List<IntersiteRoute> restoreRoutes(Collection<IntersiteRoute> intersiteRoutes, Device device) throws CadException {
+		Map<String, RouteState> routesByName = new HashMap<>();
+		for (RouteState route : routes) {
+			routesByName.put(route.netName, route);
+		}
+
+		// Only used to compute the keys of wires
+		WireNodeIndex nodeIndex = new WireNodeIndex(device);
+		List<IntersiteRoute> toRoute = new ArrayList<>();
+		for (IntersiteRoute intersiteRoute : intersiteRoutes) {
+			RouteState route = routesByName.get(intersiteRoute.getNet().getName());
+			if (route != null)
+				restoreRoute(intersiteRoute, route, device, nodeIndex);
+			if (!intersiteRoute.getSinksToRoute().isEmpty())
+				toRoute.add(intersiteRoute);
+		}
+		return toRoute;
+	}
+
+	private static void restoreRoute(IntersiteRoute intersiteRoute, RouteState route, Device device,
+									 WireNodeIndex nodeIndex) throws CadException {
+		// The sink trees of the route that have not been reached yet, by the key of their wire. Sink trees that are
+		// already connected to the route tree (such as the forced sinks connected before routing) are reached.
+		PathFinderRouteTree startTree = intersiteRoute.getRouteTree();
+		Map<Long, Deque<PathFinderRouteTree>> unreachedSinks = new HashMap<>();
+		Set<PathFinderRouteTree> reachedSinks = new HashSet<>();
+		for (PathFinderRouteTree sink : intersiteRoute.getSinkRouteTrees()) {
+			if (sink.getParent() != null || sink == startTree)
+				reachedSinks.add(sink);
+			else if (sink.getWire().getTile() != null)
+				unreachedSinks.computeIfAbsent(nodeIndex.getKey(sink.getWire()), k -> new ArrayDeque<>()).add(sink);
+		}
+
+		PathFinderRouteTree[] trees = new PathFinderRouteTree[route.wireKeys.length];
+		long startKey = (startTree.getWire().getTile() == null) ? TILELESS_WIRE : nodeIndex.getKey(startTree.getWire());
+		if (route.wireKeys[0] == startKey) {
+			trees[0] = startTree;
+		} else {
+			// The source connects directly to a sink (such as a COUT to CIN net)
+			trees[0] = takeSink(unreachedSinks, route.wireKeys[0], reachedSinks);
+			if (trees[0] == null)
+				throw new CadException("Checkpoint route for " + route.netName + " does not start at its source");
+			intersiteRoute.setRouteTree(trees[0]);
+		}
+
+		for (int i = 1; i < trees.length; i++) {
+			PathFinderRouteTree parent = trees[route.parents[i]];
+			long key = route.wireKeys[i];
+
+			// Sink trees already contain the wires leading to their terminals
+			PathFinderRouteTree tree = findChild(parent, key, nodeIndex);
+			if (tree == null) {
+				Connection connection = findConnection(parent.getWire(), key, device, nodeIndex);
+				if (connection == null)
+					throw new CadException("Checkpoint route for " + route.netName + " uses a connection that does not exist");
+
+				PathFinderRouteTree sink = takeSink(unreachedSinks, key, reachedSinks);
+				tree = (sink != null) ? parent.connect(connection, sink) : parent.connect(connection);
+			}
+			trees[i] = tree;
+		}
+
+		intersiteRoute.getSinksToRoute().clear();
+		for (PathFinderRouteTree sink : intersiteRoute.getSinkRouteTrees()) {
+			if (!reachedSinks.contains(sink))
+				intersiteRoute.getSinksToRoute().add(sink);
+		}
+		intersiteRoute.setRoutedSinks(reachedSinks);
+		intersiteRoute.setNumFailures(route.numFailures);
+
+		// Mark the cell pins of the routed sinks as routed and register the leaves, as the maze router would have.
+		// This is harmless for sinks that were already connected.
+		for (PathFinderRouteTree sink : reachedSinks) {
+			PathFinderRouteTree terminal = intersiteRoute.getTerminalTree(sink);
+			for (CellPin cellPin : intersiteRoute.getSinkCellPins(terminal.getWire())) {
+				CellNet net = cellPin.getNet();
+				net.addRoutedSink(cellPin);
+			}
+			terminal.markLeaf();
+		}
+	}
+
+	private static PathFinderRouteTree takeSink(Map<Long, Deque<PathFinderRouteTree>> unreachedSinks, long key,
+												Set<PathFinderRouteTree> reachedSinks) {
+		Deque<PathFinderRouteTree> sinks = unreachedSinks.get(key);
+		if (sinks == null || sinks.isEmpty())
+			return null;
+		PathFinderRouteTree sink = sinks.poll();
+		reachedSinks.add(sink);
+		return sink;
+	}
+
+	private static PathFinderRouteTree findChild(PathFinderRouteTree parent, long key, WireNodeIndex nodeIndex) {
+		for (RouteTree child : parent.getChildren()) {
+			Wire wire = child.getWire();
+			if (wire.getTile() != null && nodeIndex.getKey(wire) == key)
+				return (PathFinderRouteTree) child;
+		}
+		return null;
+	}
+
+	/**
+	 * Finds the connection from a wire to the wire with the specified key. Static sources that were added to a
+	 * global wire during the saved run are added to the global wire again.
+	 */
+	private static Connection findConnection(Wire wire, long key, Device device, WireNodeIndex nodeIndex) {
+		for (Connection connection : wire.getWireConnections()) {
+			Wire sinkWire = connection.getSinkWire();
+			if (sinkWire.getTile() != null && nodeIndex.getKey(sinkWire) == key)
+				return connection;
+		}
+
+		if (wire instanceof GlobalWire) {
+			int tileIndex = (int) (key >>> 32);
+			Tile tile = device.getTile(tileIndex / device.getColumns(), tileIndex % device.getColumns());
+			Connection connection = new GlobalWireConnection(wire, new TileWire(tile, (int) key));
+			((GlobalWire) wire).addConnection(connection);
+			return connection;
+		}
+		return null;
+	}
+
+	/**
+	 * Restores the historical congestion of the wires. The wires are added to the wire usage store if needed.
+	 * @param wireUsage the wire usage store
+	 * @param device the device being routed
+	 */
+	public void restoreHistory(WireUsageStore wireUsage, Device device) {
+		for (int i = 0; i < historyKeys.length; i++) {
+			long key = historyKeys[i];
+			int tileIndex = (int) (key >>> 32);
+			Tile tile = device.getTile(tileIndex / device.getColumns(), tileIndex % device.getColumns());
+			int node = wireUsage.computeNode(new TileWire(tile, (int) key));
+			wireUsage.setHistory(node, historyValues[i]);
+		}
+	}
+}
@@ -0,0 +1,193 @@
+package edu.byu.ece.rapidSmith.cad.route.pathfinder;
+
+import edu.byu.ece.rapidSmith.cad.route.IntersiteRoute;
+import edu.byu.ece.rapidSmith.device.Tile;
+import edu.byu.ece.rapidSmith.device.Wire;
+
+import java.util.*;
+
+/**
+ * Describes why PathFinder stopped without resolving all congestion. The overused wires are grouped into square
+ * regions of tiles, and the regions with the most overuse are reported along with the nets that use their
+ * overused wires.
+ */
+public class RoutingFailureReport {
+	/** The width and height (in tiles) of the regions overused wires are grouped into */
+	private static final int REGION_SIZE = 8;
+	/** The number of regions that are reported */
+	private static final int MAX_REGIONS = 10;
+	/** The number of nets of each region that are printed */
+	private static final int MAX_PRINTED_NETS = 8;
+
+	private final ConvergenceController.Status status;
+	private final int iteration;
+	private final long elapsedTime;
+	private final int numOverusedNodes;
+	private final int totalOveruse;
+	private final int numCongestedRoutes;
+	private final List<Region> worstRegions;
+
+	/**
+	 * A square region of tiles containing overused wires.
+	 */
+	public static class Region {
+		private final int minRow;
+		private final int minColumn;
+		private int numOverusedNodes;
+		private int overuse;
+		private final Set<String> netNames;
+
+		private Region(int minRow, int minColumn) {
+			this.minRow = minRow;
+			this.minColumn = minColumn;
+			this.netNames = new TreeSet<>();
+		}
+
+		public int getMinRow() {
+			return minRow;
+		}
+
+		public int getMinColumn() {
+			return minColumn;
+		}
+
+		public int getMaxRow() {
+			return minRow + REGION_SIZE - 1;
+		}
+
+		public int getMaxColumn() {
+			return minColumn + REGION_SIZE - 1;
+		}
+
+		/**
+		 * Gets the number of overused wires in the region.
+		 * @return the number of overused wires
+		 */
+		public int getNumOverusedNodes() {
+			return numOverusedNodes;
+		}
+
+		/**
+		 * Gets the total overuse of the overused wires in the region.
+		 * @return the total overuse
+		 */
+		public int getOveruse() {
+			return overuse;
+		}
+
+		/**
+		 * Gets the names of the nets that use the overused wires of the region.
+		 * @return the net names, sorted
+		 */
+		public Set<String> getNetNames() {
+			return netNames;
+		}
+	}
+
+	private RoutingFailureReport(ConvergenceController.Status status, int iteration, long elapsedTime,
+								 int numOverusedNodes, int totalOveruse, int numCongestedRoutes, List<Region> worstRegions) {
+		this.status = status;
+		this.iteration = iteration;
+		this.elapsedTime = elapsedTime;
+		this.numOverusedNodes = numOverusedNodes;
+		this.totalOveruse = totalOveruse;
+		this.numCongestedRoutes = numCongestedRoutes;
+		this.worstRegions = worstRegions;
+	}
+
+	/**
+	 * Creates a report of the congestion left in a wire usage store.
+	 * @param controller the controller that stopped the negotiation
+	 * @param iteration the last iteration that was run
+	 * @param wireUsage the wire usage of the routes
+	 * @param numCongestedRoutes the number of routes that use an overused wire
+	 * @return the report
+	 */
+	public static RoutingFailureReport create(ConvergenceController controller, int iteration, WireUsageStore wireUsage,
+											  int numCongestedRoutes) {
+		Map<Integer, Region> regions = new HashMap<>();
+		int[] overusedNodes = wireUsage.getOverusedNodes();
+		for (int node : overusedNodes) {
+			Wire wire = wireUsage.getNodeIndex().getWire(node);
+			Tile tile = wire.getTile();
+			int regionRow = tile.getRow() / REGION_SIZE;
+			int regionColumn = tile.getColumn() / REGION_SIZE;
+			// Region keys only need to be unique, so any column count larger than the device's works
+			Region region = regions.computeIfAbsent(regionRow * 0x10000 + regionColumn,
+					k -> new Region(regionRow * REGION_SIZE, regionColumn * REGION_SIZE));
+			region.numOverusedNodes++;
+			region.overuse += wireUsage.getOccupancy(node) - wireUsage.getCapacity(node);
+			for (IntersiteRoute route : wireUsage.getRoutes(node)) {
+				region.netNames.add(route.getNet().getName());
+			}
+		}
+
+		List<Region> worstRegions = new ArrayList<>(regions.values());
+		worstRegions.sort(Comparator.comparingInt(Region::getOveruse).reversed());
+		if (worstRegions.size() > MAX_REGIONS)
+			worstRegions = new ArrayList<>(worstRegions.subList(0, MAX_REGIONS));
+
+		return new RoutingFailureReport(controller.getStatus(), iteration, controller.getElapsedTime(),
+				overusedNodes.length, wireUsage.getTotalOveruse(), numCongestedRoutes, worstRegions);
+	}
+
+	/**
+	 * Prints the report to standard error.
+	 */
+	public void print() {
+		System.err.println("[WARNING] Routing did not converge: " + getReason());
+		System.err.printf("[WARNING] After %d iterations (%.1f s): %d wires overused (total overuse %d), %d routes congested%n",
+				iteration, elapsedTime / 1000.0, numOverusedNodes, totalOveruse, numCongestedRoutes);
+		System.err.println("[WARNING] Most congested regions:");
+		for (Region region : worstRegions) {
+			List<String> nets = new ArrayList<>(region.netNames);
+			String netList = String.join(", ", nets.subList(0, Math.min(nets.size(), MAX_PRINTED_NETS)));
+			if (nets.size() > MAX_PRINTED_NETS)
+				netList += ", ... (" + (nets.size() - MAX_PRINTED_NETS) + " more)";
+			System.err.printf("[WARNING]   rows %d-%d, columns %d-%d: %d wires, overuse %d, nets: %s%n",
+					region.getMinRow(), region.getMaxRow(), region.getMinColumn(), region.getMaxColumn(),
+					region.numOverusedNodes, region.overuse, netList);
+		}
+	}
+
+	private String getReason() {
+		switch (status) {
+			case ITERATION_LIMIT:
+				return "iteration limit reached";
+			case TIME_LIMIT:
+				return "time limit reached";
+			case STALLED:
+				return "congestion stopped improving";
+			default:
+				return status.toString();
+		}
+	}
+
+	public ConvergenceController.Status getStatus() {
+		return status;
+	}
+
+	public int getIteration() {
+		return iteration;
+	}
+
+	public int getNumOverusedNodes() {
+		return numOverusedNodes;
+	}
+
+	public int getTotalOveruse() {
+		return totalOveruse;
+	}
+
+	public int getNumCongestedRoutes() {
+		return numCongestedRoutes;
+	}
+
+	/**
+	 * Gets the regions with the most overuse, in decreasing order of overuse.
+	 * @return the regions
+	 */
+	public List<Region> getWorstRegions() {
+		return worstRegions;
+	}
+}
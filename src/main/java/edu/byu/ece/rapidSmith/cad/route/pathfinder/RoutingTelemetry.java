@@ -0,0 +1,254 @@
+package edu.byu.ece.rapidSmith.cad.route.pathfinder;
+
+import edu.byu.ece.rapidSmith.cad.route.IntersiteRoute;
+import edu.byu.ece.rapidSmith.cad.route.mazerouter.MazeRouter;
+import edu.byu.ece.rapidSmith.device.Device;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Collects per-iteration and per-net statistics of a PathFinder run and writes them to a directory:
+ * <ul>
+ *     <li>iterations.csv and telemetry.json - one record per iteration with the number of nets and sinks routed,
+ *     the maze router's search effort (wires expanded, heap pushes and decrease-keys), the time spent routing, and
+ *     the congestion left at the end of the iteration</li>
+ *     <li>nets.csv - the time and number of sinks of every net routed in every iteration</li>
+ *     <li>congestion_overuse.csv, congestion_occupancy.csv and congestion_tiles.csv - a {@link CongestionHeatMap}
+ *     of the final wire usage</li>
+ * </ul>
+ * Heat maps of the wire usage at the end of every iteration can optionally be written as well.
+ */
+public class RoutingTelemetry {
+	private final Device device;
+	private final Path directory;
+	/** Whether to write a heat map of the overuse at the end of every iteration */
+	private boolean heatMapEachIteration;
+	private final List<IterationRecord> iterations;
+	private final List<NetRecord> nets;
+
+	/** The record of the iteration in progress */
+	private IterationRecord current;
+	private long iterationStartTime;
+	private long startNodesExpanded;
+	private long startHeapPushes;
+	private long startHeapUpdates;
+
+	private static final class IterationRecord {
+		int iteration;
+		int numRoutes;
+		int sinksRouted;
+		int sinksPreserved;
+		double presentCongestionFactor;
+		double historyFactor;
+		long nodesExpanded;
+		long heapPushes;
+		long heapUpdates;
+		/** The total time spent routing the nets of the iteration, in nanoseconds */
+		long routeTime;
+		/** The wall-clock time of the iteration, in nanoseconds */
+		long iterationTime;
+		int numOverusedNodes;
+		int totalOveruse;
+		int numCongestedRoutes;
+	}
+
+	private static final class NetRecord {
+		final int iteration;
+		final String netName;
+		final int numSinks;
+		final long time;
+
+		NetRecord(int iteration, String netName, int numSinks, long time) {
+			this.iteration = iteration;
+			this.netName = netName;
+			this.numSinks = numSinks;
+			this.time = time;
+		}
+	}
+
+	/**
+	 * Creates a telemetry collector that writes to a directory.
+	 * @param device the device being routed
+	 * @param directory the directory to write the telemetry files to (created if it doesn't exist)
+	 */
+	public RoutingTelemetry(Device device, Path directory) {
+		this.device = device;
+		this.directory = directory;
+		this.heatMapEachIteration = false;
+		this.iterations = new ArrayList<>();
+		this.nets = new ArrayList<>();
+	}
+
+	/**
+	 * Sets whether a heat map of the overuse is written at the end of every iteration
+	 * (congestion_overuse_&lt;iteration&gt;.csv), in addition to the heat map of the final routing.
+	 * @param heatMapEachIteration whether to write a heat map every iteration
+	 */
+	public void setHeatMapEachIteration(boolean heatMapEachIteration) {
+		this.heatMapEachIteration = heatMapEachIteration;
+	}
+
+	/**
+	 * Starts recording an iteration.
+	 * @param iteration the iteration number
+	 * @param toRoute the inter-site routes that will be routed in the iteration
+	 * @param routers the maze routers that will route them
+	 * @param presentCongestionFactor the present congestion factor of the iteration
+	 * @param historyFactor the history factor of the iteration
+	 */
+	public void startIteration(int iteration, Collection<IntersiteRoute> toRoute, Collection<MazeRouter> routers,
+							   double presentCongestionFactor, double historyFactor) {
+		current = new IterationRecord();
+		current.iteration = iteration;
+		current.numRoutes = toRoute.size();
+		for (IntersiteRoute intersiteRoute : toRoute) {
+			current.sinksRouted += intersiteRoute.getSinksToRoute().size();
+			current.sinksPreserved += intersiteRoute.getRoutedSinks().size();
+		}
+		current.presentCongestionFactor = presentCongestionFactor;
+		current.historyFactor = historyFactor;
+
+		startNodesExpanded = 0;
+		startHeapPushes = 0;
+		startHeapUpdates = 0;
+		for (MazeRouter router : routers) {
+			startNodesExpanded += router.getNumNodesExpanded();
+			startHeapPushes += router.getNumHeapPushes();
+			startHeapUpdates += router.getNumHeapUpdates();
+		}
+		iterationStartTime = System.nanoTime();
+	}
+
+	/**
+	 * Records the time it took to route a net. This may be called from several threads at once.
+	 * @param intersiteRoute the inter-site route of the net
+	 * @param numSinks the number of sinks that were routed
+	 * @param time the time in nanoseconds
+	 */
+	public synchronized void recordNet(IntersiteRoute intersiteRoute, int numSinks, long time) {
+		nets.add(new NetRecord(current.iteration, intersiteRoute.getNet().getName(), numSinks, time));
+		current.routeTime += time;
+	}
+
+	/**
+	 * Finishes recording an iteration, once the congestion of its routes has been found.
+	 * @param routers the maze routers that routed the iteration
+	 * @param wireUsage the wire usage of the routes
+	 * @param numCongestedRoutes the number of routes that use an overused wire
+	 */
+	public void endIteration(Collection<MazeRouter> routers, WireUsageStore wireUsage, int numCongestedRoutes) {
+		current.iterationTime = System.nanoTime() - iterationStartTime;
+		for (MazeRouter router : routers) {
+			current.nodesExpanded += router.getNumNodesExpanded();
+			current.heapPushes += router.getNumHeapPushes();
+			current.heapUpdates += router.getNumHeapUpdates();
+		}
+		current.nodesExpanded -= startNodesExpanded;
+		current.heapPushes -= startHeapPushes;
+		current.heapUpdates -= startHeapUpdates;
+		current.numOverusedNodes = wireUsage.getNumOverusedNodes();
+		current.totalOveruse = wireUsage.getTotalOveruse();
+		current.numCongestedRoutes = numCongestedRoutes;
+		iterations.add(current);
+
+		if (heatMapEachIteration) {
+			try {
+				Files.createDirectories(directory);
+				CongestionHeatMap.create(device, wireUsage)
+						.writeOveruseGrid(directory.resolve("congestion_overuse_" + current.iteration + ".csv"));
+			} catch (IOException e) {
+				System.err.println("[WARNING] Could not write congestion heat map to " + directory + ": " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Writes the telemetry files and the heat map of the final wire usage.
+	 * @param wireUsage the wire usage of the final routes
+	 */
+	public void finish(WireUsageStore wireUsage) {
+		try {
+			Files.createDirectories(directory);
+			writeIterationsCsv(directory.resolve("iterations.csv"));
+			writeNetsCsv(directory.resolve("nets.csv"));
+			writeJson(directory.resolve("telemetry.json"));
+
+			CongestionHeatMap heatMap = CongestionHeatMap.create(device, wireUsage);
+			heatMap.writeOveruseGrid(directory.resolve("congestion_overuse.csv"));
+			heatMap.writeOccupancyGrid(directory.resolve("congestion_occupancy.csv"));
+			heatMap.writeCsv(directory.resolve("congestion_tiles.csv"));
+			System.out.println("[INFO] Wrote routing telemetry to " + directory);
+		} catch (IOException e) {
+			System.err.println("[WARNING] Could not write routing telemetry to " + directory + ": " + e.getMessage());
+		}
+	}
+
+	private void writeIterationsCsv(Path file) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+			writer.write("iteration,routes,sinks_routed,sinks_preserved,present_congestion_factor,history_factor,"
+					+ "nodes_expanded,heap_pushes,heap_updates,route_time_ms,iteration_time_ms,ms_per_net,"
+					+ "overused_nodes,total_overuse,congested_routes");
+			writer.newLine();
+			for (IterationRecord record : iterations) {
+				writer.write(String.format(Locale.US, "%d,%d,%d,%d,%.4f,%.4f,%d,%d,%d,%.3f,%.3f,%.4f,%d,%d,%d",
+						record.iteration, record.numRoutes, record.sinksRouted, record.sinksPreserved,
+						record.presentCongestionFactor, record.historyFactor, record.nodesExpanded, record.heapPushes,
+						record.heapUpdates, record.routeTime / 1e6, record.iterationTime / 1e6, getTimePerNet(record),
+						record.numOverusedNodes, record.totalOveruse, record.numCongestedRoutes));
+				writer.newLine();
+			}
+		}
+	}
+
+	private void writeNetsCsv(Path file) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+			writer.write("iteration,net,sinks,time_ms");
+			writer.newLine();
+			for (NetRecord record : nets) {
+				writer.write(String.format(Locale.US, "%d,\"%s\",%d,%.4f", record.iteration,
+						record.netName.replace("\"", "\"\""), record.numSinks, record.time / 1e6));
+				writer.newLine();
+			}
+		}
+	}
+
+	private void writeJson(Path file) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+			writer.write("{");
+			writer.newLine();
+			writer.write("  \"device\": \"" + device.getPartName() + "\",");
+			writer.newLine();
+			writer.write("  \"iterations\": [");
+			writer.newLine();
+			for (int i = 0; i < iterations.size(); i++) {
+				IterationRecord record = iterations.get(i);
+				writer.write(String.format(Locale.US, "    {\"iteration\": %d, \"routes\": %d, \"sinksRouted\": %d, "
+								+ "\"sinksPreserved\": %d, \"presentCongestionFactor\": %.4f, \"historyFactor\": %.4f, "
+								+ "\"nodesExpanded\": %d, \"heapPushes\": %d, \"heapUpdates\": %d, \"routeTimeMs\": %.3f, "
+								+ "\"iterationTimeMs\": %.3f, \"msPerNet\": %.4f, \"overusedNodes\": %d, "
+								+ "\"totalOveruse\": %d, \"congestedRoutes\": %d}",
+						record.iteration, record.numRoutes, record.sinksRouted, record.sinksPreserved,
+						record.presentCongestionFactor, record.historyFactor, record.nodesExpanded, record.heapPushes,
+						record.heapUpdates, record.routeTime / 1e6, record.iterationTime / 1e6, getTimePerNet(record),
+						record.numOverusedNodes, record.totalOveruse, record.numCongestedRoutes));
+				writer.write((i < iterations.size() - 1) ? "," : "");
+				writer.newLine();
+			}
+			writer.write("  ]");
+			writer.newLine();
+			writer.write("}");
+			writer.newLine();
+		}
+	}
+
+	private static double getTimePerNet(IterationRecord record) {
+		return (record.numRoutes == 0) ? 0 : record.routeTime / 1e6 / record.numRoutes;
+	}
+}
@@ -0,0 +1,154 @@
+package edu.byu.ece.rapidSmith.cad.route.pathfinder;
+
+import edu.byu.ece.rapidSmith.design.subsite.CellDesign;
+import edu.byu.ece.rapidSmith.device.*;
+import edu.byu.ece.rapidSmith.device.families.FamilyInfo;
+import edu.byu.ece.rapidSmith.device.families.FamilyInfos;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A spatial index of the LUT BELs that can be used as static (VCC/GND) sources. The device is divided into square
+ * buckets of tiles, and each bucket holds the six-input LUT BELs of the CLB tiles within it. Searches expand in rings
+ * of buckets around a tile, so a caller that remembers how far it has already searched only visits the buckets that
+ * are new to it.
+ *
+ * A LUT can be a static source if it is not used and none of the site PIPs that lead from its O6 output to its
+ * site's A/B/C/D output pin are used. BELs that are found to be unusable while searching are removed from the index,
+ * and BELs that are used as static sources should be removed with {@link #remove(Bel)}.
+ */
+public class StaticSourceIndex {
+	/** The width and height (in tiles) of the buckets */
+	private static final int BUCKET_SIZE = 4;
+	private final CellDesign design;
+	private final int bucketRows;
+	private final int bucketColumns;
+	/** The candidate LUT BELs of each bucket, indexed by bucket row * bucketColumns + bucket column */
+	private final List<List<Bel>> buckets;
+	private int numCandidates;
+
+	/**
+	 * Creates an index of the candidate static source LUTs of a design's device.
+	 * @param design the design being routed
+	 */
+	public StaticSourceIndex(CellDesign design) {
+		this.design = design;
+		Device device = design.getDevice();
+		FamilyInfo familyInfo = FamilyInfos.get(device.getFamily());
+		bucketRows = (device.getRows() + BUCKET_SIZE - 1) / BUCKET_SIZE;
+		bucketColumns = (device.getColumns() + BUCKET_SIZE - 1) / BUCKET_SIZE;
+		buckets = new ArrayList<>(bucketRows * bucketColumns);
+		for (int i = 0; i < bucketRows * bucketColumns; i++) {
+			buckets.add(new ArrayList<>(0));
+		}
+
+		for (Tile tile : device.getTiles(0, 0, device.getRows() - 1, device.getColumns() - 1)) {
+			if (!familyInfo.clbTiles().contains(tile.getType()))
+				continue;
+
+			List<Bel> bucket = buckets.get(getBucket(tile.getRow(), tile.getColumn()));
+			for (Site site : tile.getSites()) {
+				for (Bel bel : site.getBels()) {
+					if (bel.getType().equals("LUT6") || bel.getType().equals("LUT_OR_MEM6")) {
+						bucket.add(bel);
+						numCandidates++;
+					}
+				}
+			}
+		}
+	}
+
+	private int getBucket(int row, int column) {
+		return (row / BUCKET_SIZE) * bucketColumns + column / BUCKET_SIZE;
+	}
+
+	/**
+	 * Gets the number of LUT BELs in the index.
+	 * @return the number of candidate LUTs
+	 */
+	public int size() {
+		return numCandidates;
+	}
+
+	/**
+	 * Converts a search distance in tiles to the ring of buckets that covers it.
+	 * @param distance the distance in tiles
+	 * @return the radius in buckets
+	 */
+	public int getRadius(int distance) {
+		return (Math.max(0, distance) + BUCKET_SIZE - 1) / BUCKET_SIZE;
+	}
+
+	/**
+	 * Removes a LUT BEL from the index, such as when it has been used as a static source.
+	 * @param bel the BEL to remove
+	 */
+	public void remove(Bel bel) {
+		Tile tile = bel.getSite().getTile();
+		if (buckets.get(getBucket(tile.getRow(), tile.getColumn())).remove(bel))
+			numCandidates--;
+	}
+
+	/**
+	 * Finds the usable static source LUTs in the buckets whose distance (in buckets) from a tile's bucket is greater
+	 * than minRadius and at most maxRadius. Searching with increasing radii therefore visits every bucket once.
+	 * @param tile the tile to search around
+	 * @param minRadius the radius that has already been searched, or -1 if nothing has been searched
+	 * @param maxRadius the radius to search to
+	 * @return the output wires (at the site's A/B/C/D pins) of the usable LUTs that were found
+	 */
+	public List<Wire> findSources(Tile tile, int minRadius, int maxRadius) {
+		List<Wire> sourceWires = new ArrayList<>();
+		int centerRow = tile.getRow() / BUCKET_SIZE;
+		int centerColumn = tile.getColumn() / BUCKET_SIZE;
+
+		for (int radius = minRadius + 1; radius <= maxRadius; radius++) {
+			int minRow = centerRow - radius;
+			int maxRow = centerRow + radius;
+			for (int row = Math.max(0, minRow); row <= Math.min(bucketRows - 1, maxRow); row++) {
+				boolean edgeRow = (row == minRow || row == maxRow);
+				// Rows in the middle of the ring only have the buckets at its left and right edges
+				int step = (edgeRow || radius == 0) ? 1 : 2 * radius;
+				for (int column = centerColumn - radius; column <= centerColumn + radius; column += step) {
+					if (column >= 0 && column < bucketColumns)
+						addSources(row * bucketColumns + column, sourceWires);
+				}
+			}
+		}
+		return sourceWires;
+	}
+
+	/**
+	 * Adds the output wires of the usable LUTs of a bucket, removing LUTs that can no longer be used.
+	 */
+	private void addSources(int bucketIndex, List<Wire> sourceWires) {
+		List<Bel> bucket = buckets.get(bucketIndex);
+		for (int i = bucket.size() - 1; i >= 0; i--) {
+			Bel lutBel = bucket.get(i);
+			String lutLetter = lutBel.getName().substring(0, 1);
+			if (!isUsable(lutBel, lutLetter)) {
+				bucket.set(i, bucket.get(bucket.size() - 1));
+				bucket.remove(bucket.size() - 1);
+				numCandidates--;
+				continue;
+			}
+
+			// There is always more than one PIP from the site-pin output wire, so we don't need to find
+			// the first wire that branches.
+			sourceWires.add(lutBel.getSite().getPin(lutLetter).getExternalWire());
+		}
+	}
+
+	private boolean isUsable(Bel lutBel, String lutLetter) {
+		if (design.isBelUsed(lutBel))
+			return false;
+
+		Map<String, String> pipInputVals = design.getPIPInputValsAtSite(lutBel.getSite());
+		if (pipInputVals == null)
+			return true;
+		return !pipInputVals.containsKey(lutLetter + "USED") && !pipInputVals.containsKey(lutLetter + "OUTMUX")
+				&& !pipInputVals.containsKey(lutLetter + "FFMUX");
+	}
+}
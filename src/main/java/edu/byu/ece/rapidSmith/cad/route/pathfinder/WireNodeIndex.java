@@ -0,0 +1,173 @@
+package edu.byu.ece.rapidSmith.cad.route.pathfinder;
+
+import edu.byu.ece.rapidSmith.device.Device;
+import edu.byu.ece.rapidSmith.device.Tile;
+import edu.byu.ece.rapidSmith.device.Wire;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Assigns a compact, dense integer index to every wire the router touches. The index of a tile wire is derived from
+ * its key (the tile index and the wire enum packed into a long), which is looked up in a primitive open-addressing
+ * hash table. Wires without a tile (such as {@link edu.byu.ece.rapidSmith.cad.route.GlobalWire}s) are indexed by
+ * identity. Lookups with {@link #getIndex(Wire)} never modify the index, so they may be done concurrently as long as
+ * no thread is adding wires.
+ */
+public class WireNodeIndex {
+	private static final int INITIAL_CAPACITY = 1 << 12;
+	/** Number of columns in the device, used to compute tile indices */
+	private final int numColumns;
+	/** Hash table keys (packed tile index and wire enum) */
+	private long[] keys;
+	/** Hash table values (the node index for the corresponding key), or -1 for empty slots */
+	private int[] values;
+	/** Mask used to wrap indices into the hash table */
+	private int mask;
+	/** Node index to the wire it was created for */
+	private Wire[] wires;
+	/** Node indices for wires that do not exist in a tile */
+	private final Map<Wire, Integer> tilelessWires;
+	/** The number of indexed wires */
+	private int size;
+
+	/**
+	 * Creates an empty index for wires of the specified device.
+	 * @param device the device the wires belong to
+	 */
+	public WireNodeIndex(Device device) {
+		this.numColumns = device.getColumns();
+		keys = new long[INITIAL_CAPACITY * 2];
+		values = new int[INITIAL_CAPACITY * 2];
+		Arrays.fill(values, -1);
+		mask = keys.length - 1;
+		wires = new Wire[INITIAL_CAPACITY];
+		tilelessWires = new IdentityHashMap<>();
+		size = 0;
+	}
+
+	/**
+	 * Computes the unique index of a tile within the device.
+	 * @param tile the tile
+	 * @return the tile index
+	 */
+	public int getTileIndex(Tile tile) {
+		return tile.getRow() * numColumns + tile.getColumn();
+	}
+
+	/**
+	 * Computes the key for a wire in a tile. The key uniquely identifies the wire across the device and
+	 * is stable between runs, so it may be saved to files.
+	 * @param wire the wire (must exist in a tile)
+	 * @return the key of the wire
+	 */
+	public long getKey(Wire wire) {
+		return ((long) getTileIndex(wire.getTile()) << 32) | (wire.getWireEnum() & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Gets the node index of a wire without adding it to the index.
+	 * @param wire the wire
+	 * @return the node index, or -1 if the wire has not been indexed
+	 */
+	public int getIndex(Wire wire) {
+		if (wire.getTile() == null) {
+			Integer index = tilelessWires.get(wire);
+			return (index == null) ? -1 : index;
+		}
+
+		long key = getKey(wire);
+		int slot = hash(key) & mask;
+		while (values[slot] != -1) {
+			if (keys[slot] == key)
+				return values[slot];
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Gets the node index of a wire, adding the wire to the index if it has not been seen before.
+	 * @param wire the wire
+	 * @return the node index
+	 */
+	public int getOrAddIndex(Wire wire) {
+		if (wire.getTile() == null) {
+			Integer index = tilelessWires.get(wire);
+			if (index == null) {
+				index = addWire(wire);
+				tilelessWires.put(wire, index);
+			}
+			return index;
+		}
+
+		long key = getKey(wire);
+		int slot = hash(key) & mask;
+		while (values[slot] != -1) {
+			if (keys[slot] == key)
+				return values[slot];
+			slot = (slot + 1) & mask;
+		}
+
+		int index = addWire(wire);
+		keys[slot] = key;
+		values[slot] = index;
+
+		// Keep the load factor at or below one half
+		if (size * 2 > keys.length)
+			rehash();
+		return index;
+	}
+
+	/**
+	 * Gets the wire a node index was created for.
+	 * @param index the node index
+	 * @return the wire
+	 */
+	public Wire getWire(int index) {
+		return wires[index];
+	}
+
+	/**
+	 * Gets the number of indexed wires. Node indices are always in the range [0, size).
+	 * @return the number of indexed wires
+	 */
+	public int size() {
+		return size;
+	}
+
+	private int addWire(Wire wire) {
+		if (size == wires.length)
+			wires = Arrays.copyOf(wires, wires.length * 2);
+		wires[size] = wire;
+		return size++;
+	}
+
+	private void rehash() {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new long[oldKeys.length * 2];
+		values = new int[oldValues.length * 2];
+		Arrays.fill(values, -1);
+		mask = keys.length - 1;
+
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldValues[i] == -1)
+				continue;
+			int slot = hash(oldKeys[i]) & mask;
+			while (values[slot] != -1)
+				slot = (slot + 1) & mask;
+			keys[slot] = oldKeys[i];
+			values[slot] = oldValues[i];
+		}
+	}
+
+	private static int hash(long key) {
+		// Mix the bits of the key (from MurmurHash3's 64-bit finalizer)
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+}
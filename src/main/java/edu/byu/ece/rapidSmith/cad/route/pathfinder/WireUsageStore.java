@@ -0,0 +1,408 @@
+package edu.byu.ece.rapidSmith.cad.route.pathfinder;
+
+import edu.byu.ece.rapidSmith.cad.route.IntersiteRoute;
+import edu.byu.ece.rapidSmith.device.Device;
+import edu.byu.ece.rapidSmith.device.Wire;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Keeps track of which inter-site routes (and thereby, nets) are currently using each wire, along with the
+ * congestion costs of the wires. Usage is stored in parallel primitive arrays indexed by the compact node index of
+ * a {@link WireNodeIndex}, so looking up the usage of a wire does not require hashing {@link Wire} objects.
+ * The inter-site routes using a wire are kept in a small array per node.
+ *
+ * The store also keeps a list of the nodes that are currently overused (used by more routes than their capacity),
+ * which is updated as routes are added and removed. PathFinder finds the congested routes of an iteration from this
+ * list rather than by searching every route tree. The present congestion of a node is computed from its occupancy
+ * and the current present congestion factor when its cost is requested, so changing the factor between iterations
+ * does not require updating every node that has ever been used.
+ *
+ * Every node has a capacity, which is one unless it is changed with {@link #setCapacity(Wire, int)}. The occupancy of
+ * a node is the number of distinct nets using it rather than the number of inter-site routes, so routes of the same
+ * logical net may share a node without congesting it. Routes belong to the same logical net if they have the same
+ * {@link IntersiteRoute#getNetKey() net key}, which is the case for routes of nets that are aliases of each other.
+ */
+public class WireUsageStore {
+	private static final int INITIAL_CAPACITY = 1 << 12;
+	/** The default capacity of a wire (how many nets can use it at once). */
+	private static final int DEFAULT_CAPACITY = 1;
+	/** The base cost to use a wire. */
+	private static final double WIRE_COST = 1;
+	/** Index from wires to the nodes of this store */
+	private final WireNodeIndex nodeIndex;
+	/** The number of distinct nets currently using each node */
+	private int[] occupancy;
+	/** The number of inter-site routes currently using each node */
+	private int[] routeCounts;
+	/** The capacity of each node */
+	private int[] capacities;
+	/** The historical usage of each node */
+	private double[] history;
+	/** The present congestion factor of the current PathFinder iteration */
+	private double presentCongestionFactor;
+	/** The inter-site routes currently using each node. Only the first routeCounts[node] entries are valid. */
+	private IntersiteRoute[][] routes;
+	/** The nodes that are currently overused. Only the first numOverused entries are valid. */
+	private int[] overusedNodes;
+	private int numOverused;
+	/** The position of each node in the overused node list plus one, or zero if the node is not overused */
+	private int[] overusedPositions;
+
+	/**
+	 * Creates an empty wire usage store for the specified device.
+	 * @param device the device being routed
+	 */
+	public WireUsageStore(Device device) {
+		nodeIndex = new WireNodeIndex(device);
+		occupancy = new int[INITIAL_CAPACITY];
+		routeCounts = new int[INITIAL_CAPACITY];
+		capacities = new int[INITIAL_CAPACITY];
+		history = new double[INITIAL_CAPACITY];
+		routes = new IntersiteRoute[INITIAL_CAPACITY][];
+		overusedNodes = new int[64];
+		overusedPositions = new int[INITIAL_CAPACITY];
+		presentCongestionFactor = 1;
+	}
+
+	/**
+	 * Gets the index used to map wires to nodes of the store.
+	 * @return the wire node index
+	 */
+	public WireNodeIndex getNodeIndex() {
+		return nodeIndex;
+	}
+
+	/**
+	 * Gets the number of nodes that have usage information.
+	 * @return the number of nodes
+	 */
+	public int size() {
+		return nodeIndex.size();
+	}
+
+	/**
+	 * Gets the node of a wire, without creating one.
+	 * @param wire the wire
+	 * @return the node, or -1 if the wire has never been used
+	 */
+	public int getNode(Wire wire) {
+		return nodeIndex.getIndex(wire);
+	}
+
+	/**
+	 * Gets the node of a wire, creating usage for the wire if it has not been seen before.
+	 * @param wire the wire
+	 * @return the node
+	 */
+	public int computeNode(Wire wire) {
+		int node = nodeIndex.getOrAddIndex(wire);
+		if (node >= occupancy.length)
+			grow(node + 1);
+		if (history[node] == 0) {
+			// Newly created node
+			history[node] = 1;
+			capacities[node] = DEFAULT_CAPACITY;
+		}
+		return node;
+	}
+
+	/**
+	 * Returns whether a wire has usage information.
+	 * @param wire the wire
+	 * @return true if the wire has been used, false otherwise
+	 */
+	public boolean contains(Wire wire) {
+		return getNode(wire) != -1;
+	}
+
+	/**
+	 * Gets the PathFinder cost for a wire. Uses the VPR congestion cost function, where all terms are multiplied
+	 * together to avoid having to normalize b(n) and h(n).
+	 * The original PathFinder cost function is [h(n) + b(n)] * congestion(n).
+	 * Wires that have never been used have a cost of 1.
+	 * @param wire the wire
+	 * @return the PathFinder cost.
+	 */
+	public double getPFCost(Wire wire) {
+		int node = getNode(wire);
+		return (node == -1) ? 1 : getPFCost(node);
+	}
+
+	/**
+	 * Gets the PathFinder cost for a node.
+	 * @param node the node
+	 * @return the PathFinder cost
+	 * @see #getPFCost(Wire)
+	 */
+	public double getPFCost(int node) {
+		return WIRE_COST * history[node] * getPresentCongestion(node);
+	}
+
+	/**
+	 * Gets the PathFinder cost for a wire when it is used by the specified inter-site route. If a route of the same
+	 * net already uses the wire, using it does not add to its occupancy, so the wire's present congestion is
+	 * computed without that net.
+	 * @param wire the wire
+	 * @param route the inter-site route that would use the wire
+	 * @return the PathFinder cost
+	 */
+	public double getPFCost(Wire wire, IntersiteRoute route) {
+		int node = getNode(wire);
+		if (node == -1)
+			return 1;
+		int count = occupancy[node];
+		if (count > 0 && hasNet(node, route.getNetKey()))
+			count--;
+		return WIRE_COST * history[node] * getPresentCongestion(count, capacities[node]);
+	}
+
+	/**
+	 * Gets the present congestion of a node, which depends upon the number of nets using the node, its capacity and
+	 * the present congestion factor.
+	 * @param node the node
+	 * @return the present congestion of the node
+	 */
+	public double getPresentCongestion(int node) {
+		return getPresentCongestion(occupancy[node], capacities[node]);
+	}
+
+	private double getPresentCongestion(int count, int capacity) {
+		if (count < capacity)
+			return 1;
+		else if (count == capacity)
+			return 1 + presentCongestionFactor;
+		else
+			return 1 + Math.max(0, count * presentCongestionFactor);
+	}
+
+	/**
+	 * Sets the present congestion factor, which applies to the costs of all nodes from now on.
+	 * @param presentCongestionFactor the factor by which the congestion is incremented (if the node is congested).
+	 */
+	public void setPresentCongestionFactor(double presentCongestionFactor) {
+		this.presentCongestionFactor = presentCongestionFactor;
+	}
+
+	/**
+	 * Adds a route to the list of inter-site routes that are currently using the node.
+	 * @param node the node
+	 * @param route the route to add
+	 */
+	public void addRoute(int node, IntersiteRoute route) {
+		IntersiteRoute[] nodeRoutes = routes[node];
+		int count = routeCounts[node];
+		for (int i = 0; i < count; i++) {
+			if (nodeRoutes[i] == route)
+				return;
+		}
+
+		// Another route of the same net doesn't change the occupancy
+		boolean newNet = !hasNet(node, route.getNetKey());
+
+		if (nodeRoutes == null) {
+			nodeRoutes = new IntersiteRoute[DEFAULT_CAPACITY];
+			routes[node] = nodeRoutes;
+		} else if (count == nodeRoutes.length) {
+			nodeRoutes = Arrays.copyOf(nodeRoutes, count * 2);
+			routes[node] = nodeRoutes;
+		}
+		nodeRoutes[count] = route;
+		routeCounts[node] = count + 1;
+		if (newNet) {
+			occupancy[node]++;
+			if (occupancy[node] == capacities[node] + 1)
+				addOverusedNode(node);
+		}
+	}
+
+	/**
+	 * Removes the specified inter-site route from the list of routes using the node.
+	 * @param node the node
+	 * @param route the route to remove
+	 */
+	public void removeRoute(int node, IntersiteRoute route) {
+		IntersiteRoute[] nodeRoutes = routes[node];
+		int count = routeCounts[node];
+		for (int i = 0; i < count; i++) {
+			if (nodeRoutes[i] == route) {
+				nodeRoutes[i] = nodeRoutes[count - 1];
+				nodeRoutes[count - 1] = null;
+				routeCounts[node] = count - 1;
+
+				// The net still uses the node if another of its routes does
+				if (!hasNet(node, route.getNetKey())) {
+					occupancy[node]--;
+					if (occupancy[node] == capacities[node])
+						removeOverusedNode(node);
+				}
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns whether a route of the net with the specified key uses a node.
+	 */
+	private boolean hasNet(int node, Object netKey) {
+		IntersiteRoute[] nodeRoutes = routes[node];
+		for (int i = 0; i < routeCounts[node]; i++) {
+			if (nodeRoutes[i].getNetKey() == netKey)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Sets the capacity of a wire, which is the number of distinct nets that can use it at once. This can be used
+	 * for resources that can legally be shared by more than one net.
+	 * @param wire the wire
+	 * @param capacity the capacity
+	 */
+	public void setCapacity(Wire wire, int capacity) {
+		int node = computeNode(wire);
+		boolean wasOverused = occupancy[node] > capacities[node];
+		capacities[node] = capacity;
+		boolean overused = occupancy[node] > capacity;
+		if (overused && !wasOverused)
+			addOverusedNode(node);
+		else if (!overused && wasOverused)
+			removeOverusedNode(node);
+	}
+
+	/**
+	 * Gets the historical usage of the node.
+	 * @param node the node
+	 * @return the historical usage
+	 */
+	public double getHistory(int node) {
+		return history[node];
+	}
+
+	/**
+	 * Sets the historical usage of the node, such as when restoring it from a checkpoint.
+	 * @param node the node
+	 * @param history the historical usage
+	 */
+	public void setHistory(int node, double history) {
+		this.history[node] = history;
+	}
+
+	/**
+	 * Increments the historical usage of the node by the historyFactor.
+	 * @param node the node
+	 * @param historyFactor the factor by which to increment the historical usage.
+	 */
+	public void incrementHistory(int node, double historyFactor) {
+		history[node] += Math.max(0, (occupancy[node] - capacities[node]) * historyFactor);
+	}
+
+	private void addOverusedNode(int node) {
+		if (numOverused == overusedNodes.length)
+			overusedNodes = Arrays.copyOf(overusedNodes, numOverused * 2);
+		overusedNodes[numOverused] = node;
+		overusedPositions[node] = ++numOverused;
+	}
+
+	private void removeOverusedNode(int node) {
+		int position = overusedPositions[node] - 1;
+		int last = overusedNodes[--numOverused];
+		overusedNodes[position] = last;
+		overusedPositions[last] = position + 1;
+		overusedPositions[node] = 0;
+	}
+
+	/**
+	 * Gets the nodes that are currently overused (used by more nets than their capacity allows).
+	 * @return a copy of the overused nodes, in no particular order
+	 */
+	public int[] getOverusedNodes() {
+		return Arrays.copyOf(overusedNodes, numOverused);
+	}
+
+	/**
+	 * Gets the number of nodes that are currently overused.
+	 * @return the number of overused nodes
+	 */
+	public int getNumOverusedNodes() {
+		return numOverused;
+	}
+
+	/**
+	 * Gets the total overuse of all the nodes, which is the sum of how many nets each node has over its capacity.
+	 * @return the total overuse
+	 */
+	public int getTotalOveruse() {
+		int overuse = 0;
+		for (int i = 0; i < numOverused; i++) {
+			int node = overusedNodes[i];
+			overuse += occupancy[node] - getCapacity(node);
+		}
+		return overuse;
+	}
+
+	/**
+	 * Gets the capacity of a node (the number of unrelated nets that can use the node)
+	 * @param node the node
+	 * @return the capacity
+	 */
+	public int getCapacity(int node) {
+		return capacities[node];
+	}
+
+	/**
+	 * Gets the number of distinct nets that are currently using a node.
+	 * @param node the node
+	 * @return the occupancy of the node
+	 */
+	public int getOccupancy(int node) {
+		return occupancy[node];
+	}
+
+	/**
+	 * Get the inter-site routes that are currently using the node.
+	 * @param node the node
+	 * @return the inter-site routes using the node.
+	 */
+	public Collection<IntersiteRoute> getRoutes(int node) {
+		if (routeCounts[node] == 0)
+			return Collections.emptyList();
+		return Arrays.asList(Arrays.copyOf(routes[node], routeCounts[node]));
+	}
+
+	/**
+	 * Returns whether the specified inter-site route is currently using the node.
+	 * @param node the node
+	 * @param route the inter-site route
+	 * @return true if the route uses the node, false otherwise
+	 */
+	public boolean isUsedBy(int node, IntersiteRoute route) {
+		IntersiteRoute[] nodeRoutes = routes[node];
+		for (int i = 0; i < routeCounts[node]; i++) {
+			if (nodeRoutes[i] == route)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns whether more nets are using the node than its capacity allows.
+	 * @param node the node
+	 * @return true if the node is congested, false otherwise
+	 */
+	public boolean isCongested(int node) {
+		return occupancy[node] > capacities[node];
+	}
+
+	private void grow(int minSize) {
+		int newSize = Math.max(minSize, occupancy.length * 2);
+		occupancy = Arrays.copyOf(occupancy, newSize);
+		routeCounts = Arrays.copyOf(routeCounts, newSize);
+		capacities = Arrays.copyOf(capacities, newSize);
+		history = Arrays.copyOf(history, newSize);
+		routes = Arrays.copyOf(routes, newSize);
+		overusedPositions = Arrays.copyOf(overusedPositions, newSize);
+	}
+}
@@ -0,0 +1,96 @@
+package edu.byu.ece.rapidSmith.cad.route.timing;
+
+import edu.byu.ece.rapidSmith.device.Connection;
+import edu.byu.ece.rapidSmith.device.Tile;
+
+/**
+ * A simple delay model (in nanoseconds) used for timing-driven routing. The model does not try to match the delays
+ * reported by Vivado. It only needs to rank connections and paths well enough to find the critical ones.
+ * <ul>
+ *     <li>PIPs (programmable connections) have a fixed switch delay, which is smaller for bounces within a tile.</li>
+ *     <li>Non-PIP connections continue a wire into another tile. Their delay depends on the type of wire, which is
+ *     inferred from how many tiles the connection spans: short wires (singles, doubles, quads) have a larger delay
+ *     per tile than long wires (hexes and long lines).</li>
+ *     <li>Cells have a fixed logic delay from their inputs to their outputs, and sequential cells have a fixed
+ *     clock-to-output delay.</li>
+ * </ul>
+ */
+public class DelayModel {
+	/** Delay through a PIP between tiles */
+	private static final double PIP_DELAY = 0.10;
+	/** Delay through a PIP that stays within a tile (bounce PIPs, etc.) */
+	private static final double LOCAL_PIP_DELAY = 0.05;
+	/** Connections spanning more than this many tiles are considered long wires */
+	private static final int LONG_WIRE_SPAN = 4;
+	/** Fixed delay of a wire segment, and the delay per tile spanned by short and long wires */
+	private static final double WIRE_DELAY = 0.04;
+	private static final double SHORT_WIRE_DELAY_PER_TILE = 0.05;
+	private static final double LONG_WIRE_DELAY_PER_TILE = 0.02;
+	/** Delay from the inputs to the outputs of a combinational cell */
+	private static final double CELL_DELAY = 0.12;
+	/** Delay from the clock to the outputs of a sequential cell */
+	private static final double CLOCK_TO_OUT_DELAY = 0.30;
+	/** Delay of getting into and out of sites, added to estimated connection delays */
+	private static final double SITE_PIN_DELAY = 0.20;
+
+	/**
+	 * Gets the delay of using a connection.
+	 * @param connection the connection (may be null for the root of a route tree)
+	 * @return the delay of the connection
+	 */
+	public double getConnectionDelay(Connection connection) {
+		if (connection == null)
+			return 0;
+
+		Tile sourceTile = connection.getSourceWire().getTile();
+		Tile sinkTile = connection.getSinkWire().getTile();
+		if (sourceTile == null || sinkTile == null)
+			return 0;
+
+		if (connection.isPip())
+			return (sourceTile == sinkTile) ? LOCAL_PIP_DELAY : PIP_DELAY;
+
+		int span = sourceTile.getIndexManhattanDistance(sinkTile);
+		if (span == 0)
+			return 0;
+		double delayPerTile = (span > LONG_WIRE_SPAN) ? LONG_WIRE_DELAY_PER_TILE : SHORT_WIRE_DELAY_PER_TILE;
+		return WIRE_DELAY + delayPerTile * span;
+	}
+
+	/**
+	 * Estimates the delay of an unrouted connection between two tiles.
+	 * @param sourceTile the tile of the source
+	 * @param sinkTile the tile of the sink
+	 * @return the estimated delay
+	 */
+	public double estimateConnectionDelay(Tile sourceTile, Tile sinkTile) {
+		if (sourceTile == null || sinkTile == null)
+			return SITE_PIN_DELAY;
+		return SITE_PIN_DELAY + getDelayPerTile() * sourceTile.getIndexManhattanDistance(sinkTile);
+	}
+
+	/**
+	 * Gets the typical delay of travelling one tile (a PIP plus a short wire segment). The A* router divides delays
+	 * by this to put them in the same units as its wire segment costs.
+	 * @return the delay per tile
+	 */
+	public double getDelayPerTile() {
+		return PIP_DELAY + WIRE_DELAY + SHORT_WIRE_DELAY_PER_TILE;
+	}
+
+	/**
+	 * Gets the delay from the inputs to the outputs of a combinational cell.
+	 * @return the cell delay
+	 */
+	public double getCellDelay() {
+		return CELL_DELAY;
+	}
+
+	/**
+	 * Gets the delay from the clock to the outputs of a sequential cell.
+	 * @return the clock-to-output delay
+	 */
+	public double getClockToOutDelay() {
+		return CLOCK_TO_OUT_DELAY;
+	}
+}
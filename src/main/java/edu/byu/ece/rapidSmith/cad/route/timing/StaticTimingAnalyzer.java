@@ -0,0 +1,316 @@
+package edu.byu.ece.rapidSmith.cad.route.timing;
+
+import edu.byu.ece.rapidSmith.cad.route.IntersiteRoute;
+import edu.byu.ece.rapidSmith.cad.route.pathfinder.PathFinderRouteTree;
+import edu.byu.ece.rapidSmith.design.subsite.Cell;
+import edu.byu.ece.rapidSmith.design.subsite.CellDesign;
+import edu.byu.ece.rapidSmith.design.subsite.CellNet;
+import edu.byu.ece.rapidSmith.design.subsite.CellPin;
+import edu.byu.ece.rapidSmith.device.Wire;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * A lightweight static timing analyzer used to compute the criticality of the sinks of inter-site routes for
+ * timing-driven routing. Cells with an input on a clock net are treated as sequential (timing paths start at their
+ * outputs and end at their inputs), and all other cells are treated as combinational with a single delay from each
+ * input to each output. Connection delays come from the current route trees of the inter-site routes when a sink is
+ * routed, and are estimated from the distance between the source and sink tiles otherwise.
+ *
+ * As in VPR, the criticality of a connection is 1 - slack / (critical path delay), so connections on the critical
+ * path have a criticality close to one and connections with a lot of slack have a criticality close to zero.
+ */
+public class StaticTimingAnalyzer {
+	/** The maximum criticality of a connection, so congestion is never ignored entirely */
+	private static final double MAX_CRITICALITY = 0.99;
+	private final CellDesign design;
+	private final DelayModel delayModel;
+	/** The delay of the critical path found in the last analysis */
+	private double criticalPathDelay;
+	/** Criticalities are raised to this power to focus on the most critical connections */
+	private double criticalityExponent;
+
+	/**
+	 * Creates a static timing analyzer for a design.
+	 * @param design the design
+	 * @param delayModel the model used to compute delays
+	 */
+	public StaticTimingAnalyzer(CellDesign design, DelayModel delayModel) {
+		this.design = design;
+		this.delayModel = delayModel;
+		this.criticalPathDelay = 0;
+		this.criticalityExponent = 1;
+	}
+
+	/**
+	 * Sets the exponent criticalities are raised to (VPR's criticality_exp). Larger exponents lower the criticality
+	 * of connections with some slack, so only the connections closest to the critical path are routed for delay.
+	 * VPR uses values from 1 to 8.
+	 * @param criticalityExponent the exponent (1 by default)
+	 */
+	public void setCriticalityExponent(double criticalityExponent) {
+		this.criticalityExponent = criticalityExponent;
+	}
+
+	/**
+	 * Gets the delay of the critical path found in the last analysis.
+	 * @return the critical path delay in nanoseconds
+	 */
+	public double getCriticalPathDelay() {
+		return criticalPathDelay;
+	}
+
+	/**
+	 * Analyzes the timing of the design and updates the criticality of every sink of the inter-site routes.
+	 * Sinks of static and clock routes always have a criticality of zero.
+	 * @param intersiteRoutes the inter-site routes of the design
+	 */
+	public void updateCriticalities(Collection<IntersiteRoute> intersiteRoutes) {
+		Map<CellPin, Double> connectionDelays = new HashMap<>();
+		for (IntersiteRoute intersiteRoute : intersiteRoutes) {
+			if (!isTimingRoute(intersiteRoute))
+				continue;
+			for (PathFinderRouteTree sinkTree : intersiteRoute.getSinkRouteTrees()) {
+				double delay = getSinkDelay(intersiteRoute, sinkTree);
+				for (CellPin cellPin : getSinkCellPins(intersiteRoute, sinkTree)) {
+					connectionDelays.put(cellPin, delay);
+				}
+			}
+		}
+
+		Map<CellPin, Double> slacks = computeSlacks(connectionDelays);
+
+		for (IntersiteRoute intersiteRoute : intersiteRoutes) {
+			if (!isTimingRoute(intersiteRoute))
+				continue;
+			for (PathFinderRouteTree sinkTree : intersiteRoute.getSinkRouteTrees()) {
+				// A sink may correspond to more than one cell pin. Use the most critical one.
+				double criticality = 0;
+				for (CellPin cellPin : getSinkCellPins(intersiteRoute, sinkTree)) {
+					Double slack = slacks.get(cellPin);
+					if (slack != null)
+						criticality = Math.max(criticality, getCriticality(slack));
+				}
+				intersiteRoute.setCriticality(sinkTree, criticality);
+			}
+		}
+	}
+
+	private static boolean isTimingRoute(IntersiteRoute intersiteRoute) {
+		return !intersiteRoute.isStatic() && !intersiteRoute.isGlobalClk() && !intersiteRoute.isLocalClk()
+				&& !intersiteRoute.isClkBuffer();
+	}
+
+	private static List<CellPin> getSinkCellPins(IntersiteRoute intersiteRoute, PathFinderRouteTree sinkTree) {
+		Wire terminalWire = intersiteRoute.getTerminalTree(sinkTree).getWire();
+		List<CellPin> cellPins = intersiteRoute.getSinkCellPins(terminalWire);
+		return (cellPins == null) ? Collections.emptyList() : cellPins;
+	}
+
+	/**
+	 * Computes the delay from the source of a route to one of its sinks. The delay of the part of the route that
+	 * has been made is computed from its connections. If the sink is not connected to the source, the delay of the
+	 * rest of the route is estimated.
+	 */
+	private double getSinkDelay(IntersiteRoute intersiteRoute, PathFinderRouteTree sinkTree) {
+		PathFinderRouteTree root = intersiteRoute.getRouteTree().getRoot();
+		PathFinderRouteTree tree = intersiteRoute.getTerminalTree(sinkTree);
+		double delay = 0;
+		while (tree.getParent() != null) {
+			delay += delayModel.getConnectionDelay(tree.getConnection());
+			tree = tree.getParent();
+		}
+
+		if (tree != root)
+			delay += delayModel.estimateConnectionDelay(root.getWire().getTile(), tree.getWire().getTile());
+		return delay;
+	}
+
+	/**
+	 * Computes the slack of every sink cell pin of the design's timing nets.
+	 * @param connectionDelays the delay of the connection to each sink cell pin
+	 * @return the slack of each sink cell pin
+	 */
+	private Map<CellPin, Double> computeSlacks(Map<CellPin, Double> connectionDelays) {
+		List<Cell> cells = design.getLeafCells().collect(Collectors.toList());
+		Map<Cell, Boolean> sequential = new HashMap<>();
+		for (Cell cell : cells) {
+			sequential.put(cell, isSequential(cell));
+		}
+
+		// Forward pass: compute arrival times in topological order
+		Map<CellPin, Double> arrivals = new HashMap<>();
+		Map<Cell, Integer> pendingInputs = new HashMap<>();
+		Deque<Cell> ready = new ArrayDeque<>();
+		for (Cell cell : cells) {
+			int numPending = 0;
+			for (CellPin pin : cell.getPins()) {
+				if (!pin.isInpin() || !isTimingNet(pin.getNet()))
+					continue;
+				CellPin sourcePin = getSourcePin(pin.getNet());
+				if (sourcePin == null || sourcePin.isPartitionPin()) {
+					// Paths from outside of the design start here
+					arrivals.put(pin, connectionDelays.getOrDefault(pin, 0.0));
+				} else {
+					numPending++;
+				}
+			}
+
+			if (sequential.get(cell) || numPending == 0)
+				ready.add(cell);
+			else
+				pendingInputs.put(cell, numPending);
+		}
+
+		List<Cell> order = new ArrayList<>(cells.size());
+		while (!ready.isEmpty()) {
+			Cell cell = ready.poll();
+			order.add(cell);
+
+			double outputArrival;
+			if (sequential.get(cell)) {
+				outputArrival = delayModel.getClockToOutDelay();
+			} else {
+				outputArrival = 0;
+				for (CellPin pin : cell.getPins()) {
+					if (pin.isInpin() && isTimingNet(pin.getNet()))
+						outputArrival = Math.max(outputArrival, arrivals.getOrDefault(pin, 0.0));
+				}
+				outputArrival += delayModel.getCellDelay();
+			}
+
+			for (CellPin outPin : cell.getPins()) {
+				if (!outPin.isOutpin() || !isTimingNet(outPin.getNet()))
+					continue;
+				arrivals.put(outPin, outputArrival);
+
+				for (CellPin sinkPin : getSinkPins(outPin.getNet())) {
+					arrivals.put(sinkPin, outputArrival + connectionDelays.getOrDefault(sinkPin, 0.0));
+					if (sinkPin.isPartitionPin())
+						continue;
+
+					Cell sinkCell = sinkPin.getCell();
+					Integer numPending = pendingInputs.get(sinkCell);
+					if (numPending == null)
+						continue;
+					if (numPending == 1) {
+						pendingInputs.remove(sinkCell);
+						ready.add(sinkCell);
+					} else {
+						pendingInputs.put(sinkCell, numPending - 1);
+					}
+				}
+			}
+		}
+
+		if (!pendingInputs.isEmpty())
+			System.err.println("[WARNING] " + pendingInputs.size() + " cells are on combinational loops and were not timed.");
+
+		criticalPathDelay = 0;
+		for (Map.Entry<CellPin, Double> entry : arrivals.entrySet()) {
+			if (entry.getKey().isInpin() || entry.getKey().isPartitionPin())
+				criticalPathDelay = Math.max(criticalPathDelay, entry.getValue());
+		}
+
+		// Backward pass: compute required times in reverse topological order
+		Map<CellPin, Double> required = new HashMap<>();
+		for (int i = order.size() - 1; i >= 0; i--) {
+			Cell cell = order.get(i);
+			double cellRequired = Double.POSITIVE_INFINITY;
+			for (CellPin outPin : cell.getPins()) {
+				if (!outPin.isOutpin() || !isTimingNet(outPin.getNet()))
+					continue;
+				double outRequired = Double.POSITIVE_INFINITY;
+				for (CellPin sinkPin : getSinkPins(outPin.getNet())) {
+					double sinkRequired = getRequired(sinkPin, required, sequential);
+					outRequired = Math.min(outRequired, sinkRequired - connectionDelays.getOrDefault(sinkPin, 0.0));
+				}
+				cellRequired = Math.min(cellRequired, outRequired);
+			}
+
+			if (sequential.get(cell))
+				continue;
+			if (cellRequired == Double.POSITIVE_INFINITY)
+				cellRequired = criticalPathDelay;
+			for (CellPin pin : cell.getPins()) {
+				if (pin.isInpin() && isTimingNet(pin.getNet()))
+					required.put(pin, cellRequired - delayModel.getCellDelay());
+			}
+		}
+
+		Map<CellPin, Double> slacks = new HashMap<>();
+		for (Map.Entry<CellPin, Double> entry : arrivals.entrySet()) {
+			CellPin pin = entry.getKey();
+			if (pin.isInpin() || pin.isPartitionPin())
+				slacks.put(pin, getRequired(pin, required, sequential) - entry.getValue());
+		}
+		return slacks;
+	}
+
+	/**
+	 * Gets the required time of a sink pin. Inputs of sequential cells (and of cells that were not timed) must
+	 * arrive by the end of the critical path.
+	 */
+	private double getRequired(CellPin sinkPin, Map<CellPin, Double> required, Map<Cell, Boolean> sequential) {
+		if (sinkPin.isPartitionPin() || Boolean.TRUE.equals(sequential.get(sinkPin.getCell())))
+			return criticalPathDelay;
+		return required.getOrDefault(sinkPin, criticalPathDelay);
+	}
+
+	private double getCriticality(double slack) {
+		if (criticalPathDelay <= 0)
+			return 0;
+		double criticality = 1 - slack / criticalPathDelay;
+		criticality = Math.max(0, Math.min(1, criticality));
+		return Math.min(MAX_CRITICALITY, Math.pow(criticality, criticalityExponent));
+	}
+
+	/**
+	 * Returns whether a cell is sequential, which is assumed if any of its inputs are on a clock net.
+	 */
+	private static boolean isSequential(Cell cell) {
+		for (CellPin pin : cell.getPins()) {
+			if (pin.isInpin() && pin.getNet() != null && isClockNet(pin.getNet()))
+				return true;
+		}
+		return false;
+	}
+
+	private static boolean isClockNet(CellNet net) {
+		return net.isGlobalClkNet() || net.isLocalClkNet() || net.isClkBufferNet();
+	}
+
+	/**
+	 * Returns whether a net is part of timing paths (is not a static or clock net).
+	 */
+	private static boolean isTimingNet(CellNet net) {
+		return net != null && !net.isStaticNet() && !isClockNet(net);
+	}
+
+	/**
+	 * Gets the source pin of a net, looking through the net's aliases if it does not have one.
+	 */
+	private static CellPin getSourcePin(CellNet net) {
+		if (net.getSourcePin() != null)
+			return net.getSourcePin();
+		for (CellNet alias : net.getAliases()) {
+			if (alias.getSourcePin() != null)
+				return alias.getSourcePin();
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the sink pins of a net and all of its aliases.
+	 */
+	private static Collection<CellPin> getSinkPins(CellNet net) {
+		if (net.getAliases().isEmpty())
+			return net.getSinkPins();
+		List<CellPin> sinkPins = new ArrayList<>(net.getSinkPins());
+		for (CellNet alias : net.getAliases()) {
+			sinkPins.addAll(alias.getSinkPins());
+		}
+		return sinkPins;
+	}
+}
@@ -0,0 +1,64 @@
+package edu.byu.ece.rapidSmith.cad.route;
+
+import edu.byu.ece.rapidSmith.device.Device;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BoundingBoxTest {
+	@Test
+	public void containsIsInclusive() {
+		BoundingBox box = new BoundingBox(2, 3, 4, 6);
+		assertTrue(box.contains(2, 3));
+		assertTrue(box.contains(4, 6));
+		assertTrue(box.contains(3, 5));
+		assertFalse(box.contains(1, 3));
+		assertFalse(box.contains(2, 7));
+	}
+
+	@Test
+	public void areaAndHalfPerimeter() {
+		BoundingBox box = new BoundingBox(2, 3, 4, 6);
+		assertEquals(12, box.getArea());
+		assertEquals(5, box.getHalfPerimeter());
+
+		BoundingBox single = new BoundingBox(5, 5, 5, 5);
+		assertEquals(1, single.getArea());
+		assertEquals(0, single.getHalfPerimeter());
+	}
+
+	@Test
+	public void expand() {
+		BoundingBox box = new BoundingBox(2, 3, 4, 6).expand(2);
+		assertEquals(0, box.getMinRow());
+		assertEquals(1, box.getMinColumn());
+		assertEquals(6, box.getMaxRow());
+		assertEquals(8, box.getMaxColumn());
+	}
+
+	@Test
+	public void intersects() {
+		BoundingBox box = new BoundingBox(2, 2, 4, 4);
+		assertTrue(box.intersects(new BoundingBox(4, 4, 6, 6)));
+		assertTrue(box.intersects(new BoundingBox(0, 3, 10, 3)));
+		assertTrue(box.intersects(box));
+		assertFalse(box.intersects(new BoundingBox(5, 2, 6, 4)));
+		assertFalse(box.intersects(new BoundingBox(2, 0, 4, 1)));
+	}
+
+	@Test
+	public void include() {
+		Device device = TestDevices.createDevice(8, 8);
+		BoundingBox box = new BoundingBox(device.getTile(3, 3));
+		assertEquals(1, box.getArea());
+
+		BoundingBox included = box.include(device.getTile(5, 1));
+		assertEquals(3, included.getMinRow());
+		assertEquals(1, included.getMinColumn());
+		assertEquals(5, included.getMaxRow());
+		assertEquals(3, included.getMaxColumn());
+
+		// Tiles already in the box don't change it
+		assertSame(included, included.include(device.getTile(4, 2)));
+	}
+}
@@ -0,0 +1,117 @@
+package edu.byu.ece.rapidSmith.cad.route;
+
+import edu.byu.ece.rapidSmith.RSEnvironment;
+import edu.byu.ece.rapidSmith.design.NetType;
+import edu.byu.ece.rapidSmith.design.subsite.*;
+import edu.byu.ece.rapidSmith.device.Bel;
+import edu.byu.ece.rapidSmith.device.BelPin;
+import edu.byu.ece.rapidSmith.device.Device;
+import edu.byu.ece.rapidSmith.interfaces.vivado.VivadoInterface;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests moving LUT input pins on a real device. The tests are skipped if the device files are not installed.
+ */
+public class LutPinSwapperTest {
+	private static final String PART = "xc7a100tcsg324-3";
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private Device device;
+	private CellLibrary libCells;
+	private CellDesign design;
+	private Cell lut;
+	private Bel lutBel;
+
+	@Before
+	public void setUp() throws Exception {
+		Path cellLibraryFile;
+		try {
+			cellLibraryFile = RSEnvironment.defaultEnv().getPartFolderPath(PART).resolve("cellLibrary.xml");
+		} catch (RuntimeException e) {
+			cellLibraryFile = null;
+		}
+		Assume.assumeTrue("The device files of " + PART + " are not installed",
+				cellLibraryFile != null && Files.exists(cellLibraryFile));
+		device = RSEnvironment.defaultEnv().getDevice(PART);
+		libCells = new CellLibrary(cellLibraryFile);
+
+		// A LUT2 in the A6LUT of a slice, with its inputs mapped to A3 and A1
+		design = new CellDesign("lut_pin_swap", PART);
+		lut = new Cell("lut", libCells.get("LUT2"));
+		design.addCell(lut);
+		lutBel = device.getSite("SLICE_X2Y10").getBel("A6LUT");
+		design.placeCell(lut, lutBel);
+		connect("in0", lut.getPin("I0"), lutBel.getBelPin("A3"));
+		connect("in1", lut.getPin("I1"), lutBel.getBelPin("A1"));
+	}
+
+	/**
+	 * Connects a cell pin to a new net, and routes the net to a BEL pin inside the site.
+	 */
+	private void connect(String netName, CellPin cellPin, BelPin belPin) {
+		CellNet net = new CellNet(netName, NetType.WIRE);
+		design.addNet(net);
+		net.connectToPin(cellPin);
+		cellPin.mapToBelPins(Collections.singletonList(belPin));
+
+		RouteTree intrasiteTree = LutPinSwapper.createIntrasiteTree(belPin);
+		net.addSinkRouteTree(intrasiteTree.getWire().getReverseConnectedPin(), intrasiteTree);
+		for (RouteTree rt : intrasiteTree) {
+			if (rt.isLeaf())
+				net.addSinkRouteTree(belPin, rt);
+		}
+	}
+
+	@Test
+	public void moveCellPin() {
+		CellPin cellPin = lut.getPin("I0");
+		BelPin oldBelPin = lutBel.getBelPin("A3");
+		BelPin newBelPin = lutBel.getBelPin("A5");
+		RouteTree intrasiteTree = LutPinSwapper.createIntrasiteTree(newBelPin);
+		assertNotNull(intrasiteTree);
+
+		LutPinSwapper.moveCellPin(cellPin, newBelPin, intrasiteTree);
+
+		assertEquals(Collections.singletonList(newBelPin), new ArrayList<>(cellPin.getMappedBelPins()));
+		CellNet net = cellPin.getNet();
+		assertFalse(net.getBelPinRouteTrees().containsKey(oldBelPin));
+		RouteTree belPinTree = net.getBelPinRouteTrees().get(newBelPin);
+		assertNotNull(belPinTree);
+		assertEquals(newBelPin.getWire(), belPinTree.getWire());
+		assertEquals("A5", belPinTree.getRoot().getWire().getReverseConnectedPin().getName());
+
+		// The other input keeps its pin
+		assertEquals(Collections.singletonList(lutBel.getBelPin("A1")), new ArrayList<>(lut.getPin("I1").getMappedBelPins()));
+	}
+
+	@Test
+	public void swappedPinIsExported() throws Exception {
+		CellPin cellPin = lut.getPin("I0");
+		BelPin newBelPin = lutBel.getBelPin("A5");
+		LutPinSwapper.moveCellPin(cellPin, newBelPin, LutPinSwapper.createIntrasiteTree(newBelPin));
+
+		// Write the design and read it back, to check the new mapping is exported
+		String tcp = temporaryFolder.getRoot().toPath().resolve("lut_pin_swap.tcp").toString();
+		VivadoInterface.writeTCP(tcp, design, device, libCells, true);
+		CellDesign imported = VivadoInterface.loadTCP(tcp).getDesign();
+
+		Cell importedLut = imported.getCell("lut");
+		assertEquals(lutBel.getSite().getName(), importedLut.getBel().getSite().getName());
+		assertEquals(lutBel.getName(), importedLut.getBel().getName());
+		assertEquals("A5", importedLut.getPin("I0").getMappedBelPins().iterator().next().getName());
+		assertEquals("A1", importedLut.getPin("I1").getMappedBelPins().iterator().next().getName());
+	}
+}
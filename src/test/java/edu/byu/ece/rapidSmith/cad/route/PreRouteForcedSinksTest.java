@@ -0,0 +1,82 @@
+package edu.byu.ece.rapidSmith.cad.route;
+
+import edu.byu.ece.rapidSmith.cad.route.pathfinder.PathFinderRouteTree;
+import edu.byu.ece.rapidSmith.design.NetType;
+import edu.byu.ece.rapidSmith.design.subsite.CellNet;
+import edu.byu.ece.rapidSmith.design.subsite.CellPin;
+import edu.byu.ece.rapidSmith.device.Device;
+import edu.byu.ece.rapidSmith.device.Wire;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static edu.byu.ece.rapidSmith.cad.route.TestDevices.*;
+import static org.junit.Assert.*;
+
+public class PreRouteForcedSinksTest {
+	private Device device;
+
+	@Before
+	public void setUp() {
+		device = createDevice(2, 2);
+	}
+
+	/**
+	 * Creates a route whose source tree is the source wire (enum 1) and the wire after it (enum 2). The sinks are
+	 * given as the wire enums of a sink tree and its terminal, in the order they are pre-routed.
+	 */
+	private IntersiteRoute createRoute(int[]... sinks) {
+		PathFinderRouteTree source = new PathFinderRouteTree(getWire(device, 0, 0, 1));
+		connect(source, new PathFinderRouteTree(getWire(device, 0, 0, 2)));
+
+		Map<PathFinderRouteTree, PathFinderRouteTree> sinkTerminalTreeMap = new LinkedHashMap<>();
+		Map<PathFinderRouteTree, PathFinderRouteTree> terminalSinkTreeMap = new HashMap<>();
+		Map<Wire, List<CellPin>> terminalWireCellPinMap = new HashMap<>();
+		for (int[] sink : sinks) {
+			PathFinderRouteTree sinkTree = new PathFinderRouteTree(getWire(device, 0, 0, sink[0]));
+			PathFinderRouteTree terminal = connect(sinkTree, new PathFinderRouteTree(getWire(device, 1, 1, sink[1])));
+			sinkTerminalTreeMap.put(sinkTree, terminal);
+			terminalSinkTreeMap.put(terminal, sinkTree);
+			terminalWireCellPinMap.put(terminal.getWire(), new ArrayList<>());
+		}
+		return new IntersiteRoute(new CellNet("net", NetType.WIRE), source, sinkTerminalTreeMap,
+				terminalSinkTreeMap, terminalWireCellPinMap);
+	}
+
+	private static Set<Integer> getLeafWires(IntersiteRoute intersiteRoute) {
+		Set<Integer> wires = new HashSet<>();
+		for (PathFinderRouteTree leaf : intersiteRoute.getRouteTree().getLeaves()) {
+			wires.add(leaf.getWire().getWireEnum());
+		}
+		return wires;
+	}
+
+	@Test
+	public void forcedSinkReplacesSourceTreeWire() {
+		// The sink tree starts at the second wire of the source tree
+		IntersiteRoute intersiteRoute = createRoute(new int[] {2, 3});
+
+		assertEquals(1, RSVRoute.preRouteForcedSinks(intersiteRoute));
+		assertTrue(intersiteRoute.getSinksToRoute().isEmpty());
+		assertEquals(1, intersiteRoute.getRouteTree().getWire().getWireEnum());
+		assertEquals(Collections.singleton(3), getLeafWires(intersiteRoute));
+	}
+
+	@Test
+	public void directSinkKeepsEarlierForcedSinks() {
+		// The first sink is connected below the source wire, the second starts at the source wire itself
+		IntersiteRoute intersiteRoute = createRoute(new int[] {2, 3}, new int[] {1, 4});
+		PathFinderRouteTree directSink = null;
+		for (PathFinderRouteTree sink : intersiteRoute.getSinkRouteTrees()) {
+			if (sink.getWire().getWireEnum() == 1)
+				directSink = sink;
+		}
+
+		assertEquals(2, RSVRoute.preRouteForcedSinks(intersiteRoute));
+		assertTrue(intersiteRoute.getSinksToRoute().isEmpty());
+		assertEquals(2, intersiteRoute.getRoutedSinks().size());
+		assertSame(directSink, intersiteRoute.getRouteTree());
+		assertEquals(new HashSet<>(Arrays.asList(3, 4)), getLeafWires(intersiteRoute));
+	}
+}
@@ -0,0 +1,56 @@
+package edu.byu.ece.rapidSmith.cad.route;
+
+import edu.byu.ece.rapidSmith.cad.route.pathfinder.PathFinderRouteTree;
+import edu.byu.ece.rapidSmith.device.*;
+import edu.byu.ece.rapidSmith.device.families.Artix7.TileTypes;
+
+/**
+ * Creates small devices for router tests. The tiles of the devices have no sites or wire connections, so the route
+ * trees of the tests are connected with {@link GlobalWireConnection}s.
+ */
+public final class TestDevices {
+	private TestDevices() {
+	}
+
+	/**
+	 * Creates a device with a grid of empty tiles.
+	 * @param rows the number of tile rows
+	 * @param columns the number of tile columns
+	 * @return the device
+	 */
+	public static Device createDevice(int rows, int columns) {
+		Device device = new Device();
+		device.setPartName("test");
+		Tile[][] tiles = new Tile[rows][columns];
+		for (int row = 0; row < rows; row++) {
+			for (int column = 0; column < columns; column++) {
+				Tile tile = new Tile();
+				tile.setType(TileTypes.NULL);
+				tile.setName("NULL_X" + column + "Y" + row);
+				tile.setWireHashMap(WireHashMap.EMPTY_WIRE_HASHMAP);
+				tile.setReverseWireConnections(WireHashMap.EMPTY_WIRE_HASHMAP);
+				tile.setRow(row);
+				tile.setColumn(column);
+				tile.setDevice(device);
+				tiles[row][column] = tile;
+			}
+		}
+		device.setTileArray(tiles);
+		return device;
+	}
+
+	/**
+	 * Gets a wire of a tile of a test device.
+	 */
+	public static Wire getWire(Device device, int row, int column, int wireEnum) {
+		return new TileWire(device.getTile(row, column), wireEnum);
+	}
+
+	/**
+	 * Connects a tree below another tree.
+	 * @return the child tree
+	 */
+	public static PathFinderRouteTree connect(PathFinderRouteTree parent, PathFinderRouteTree child) {
+		return parent.connect(new GlobalWireConnection(parent.getWire(), child.getWire()), child);
+	}
+}
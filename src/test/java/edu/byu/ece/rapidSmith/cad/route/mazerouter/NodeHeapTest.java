@@ -0,0 +1,104 @@
+package edu.byu.ece.rapidSmith.cad.route.mazerouter;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class NodeHeapTest {
+	private static List<Integer> pollAll(NodeHeap heap) {
+		List<Integer> nodes = new ArrayList<>();
+		while (!heap.isEmpty()) {
+			nodes.add(heap.poll());
+		}
+		return nodes;
+	}
+
+	@Test
+	public void pollsInKeyOrder() {
+		NodeHeap heap = new NodeHeap();
+		heap.add(3, 3.0);
+		heap.add(1, 1.0);
+		heap.add(4, 4.0);
+		heap.add(2, 2.0);
+
+		assertEquals(4, heap.size());
+		assertEquals(Arrays.asList(1, 2, 3, 4), pollAll(heap));
+		assertEquals(0, heap.size());
+	}
+
+	@Test
+	public void decreaseKeyMovesNodeForward() {
+		NodeHeap heap = new NodeHeap();
+		heap.add(1, 1.0);
+		heap.add(2, 2.0);
+		heap.add(3, 3.0);
+		heap.add(4, 4.0);
+
+		heap.decreaseKey(4, 0.5);
+		heap.decreaseKey(3, 1.5);
+
+		assertEquals(0.5, heap.getKey(4), 0);
+		assertEquals(Arrays.asList(4, 1, 3, 2), pollAll(heap));
+	}
+
+	@Test
+	public void decreaseKeyIgnoresHigherKeys() {
+		NodeHeap heap = new NodeHeap();
+		heap.add(1, 1.0);
+		heap.add(2, 2.0);
+
+		heap.decreaseKey(1, 5.0);
+
+		assertEquals(1.0, heap.getKey(1), 0);
+		assertEquals(Arrays.asList(1, 2), pollAll(heap));
+	}
+
+	@Test
+	public void containsTracksNodes() {
+		NodeHeap heap = new NodeHeap();
+		assertFalse(heap.contains(7));
+		heap.add(7, 1.0);
+		heap.add(8, 2.0);
+		assertTrue(heap.contains(7));
+
+		heap.poll();
+		assertFalse(heap.contains(7));
+		assertTrue(heap.contains(8));
+
+		heap.clear();
+		assertTrue(heap.isEmpty());
+		assertFalse(heap.contains(8));
+
+		// Nodes can be added again after they were removed
+		heap.add(8, 1.0);
+		assertTrue(heap.contains(8));
+	}
+
+	@Test
+	public void growsPastInitialCapacity() {
+		NodeHeap heap = new NodeHeap();
+		int numNodes = 5000;
+		Random random = new Random(1);
+		double[] keys = new double[numNodes];
+		// Add the nodes with large IDs first, so the node positions grow before the entries
+		for (int node = numNodes - 1; node >= 0; node--) {
+			keys[node] = random.nextDouble();
+			heap.add(node, keys[node]);
+		}
+		for (int node = 0; node < numNodes; node += 7) {
+			keys[node] /= 2;
+			heap.decreaseKey(node, keys[node]);
+		}
+
+		List<Integer> nodes = pollAll(heap);
+		assertEquals(numNodes, nodes.size());
+		for (int i = 1; i < nodes.size(); i++) {
+			assertTrue(keys[nodes.get(i - 1)] <= keys[nodes.get(i)]);
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package edu.byu.ece.rapidSmith.cad.route.pathfinder;
+
+import edu.byu.ece.rapidSmith.cad.route.pathfinder.ConvergenceController.Status;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ConvergenceControllerTest {
+	@Test
+	public void convergesWithoutOverusedNodes() {
+		ConvergenceController controller = new ConvergenceController();
+		assertEquals(Status.RUNNING, controller.update(1, 10, 12));
+		assertEquals(Status.CONVERGED, controller.update(2, 0, 0));
+		assertEquals(Status.CONVERGED, controller.getStatus());
+	}
+
+	@Test
+	public void stallsWithoutImprovement() {
+		ConvergenceController controller = new ConvergenceController();
+		controller.setStallIterations(3);
+
+		assertEquals(Status.RUNNING, controller.update(1, 5, 10));
+		assertEquals(Status.RUNNING, controller.update(2, 5, 10));
+		assertEquals(Status.RUNNING, controller.update(3, 6, 12));
+		assertEquals(Status.STALLED, controller.update(4, 5, 10));
+		assertEquals(10, controller.getBestOveruse());
+		assertEquals(1, controller.getBestIteration());
+	}
+
+	@Test
+	public void improvementResetsStall() {
+		ConvergenceController controller = new ConvergenceController();
+		controller.setStallIterations(2);
+
+		assertEquals(Status.RUNNING, controller.update(1, 5, 10));
+		assertEquals(Status.RUNNING, controller.update(2, 5, 10));
+		assertEquals(Status.RUNNING, controller.update(3, 4, 9));
+		assertEquals(Status.RUNNING, controller.update(4, 4, 9));
+		assertEquals(Status.STALLED, controller.update(5, 4, 9));
+		assertEquals(9, controller.getBestOveruse());
+		assertEquals(3, controller.getBestIteration());
+	}
+
+	@Test
+	public void stallDetectionCanBeDisabled() {
+		ConvergenceController controller = new ConvergenceController();
+		controller.setStallIterations(-1);
+		for (int iteration = 1; iteration <= 200; iteration++) {
+			assertEquals(Status.RUNNING, controller.update(iteration, 5, 10));
+		}
+	}
+
+	@Test
+	public void stopsAtIterationLimit() {
+		ConvergenceController controller = new ConvergenceController();
+		controller.setMaxIterations(3);
+		assertEquals(Status.RUNNING, controller.update(1, 5, 10));
+		assertEquals(Status.RUNNING, controller.update(2, 4, 8));
+		assertEquals(Status.ITERATION_LIMIT, controller.update(3, 3, 6));
+	}
+
+	@Test
+	public void startResetsProgress() {
+		ConvergenceController controller = new ConvergenceController();
+		controller.setStallIterations(1);
+		controller.update(1, 5, 10);
+		assertEquals(Status.STALLED, controller.update(2, 5, 10));
+
+		controller.start();
+		assertEquals(Status.RUNNING, controller.getStatus());
+		assertEquals(Integer.MAX_VALUE, controller.getBestOveruse());
+		assertEquals(Status.RUNNING, controller.update(3, 5, 10));
+	}
+
+	@Test
+	public void adaptiveFactors() {
+		ConvergenceController controller = new ConvergenceController();
+		assertEquals(2000, controller.nextPresentCongestionFactor(1000, 2), 0);
+
+		controller.setAdaptiveFactors(true);
+		assertEquals(1000, controller.nextPresentCongestionFactor(1000, 2), 0);
+
+		// The history factor is raised every fourth iteration without improvement
+		controller.update(1, 5, 10);
+		for (int iteration = 2; iteration <= 4; iteration++) {
+			controller.update(iteration, 5, 10);
+			assertEquals(1, controller.nextHistoryFactor(1), 0);
+		}
+		controller.update(5, 5, 10);
+		assertEquals(1.5, controller.nextHistoryFactor(1), 0);
+		assertEquals(16, controller.nextHistoryFactor(15), 0);
+	}
+}
@@ -0,0 +1,100 @@
+package edu.byu.ece.rapidSmith.cad.route.pathfinder;
+
+import edu.byu.ece.rapidSmith.cad.route.GlobalWire;
+import edu.byu.ece.rapidSmith.cad.route.IntersiteRoute;
+import edu.byu.ece.rapidSmith.design.NetType;
+import edu.byu.ece.rapidSmith.design.subsite.CellNet;
+import edu.byu.ece.rapidSmith.design.subsite.CellPin;
+import edu.byu.ece.rapidSmith.device.Device;
+import edu.byu.ece.rapidSmith.device.Wire;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static edu.byu.ece.rapidSmith.cad.route.TestDevices.*;
+import static org.junit.Assert.*;
+
+public class RouteCheckpointTest {
+	private Device device;
+
+	@Before
+	public void setUp() {
+		device = createDevice(2, 2);
+	}
+
+	/**
+	 * A route with two sinks. The forced sink is connected directly below the source, as the pre-router connects it,
+	 * and the other sink is left to be routed. The source is a global wire, since the tiles of the test device have no
+	 * wire connections and a restored checkpoint can connect a global wire to any wire.
+	 */
+	private IntersiteRoute createRoute() {
+		PathFinderRouteTree source = new PathFinderRouteTree(new GlobalWire(device, false));
+		PathFinderRouteTree forcedSink = new PathFinderRouteTree(getWire(device, 0, 1, 2));
+		PathFinderRouteTree forcedTerminal = connect(forcedSink, new PathFinderRouteTree(getWire(device, 0, 1, 3)));
+		PathFinderRouteTree sink = new PathFinderRouteTree(getWire(device, 1, 1, 4));
+		PathFinderRouteTree terminal = connect(sink, new PathFinderRouteTree(getWire(device, 1, 1, 5)));
+
+		Map<PathFinderRouteTree, PathFinderRouteTree> sinkTerminalTreeMap = new HashMap<>();
+		Map<PathFinderRouteTree, PathFinderRouteTree> terminalSinkTreeMap = new HashMap<>();
+		Map<Wire, List<CellPin>> terminalWireCellPinMap = new HashMap<>();
+		for (PathFinderRouteTree[] pair : new PathFinderRouteTree[][] {{forcedSink, forcedTerminal}, {sink, terminal}}) {
+			sinkTerminalTreeMap.put(pair[0], pair[1]);
+			terminalSinkTreeMap.put(pair[1], pair[0]);
+			terminalWireCellPinMap.put(pair[1].getWire(), new ArrayList<>());
+		}
+		IntersiteRoute intersiteRoute = new IntersiteRoute(new CellNet("net", NetType.WIRE), source,
+				sinkTerminalTreeMap, terminalSinkTreeMap, terminalWireCellPinMap);
+
+		// Pre-route the forced sink
+		connect(source, forcedSink);
+		forcedTerminal.markLeaf();
+		intersiteRoute.getSinksToRoute().remove(forcedSink);
+		intersiteRoute.getRoutedSinks().add(forcedSink);
+		return intersiteRoute;
+	}
+
+	private static PathFinderRouteTree getSink(IntersiteRoute intersiteRoute, int wireEnum) {
+		for (PathFinderRouteTree sink : intersiteRoute.getSinkRouteTrees()) {
+			if (sink.getWire().getWireEnum() == wireEnum)
+				return sink;
+		}
+		throw new AssertionError("No sink with wire " + wireEnum);
+	}
+
+	@Test
+	public void resumeKeepsPreRoutedSinks() throws Exception {
+		// Route the remaining sink and save the route
+		IntersiteRoute routed = createRoute();
+		PathFinderRouteTree sink = getSink(routed, 4);
+		connect(routed.getRouteTree(), sink);
+		routed.getRoutedSinks().add(sink);
+		routed.getSinksToRoute().remove(sink);
+		RouteCheckpoint checkpoint = RouteCheckpoint.capture(device, Collections.singletonList(routed),
+				new WireUsageStore(device), 3, 1.5, 0, Collections.emptyMap());
+
+		// Resume with fresh routes, whose forced sinks have been pre-routed again
+		IntersiteRoute resumed = createRoute();
+		List<IntersiteRoute> toRoute = checkpoint.restoreRoutes(Collections.singletonList(resumed), device);
+
+		assertTrue(toRoute.isEmpty());
+		assertTrue(resumed.getSinksToRoute().isEmpty());
+		assertEquals(resumed.getSinkRouteTrees(), resumed.getRoutedSinks());
+		assertSame(resumed.getRouteTree(), getSink(resumed, 2).getParent());
+		assertEquals(2, resumed.getRouteTree().getLeaves().size());
+	}
+
+	@Test
+	public void resumeLeavesUnsavedSinksToRoute() throws Exception {
+		// Only the forced sink was routed when the checkpoint was saved
+		RouteCheckpoint checkpoint = RouteCheckpoint.capture(device, Collections.singletonList(createRoute()),
+				new WireUsageStore(device), 1, 0.5, 0, Collections.emptyMap());
+
+		IntersiteRoute resumed = createRoute();
+		List<IntersiteRoute> toRoute = checkpoint.restoreRoutes(Collections.singletonList(resumed), device);
+
+		assertEquals(Collections.singletonList(resumed), toRoute);
+		assertEquals(Collections.singleton(getSink(resumed, 2)), resumed.getRoutedSinks());
+		assertEquals(Collections.singletonList(getSink(resumed, 4)), new ArrayList<>(resumed.getSinksToRoute()));
+	}
+}
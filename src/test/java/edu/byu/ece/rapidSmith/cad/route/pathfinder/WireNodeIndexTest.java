@@ -0,0 +1,76 @@
+package edu.byu.ece.rapidSmith.cad.route.pathfinder;
+
+import edu.byu.ece.rapidSmith.cad.route.GlobalWire;
+import edu.byu.ece.rapidSmith.device.Device;
+import edu.byu.ece.rapidSmith.device.Wire;
+import org.junit.Before;
+import org.junit.Test;
+
+import static edu.byu.ece.rapidSmith.cad.route.TestDevices.*;
+import static org.junit.Assert.*;
+
+public class WireNodeIndexTest {
+	private Device device;
+	private WireNodeIndex nodeIndex;
+
+	@Before
+	public void setUp() {
+		device = createDevice(3, 5);
+		nodeIndex = new WireNodeIndex(device);
+	}
+
+	@Test
+	public void keyPacksTileIndexAndWireEnum() {
+		Wire wire = getWire(device, 2, 3, 1234);
+		assertEquals(2 * 5 + 3, nodeIndex.getTileIndex(wire.getTile()));
+		assertEquals(((long) (2 * 5 + 3) << 32) | 1234, nodeIndex.getKey(wire));
+
+		// The wire enum is not sign extended into the tile index
+		Wire largeEnum = getWire(device, 0, 1, -1);
+		assertEquals(1, nodeIndex.getKey(largeEnum) >>> 32);
+		assertEquals(0xFFFFFFFFL, nodeIndex.getKey(largeEnum) & 0xFFFFFFFFL);
+	}
+
+	@Test
+	public void keysAreUnique() {
+		assertNotEquals(nodeIndex.getKey(getWire(device, 0, 1, 7)), nodeIndex.getKey(getWire(device, 1, 0, 7)));
+		assertNotEquals(nodeIndex.getKey(getWire(device, 0, 1, 7)), nodeIndex.getKey(getWire(device, 0, 1, 8)));
+		assertEquals(nodeIndex.getKey(getWire(device, 2, 4, 7)), nodeIndex.getKey(getWire(device, 2, 4, 7)));
+	}
+
+	@Test
+	public void indicesAreDenseAndStable() {
+		assertEquals(-1, nodeIndex.getIndex(getWire(device, 1, 1, 1)));
+		assertEquals(0, nodeIndex.getOrAddIndex(getWire(device, 1, 1, 1)));
+		assertEquals(1, nodeIndex.getOrAddIndex(getWire(device, 1, 1, 2)));
+		assertEquals(0, nodeIndex.getOrAddIndex(getWire(device, 1, 1, 1)));
+		assertEquals(1, nodeIndex.getIndex(getWire(device, 1, 1, 2)));
+		assertEquals(2, nodeIndex.size());
+		assertEquals(getWire(device, 1, 1, 2), nodeIndex.getWire(1));
+	}
+
+	@Test
+	public void indicesSurviveRehashing() {
+		int numWires = 20000;
+		for (int i = 0; i < numWires; i++) {
+			assertEquals(i, nodeIndex.getOrAddIndex(getWire(device, i % 3, i % 5, i)));
+		}
+		assertEquals(numWires, nodeIndex.size());
+		for (int i = 0; i < numWires; i++) {
+			assertEquals(i, nodeIndex.getIndex(getWire(device, i % 3, i % 5, i)));
+		}
+	}
+
+	@Test
+	public void tilelessWiresAreIndexedByIdentity() {
+		GlobalWire vcc = new GlobalWire(device, true);
+		GlobalWire gnd = new GlobalWire(device, false);
+		assertEquals(-1, nodeIndex.getIndex(vcc));
+
+		int vccIndex = nodeIndex.getOrAddIndex(vcc);
+		int gndIndex = nodeIndex.getOrAddIndex(gnd);
+		assertNotEquals(vccIndex, gndIndex);
+		assertEquals(vccIndex, nodeIndex.getIndex(vcc));
+		assertSame(gnd, nodeIndex.getWire(gndIndex));
+	}
+}
@@ -0,0 +1,153 @@
+package edu.byu.ece.rapidSmith.cad.route.pathfinder;
+
+import edu.byu.ece.rapidSmith.cad.route.IntersiteRoute;
+import edu.byu.ece.rapidSmith.design.NetType;
+import edu.byu.ece.rapidSmith.design.subsite.CellNet;
+import edu.byu.ece.rapidSmith.device.Device;
+import edu.byu.ece.rapidSmith.device.Wire;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+
+import static edu.byu.ece.rapidSmith.cad.route.TestDevices.*;
+import static org.junit.Assert.*;
+
+public class WireUsageStoreTest {
+	private Device device;
+	private WireUsageStore wireUsage;
+	private Wire wire;
+	private int node;
+
+	@Before
+	public void setUp() {
+		device = createDevice(2, 2);
+		wireUsage = new WireUsageStore(device);
+		wire = getWire(device, 1, 1, 10);
+		node = wireUsage.computeNode(wire);
+	}
+
+	private IntersiteRoute createRoute(CellNet net) {
+		return new IntersiteRoute(net, new PathFinderRouteTree(getWire(device, 0, 0, 1)), new HashMap<>(),
+				new HashMap<>(), new HashMap<>());
+	}
+
+	@Test
+	public void newNodes() {
+		assertEquals(0, node);
+		assertEquals(1, wireUsage.getCapacity(node));
+		assertEquals(1, wireUsage.getHistory(node), 0);
+		assertEquals(0, wireUsage.getOccupancy(node));
+		assertEquals(-1, wireUsage.getNode(getWire(device, 1, 1, 11)));
+		assertEquals(1, wireUsage.getPFCost(getWire(device, 1, 1, 11)), 0);
+	}
+
+	@Test
+	public void overuseOfTwoNets() {
+		IntersiteRoute a = createRoute(new CellNet("a", NetType.WIRE));
+		IntersiteRoute b = createRoute(new CellNet("b", NetType.WIRE));
+
+		wireUsage.addRoute(node, a);
+		assertFalse(wireUsage.isCongested(node));
+		assertEquals(0, wireUsage.getNumOverusedNodes());
+
+		wireUsage.addRoute(node, b);
+		assertTrue(wireUsage.isCongested(node));
+		assertEquals(2, wireUsage.getOccupancy(node));
+		assertEquals(1, wireUsage.getNumOverusedNodes());
+		assertArrayEquals(new int[] {node}, wireUsage.getOverusedNodes());
+		assertEquals(1, wireUsage.getTotalOveruse());
+		assertTrue(wireUsage.isUsedBy(node, a) && wireUsage.isUsedBy(node, b));
+
+		// Adding a route twice does not change the usage
+		wireUsage.addRoute(node, b);
+		assertEquals(2, wireUsage.getOccupancy(node));
+		assertEquals(2, wireUsage.getRoutes(node).size());
+
+		wireUsage.removeRoute(node, a);
+		assertFalse(wireUsage.isCongested(node));
+		assertEquals(0, wireUsage.getNumOverusedNodes());
+		assertEquals(0, wireUsage.getTotalOveruse());
+		assertFalse(wireUsage.isUsedBy(node, a));
+	}
+
+	@Test
+	public void routesOfOneNetShareNodes() {
+		CellNet net = new CellNet("a", NetType.WIRE);
+		IntersiteRoute first = createRoute(net);
+		IntersiteRoute second = createRoute(net);
+
+		wireUsage.addRoute(node, first);
+		wireUsage.addRoute(node, second);
+		assertEquals(1, wireUsage.getOccupancy(node));
+		assertFalse(wireUsage.isCongested(node));
+
+		// The net uses the node until both of its routes are removed
+		wireUsage.removeRoute(node, first);
+		assertEquals(1, wireUsage.getOccupancy(node));
+		wireUsage.removeRoute(node, second);
+		assertEquals(0, wireUsage.getOccupancy(node));
+	}
+
+	@Test
+	public void capacityChangesOveruse() {
+		IntersiteRoute a = createRoute(new CellNet("a", NetType.WIRE));
+		IntersiteRoute b = createRoute(new CellNet("b", NetType.WIRE));
+		IntersiteRoute c = createRoute(new CellNet("c", NetType.WIRE));
+		wireUsage.addRoute(node, a);
+		wireUsage.addRoute(node, b);
+		wireUsage.addRoute(node, c);
+		assertEquals(2, wireUsage.getTotalOveruse());
+
+		wireUsage.setCapacity(wire, 2);
+		assertEquals(1, wireUsage.getNumOverusedNodes());
+		assertEquals(1, wireUsage.getTotalOveruse());
+
+		wireUsage.setCapacity(wire, 3);
+		assertEquals(0, wireUsage.getNumOverusedNodes());
+
+		wireUsage.setCapacity(wire, 1);
+		assertEquals(1, wireUsage.getNumOverusedNodes());
+		assertEquals(2, wireUsage.getTotalOveruse());
+	}
+
+	@Test
+	public void overusedNodeListTracksManyNodes() {
+		IntersiteRoute a = createRoute(new CellNet("a", NetType.WIRE));
+		IntersiteRoute b = createRoute(new CellNet("b", NetType.WIRE));
+		int[] nodes = new int[100];
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = wireUsage.computeNode(getWire(device, 0, 1, i));
+			wireUsage.addRoute(nodes[i], a);
+			wireUsage.addRoute(nodes[i], b);
+		}
+		assertEquals(nodes.length, wireUsage.getNumOverusedNodes());
+
+		// Remove the overuse of every other node
+		for (int i = 0; i < nodes.length; i += 2) {
+			wireUsage.removeRoute(nodes[i], b);
+		}
+		assertEquals(nodes.length / 2, wireUsage.getNumOverusedNodes());
+		for (int overused : wireUsage.getOverusedNodes()) {
+			assertTrue(wireUsage.isCongested(overused));
+		}
+	}
+
+	@Test
+	public void costsAndHistory() {
+		IntersiteRoute a = createRoute(new CellNet("a", NetType.WIRE));
+		IntersiteRoute b = createRoute(new CellNet("b", NetType.WIRE));
+		wireUsage.setPresentCongestionFactor(0.5);
+		wireUsage.addRoute(node, a);
+
+		// The node is full, which costs more for other nets but not for the net using it
+		assertEquals(1.5, wireUsage.getPresentCongestion(node), 0);
+		assertEquals(1, wireUsage.getPFCost(wire, a), 0);
+		assertEquals(1.5, wireUsage.getPFCost(wire, b), 0);
+
+		wireUsage.addRoute(node, b);
+		wireUsage.incrementHistory(node, 0.25);
+		assertEquals(1.25, wireUsage.getHistory(node), 0);
+		assertEquals(1.25 * (1 + 2 * 0.5), wireUsage.getPFCost(node), 1e-12);
+	}
+}